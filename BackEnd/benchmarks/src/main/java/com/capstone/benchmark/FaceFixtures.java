@@ -0,0 +1,65 @@
+package com.capstone.benchmark;
+
+import software.amazon.awssdk.services.rekognition.model.Emotion;
+import software.amazon.awssdk.services.rekognition.model.EmotionName;
+import software.amazon.awssdk.services.rekognition.model.EyeOpen;
+import software.amazon.awssdk.services.rekognition.model.FaceDetail;
+import software.amazon.awssdk.services.rekognition.model.Landmark;
+import software.amazon.awssdk.services.rekognition.model.LandmarkType;
+import software.amazon.awssdk.services.rekognition.model.MouthOpen;
+import software.amazon.awssdk.services.rekognition.model.Pose;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic {@link FaceDetail} fixtures shaped like real DetectFaces output: all eight
+ * emotions with random confidences, the full landmark set and random eye/mouth/pose values.
+ */
+final class FaceFixtures {
+    private static final EmotionName[] EMOTIONS = {
+            EmotionName.HAPPY, EmotionName.SAD, EmotionName.ANGRY, EmotionName.CONFUSED,
+            EmotionName.DISGUSTED, EmotionName.SURPRISED, EmotionName.CALM, EmotionName.FEAR
+    };
+
+    private FaceFixtures() {
+    }
+
+    static FaceDetail[] randomFaces(int count, long seed) {
+        Random random = new Random(seed);
+        FaceDetail[] faces = new FaceDetail[count];
+        for (int i = 0; i < count; i++) {
+            faces[i] = randomFace(random);
+        }
+        return faces;
+    }
+
+    private static FaceDetail randomFace(Random random) {
+        List<Emotion> emotions = new ArrayList<>(EMOTIONS.length);
+        for (EmotionName emotion : EMOTIONS) {
+            emotions.add(Emotion.builder().type(emotion).confidence(random.nextFloat() * 100f).build());
+        }
+
+        List<Landmark> landmarks = new ArrayList<>();
+        for (LandmarkType type : LandmarkType.knownValues()) {
+            landmarks.add(Landmark.builder()
+                    .type(type)
+                    .x(random.nextFloat())
+                    .y(0.3f + random.nextFloat() * 0.1f)
+                    .build());
+        }
+
+        return FaceDetail.builder()
+                .emotions(emotions)
+                .landmarks(landmarks)
+                .eyesOpen(EyeOpen.builder().value(random.nextInt(5) != 0).confidence(95f).build())
+                .mouthOpen(MouthOpen.builder().value(random.nextInt(3) == 0).confidence(95f).build())
+                .pose(Pose.builder()
+                        .pitch(random.nextFloat() * 60f - 30f)
+                        .roll(random.nextFloat() * 60f - 30f)
+                        .yaw(random.nextFloat() * 60f - 30f)
+                        .build())
+                .build();
+    }
+}
@@ -0,0 +1,132 @@
+package com.capstone.benchmark;
+
+import software.amazon.awssdk.services.rekognition.model.Emotion;
+import software.amazon.awssdk.services.rekognition.model.FaceDetail;
+import software.amazon.awssdk.services.rekognition.model.Landmark;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Baseline copy of the scoring code that used to live in {@code RekognitionService}
+ * ({@code calculateStressScore}/{@code detectFrowning}). Log lines are built exactly as before
+ * and handed to {@code logSink} so the string-building cost is measured without console I/O.
+ */
+final class LegacyStressScorer {
+    private final float confidenceThreshold;
+    private final Consumer<String> logSink;
+
+    LegacyStressScorer(float confidenceThreshold, Consumer<String> logSink) {
+        this.confidenceThreshold = confidenceThreshold;
+        this.logSink = logSink;
+    }
+
+    double calculateStressScore(FaceDetail face) {
+        double score = 0.0;
+        StringBuilder emotionLog = new StringBuilder("Emotion contributions: ");
+        for (Emotion emotion : face.emotions()) {
+            if (emotion.confidence() < confidenceThreshold) {
+                continue;
+            }
+            String type = emotion.typeAsString();
+            float confidence = emotion.confidence();
+            double contribution;
+            switch (type) {
+                case "ANGRY":
+                case "FEAR":
+                case "DISGUSTED":
+                case "SAD":
+                    contribution = confidence * 1.0;
+                    score += contribution;
+                    emotionLog.append(String.format("%s (%.2f * 1.0 = %.2f), ", type, confidence, contribution));
+                    break;
+                case "CONFUSED":
+                case "SURPRISED":
+                    contribution = confidence * 0.5;
+                    score += contribution;
+                    emotionLog.append(String.format("%s (%.2f * 0.5 = %.2f), ", type, confidence, contribution));
+                    break;
+                case "CALM":
+                case "HAPPY":
+                    contribution = confidence * -0.3;
+                    score += contribution;
+                    emotionLog.append(String.format("%s (%.2f * -0.3 = %.2f), ", type, confidence, contribution));
+                    break;
+            }
+        }
+        if (emotionLog.length() > "Emotion contributions: ".length()) {
+            logSink.accept(emotionLog.substring(0, emotionLog.length() - 2));
+        }
+
+        StringBuilder physicalLog = new StringBuilder("Physical feature contributions: ");
+        if (!face.eyesOpen().value()) {
+            score += 10;
+            physicalLog.append("Eyes closed (+10), ");
+        }
+        if (face.mouthOpen().value()) {
+            score += 5;
+            physicalLog.append("Mouth open (+5), ");
+        }
+        if (Math.abs(face.pose().pitch()) > 20 || Math.abs(face.pose().roll()) > 20) {
+            score += 5;
+            physicalLog.append("Unusual head tilt (+5), ");
+        }
+        if (physicalLog.length() > "Physical feature contributions: ".length()) {
+            logSink.accept(physicalLog.substring(0, physicalLog.length() - 2));
+        }
+
+        double frownScore = detectFrowning(face);
+        if (frownScore > 0) {
+            score += frownScore;
+        }
+
+        return Math.min(Math.max(score, 0), 100);
+    }
+
+    private double detectFrowning(FaceDetail face) {
+        double frownScore = 0.0;
+        List<Landmark> landmarks = face.landmarks();
+
+        float leftBrowY = 0, rightBrowY = 0, leftEyeY = 0, rightEyeY = 0;
+        for (Landmark landmark : landmarks) {
+            switch (landmark.typeAsString()) {
+                case "leftEyeBrowUp":
+                    leftBrowY = landmark.y();
+                    break;
+                case "rightEyeBrowUp":
+                    rightBrowY = landmark.y();
+                    break;
+                case "leftEyeUp":
+                    leftEyeY = landmark.y();
+                    break;
+                case "rightEyeUp":
+                    rightEyeY = landmark.y();
+                    break;
+            }
+        }
+
+        float leftDistance = leftEyeY - leftBrowY;
+        float rightDistance = rightEyeY - rightBrowY;
+        StringBuilder frownLog = new StringBuilder("Frowning analysis: ");
+        if (leftDistance < 0.03 && rightDistance < 0.03) {
+            frownScore += 10;
+            frownLog.append("Eyebrow-eye distance small (Left: ").append(String.format("%.5f", leftDistance))
+                    .append(", Right: ").append(String.format("%.5f", rightDistance)).append(") -> +10, ");
+        }
+
+        for (Emotion emotion : face.emotions()) {
+            if (emotion.confidence() >= confidenceThreshold) {
+                if ("DISGUSTED".equals(emotion.typeAsString()) || "CONFUSED".equals(emotion.typeAsString())) {
+                    frownScore += 5;
+                    frownLog.append(String.format("%s (%.2f) -> +5, ", emotion.typeAsString(), emotion.confidence()));
+                }
+            }
+        }
+
+        if (frownLog.length() > "Frowning analysis: ".length()) {
+            logSink.accept(frownLog.substring(0, frownLog.length() - 2));
+        }
+
+        return frownScore;
+    }
+}
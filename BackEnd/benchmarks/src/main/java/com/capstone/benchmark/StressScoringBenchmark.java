@@ -0,0 +1,74 @@
+package com.capstone.benchmark;
+
+import com.capstone.service.StressScoringEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import software.amazon.awssdk.services.rekognition.model.FaceDetail;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Faces scored per second: the previous string-switch implementation (with its per-face log
+ * line building) against {@link StressScoringEngine}. Scores of both are checked to match
+ * during setup so the comparison stays honest if the rules change.
+ *
+ * <p>Run with {@code java -jar benchmarks/target/benchmarks.jar StressScoringBenchmark -prof gc}
+ * to also see allocation per face.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StressScoringBenchmark {
+    private static final int FACE_COUNT = 1024;
+    private static final float CONFIDENCE_THRESHOLD = 50f;
+
+    private FaceDetail[] faces;
+    private StressScoringEngine engine;
+    private LegacyStressScorer legacy;
+    private Blackhole logSink;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        faces = FaceFixtures.randomFaces(FACE_COUNT, 42L);
+        engine = new StressScoringEngine(CONFIDENCE_THRESHOLD);
+        logSink = blackhole;
+        legacy = new LegacyStressScorer(CONFIDENCE_THRESHOLD, line -> logSink.consume(line));
+
+        for (FaceDetail face : faces) {
+            double expected = legacy.calculateStressScore(face);
+            double actual = engine.score(face);
+            if (Math.abs(expected - actual) > 1e-9) {
+                throw new IllegalStateException("Score mismatch: legacy=" + expected + ", engine=" + actual);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FACE_COUNT)
+    public void legacyScoring(Blackhole blackhole) {
+        for (FaceDetail face : faces) {
+            blackhole.consume(legacy.calculateStressScore(face));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FACE_COUNT)
+    public void engineScoring(Blackhole blackhole) {
+        for (FaceDetail face : faces) {
+            blackhole.consume(engine.score(face));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.capstone.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the local disk cache of downloaded files (avatars, certificates)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "blob-cache")
+@Data
+public class BlobCacheProperties {
+
+    /**
+     * Directory holding the cached files; emptied on startup
+     */
+    private String directory = System.getProperty("java.io.tmpdir") + "/capstone-blob-cache";
+
+    /**
+     * Total size of the cache; least recently used files are removed beyond it
+     */
+    private long maxBytes = 256L * 1024 * 1024;
+
+    /**
+     * Largest file that may be downloaded at all
+     */
+    private long maxFileBytes = 20L * 1024 * 1024;
+
+    /**
+     * How long a cached file is served without asking the origin (in seconds); after that it
+     * is revalidated with If-None-Match / If-Modified-Since
+     */
+    private long revalidateAfterSeconds = 300;
+
+    private int connectTimeoutMillis = 5000;
+
+    /**
+     * Timeout for the whole response of one download
+     */
+    private int readTimeoutMillis = 15000;
+}
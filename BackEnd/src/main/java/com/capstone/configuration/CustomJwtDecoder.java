@@ -1,51 +1,125 @@
 package com.capstone.configuration;
 
-import java.text.ParseException;
-import java.util.Objects;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import javax.crypto.spec.SecretKeySpec;
 
-import com.capstone.dto.request.IntrospectRequest;
-import com.capstone.service.AuthenticationService;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.capstone.dto.response.JwtDecoderMetricsResponse;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtTimestampValidator;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.stereotype.Component;
 
-import com.nimbusds.jose.JOSEException;
-
+/**
+ * Decodes bearer tokens with a single parse + HS512 verification (one shared, thread-safe
+ * {@link NimbusJwtDecoder}) and remembers every verified token, keyed by its SHA-256, until it
+ * expires. Repeated requests of the same session are then answered from a bounded LRU cache
+ * without any signature work. Expiry is checked with no clock skew, as introspection did.
+ */
 @Component
 public class CustomJwtDecoder implements JwtDecoder {
-    @Value("${jwt.signerKey}")
-    private String signerKey;
+    private final NimbusJwtDecoder nimbusJwtDecoder;
+    private final int maxEntries;
+    private final Map<String, Jwt> verifiedTokens;
 
-    @Autowired
-    private AuthenticationService authenticationService;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalVerifyNanos = new LongAdder();
+    private final AtomicLong maxVerifyNanos = new AtomicLong();
 
-    private NimbusJwtDecoder nimbusJwtDecoder = null;
+    public CustomJwtDecoder(@Value("${jwt.signerKey}") String signerKey,
+                            @Value("${jwt.cache.max-entries:10000}") int maxEntries) {
+        SecretKeySpec secretKeySpec = new SecretKeySpec(signerKey.getBytes(), "HS512");
+        this.nimbusJwtDecoder = NimbusJwtDecoder.withSecretKey(secretKeySpec)
+                .macAlgorithm(MacAlgorithm.HS512)
+                .build();
+        this.nimbusJwtDecoder.setJwtValidator(new JwtTimestampValidator(Duration.ZERO));
+        this.maxEntries = maxEntries;
+        this.verifiedTokens = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Jwt> eldest) {
+                return size() > CustomJwtDecoder.this.maxEntries;
+            }
+        };
+    }
 
     @Override
     public Jwt decode(String token) throws JwtException {
+        String key = digest(token);
+        Instant now = Instant.now();
 
+        synchronized (verifiedTokens) {
+            Jwt cached = verifiedTokens.get(key);
+            if (cached != null) {
+                if (cached.getExpiresAt() != null && cached.getExpiresAt().isAfter(now)) {
+                    hits.increment();
+                    return cached;
+                }
+                verifiedTokens.remove(key);
+            }
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        Jwt jwt;
         try {
-            var response = authenticationService.introspect(
-                    IntrospectRequest.builder().token(token).build());
+            jwt = nimbusJwtDecoder.decode(token);
+        } catch (JwtException e) {
+            rejected.increment();
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            totalVerifyNanos.add(elapsed);
+            maxVerifyNanos.accumulateAndGet(elapsed, Math::max);
+        }
 
-            if (!response.isValid()) throw new JwtException("Token invalid");
-        } catch (JOSEException | ParseException e) {
-            throw new JwtException(e.getMessage());
+        // Token không có hạn dùng thì không cache
+        if (jwt.getExpiresAt() != null) {
+            synchronized (verifiedTokens) {
+                verifiedTokens.put(key, jwt);
+            }
         }
+        return jwt;
+    }
 
-        if (Objects.isNull(nimbusJwtDecoder)) {
-            SecretKeySpec secretKeySpec = new SecretKeySpec(signerKey.getBytes(), "HS512");
-            nimbusJwtDecoder = NimbusJwtDecoder.withSecretKey(secretKeySpec)
-                    .macAlgorithm(MacAlgorithm.HS512)
-                    .build();
+    public JwtDecoderMetricsResponse getMetrics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int size;
+        synchronized (verifiedTokens) {
+            size = verifiedTokens.size();
         }
+        return JwtDecoderMetricsResponse.builder()
+                .cacheSize(size)
+                .cacheCapacity(maxEntries)
+                .cacheHits(hitCount)
+                .cacheMisses(missCount)
+                .hitRate(hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount))
+                .rejected(rejected.sum())
+                .averageVerifyMicros(missCount == 0 ? 0.0 : totalVerifyNanos.sum() / 1000.0 / missCount)
+                .maxVerifyMicros(maxVerifyNanos.get() / 1000)
+                .build();
+    }
 
-        return nimbusJwtDecoder.decode(token);
+    private static String digest(String token) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,39 @@
+package com.capstone.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the outbound email pipeline
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.mail.pipeline")
+@Data
+public class EmailPipelineProperties {
+
+    /**
+     * Number of dispatcher threads, each with its own SMTP connection per batch
+     */
+    private int concurrency = 2;
+
+    /**
+     * Maximum number of emails waiting in memory; overflow stays in the outbox and is picked up by the sweep
+     */
+    private int queueCapacity = 500;
+
+    /**
+     * Maximum number of emails sent over one SMTP connection
+     */
+    private int batchSize = 20;
+
+    /**
+     * Delivery attempts before an email is marked FAILED
+     */
+    private int maxAttempts = 5;
+
+    /**
+     * Delay before the first retry (in seconds); doubled after every further failure
+     */
+    private int initialBackoffSeconds = 30;
+}
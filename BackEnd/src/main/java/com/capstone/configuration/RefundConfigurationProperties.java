@@ -60,6 +60,11 @@ public class RefundConfigurationProperties {
          * Enable/disable scheduled refund checks
          */
         private boolean enabled = true;
+        
+        /**
+         * Number of payments refunded per transaction
+         */
+        private int batchSize = 100;
     }
     
     @Data
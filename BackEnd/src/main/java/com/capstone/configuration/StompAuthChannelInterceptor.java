@@ -0,0 +1,89 @@
+package com.capstone.configuration;
+
+import com.capstone.repository.ClassRoomRepository;
+import com.capstone.service.ClassStressStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+
+/**
+ * Authenticates STOMP sessions and guards teacher-only topics. A CONNECT carrying
+ * {@code Authorization: Bearer <token>} is verified with {@link CustomJwtDecoder} and the
+ * session runs as that user; an invalid token rejects the connection. A SUBSCRIBE to a class
+ * stress topic is only accepted from the class's own teacher, so student data never reaches
+ * other clients and unknown class ids never trigger a dashboard load.
+ */
+@Slf4j
+@Component
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String TEACHER_AUTHORITY = "ROLE_TEACHER";
+
+    private final CustomJwtDecoder customJwtDecoder;
+    private final JwtAuthenticationConverter jwtAuthenticationConverter;
+    private final ClassRoomRepository classRoomRepository;
+
+    public StompAuthChannelInterceptor(CustomJwtDecoder customJwtDecoder,
+                                       JwtAuthenticationConverter jwtAuthenticationConverter,
+                                       ClassRoomRepository classRoomRepository) {
+        this.customJwtDecoder = customJwtDecoder;
+        this.jwtAuthenticationConverter = jwtAuthenticationConverter;
+        this.classRoomRepository = classRoomRepository;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+        if (accessor.getCommand() == StompCommand.CONNECT) {
+            authenticate(message, accessor);
+        } else if (accessor.getCommand() == StompCommand.SUBSCRIBE) {
+            authorizeSubscription(message, accessor);
+        }
+        return message;
+    }
+
+    private void authenticate(Message<?> message, StompHeaderAccessor accessor) {
+        String header = accessor.getFirstNativeHeader("Authorization");
+        if (header == null || !header.startsWith(BEARER_PREFIX)) {
+            return;
+        }
+        try {
+            AbstractAuthenticationToken authentication =
+                    jwtAuthenticationConverter.convert(customJwtDecoder.decode(header.substring(BEARER_PREFIX.length())));
+            accessor.setUser(authentication);
+        } catch (JwtException e) {
+            throw new MessageDeliveryException(message, "Invalid token");
+        }
+    }
+
+    private void authorizeSubscription(Message<?> message, StompHeaderAccessor accessor) {
+        String classId = ClassStressStream.classIdOf(accessor.getDestination());
+        if (classId == null) {
+            return;
+        }
+        Principal user = accessor.getUser();
+        boolean teacher = user instanceof Authentication authentication
+                && authentication.getAuthorities().stream()
+                        .anyMatch(authority -> TEACHER_AUTHORITY.equals(authority.getAuthority()));
+        if (!teacher || !classRoomRepository.isTaughtBy(classId, user.getName())) {
+            log.info("Rejected subscription to {} from {}", accessor.getDestination(),
+                    user == null ? "anonymous session " + accessor.getSessionId() : user.getName());
+            throw new MessageDeliveryException(message, "Not allowed to subscribe to " + accessor.getDestination());
+        }
+    }
+}
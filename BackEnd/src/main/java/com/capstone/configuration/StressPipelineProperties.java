@@ -0,0 +1,29 @@
+package com.capstone.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the asynchronous stress analysis pipeline
+ */
+@Configuration
+@ConfigurationProperties(prefix = "stress.pipeline")
+@Data
+public class StressPipelineProperties {
+
+    /**
+     * Number of worker threads calling the face detector concurrently
+     */
+    private int concurrency = 4;
+
+    /**
+     * Maximum number of jobs waiting for a worker; further submissions are rejected
+     */
+    private int queueCapacity = 100;
+
+    /**
+     * How long finished jobs stay queryable by id (in minutes)
+     */
+    private int jobRetentionMinutes = 10;
+}
@@ -0,0 +1,35 @@
+package com.capstone.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for streaming uploads to Cloudinary
+ */
+@Configuration
+@ConfigurationProperties(prefix = "upload")
+@Data
+public class UploadProperties {
+
+    /**
+     * Maximum number of uploads streaming to Cloudinary at the same time
+     */
+    private int maxConcurrent = 4;
+
+    /**
+     * How long an upload waits for a free slot before it is rejected (in seconds)
+     */
+    private int acquireTimeoutSeconds = 30;
+
+    /**
+     * Size of each chunk sent to Cloudinary, which is also the memory held per upload
+     * (Cloudinary requires at least 5MB)
+     */
+    private int chunkSizeBytes = 6 * 1024 * 1024;
+
+    /**
+     * Minimum progress (in percent) between two progress notifications
+     */
+    private int progressStepPercent = 10;
+}
@@ -2,10 +2,13 @@ package com.capstone.controller;
 
 import com.capstone.dto.response.ApiResponse;
 import com.capstone.dto.response.AuthenticationResponse;
+import com.capstone.dto.response.FaceLoginMetricsResponse;
 import com.capstone.exception.AppException;
 import com.capstone.exception.ErrorCode;
 import com.capstone.service.AuthFaceService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -37,4 +40,15 @@ public class AuthFaceController {
             throw new AppException(ErrorCode.FAILED_TO_PROCESS_IMAGE);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Face login counters (latency, enrollment hits, similarity histogram) for admin users
+     */
+    @GetMapping("/auth-face/metrics")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ApiResponse<FaceLoginMetricsResponse> getMetrics() {
+        return ApiResponse.<FaceLoginMetricsResponse>builder()
+                .result(authFaceService.getMetrics())
+                .build();
+    }
+}
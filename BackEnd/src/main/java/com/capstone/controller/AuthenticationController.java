@@ -1,18 +1,19 @@
 package com.capstone.controller;
 
+import com.capstone.configuration.CustomJwtDecoder;
 import com.capstone.dto.response.ApiResponse;
 import com.capstone.dto.request.AuthenticationRequest;
 import com.capstone.dto.request.IntrospectRequest;
 import com.capstone.dto.response.AuthenticationResponse;
 import com.capstone.dto.response.IntrospectResponse;
+import com.capstone.dto.response.JwtDecoderMetricsResponse;
 import com.capstone.service.AuthenticationService;
-import com.nimbusds.jose.JOSEException;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.text.ParseException;
 
 @RestController
 @RequestMapping("/auth")
@@ -20,6 +21,7 @@ import java.text.ParseException;
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class AuthenticationController {
     AuthenticationService authenticationService;
+    CustomJwtDecoder customJwtDecoder;
     @PostMapping("/token")
     ApiResponse<AuthenticationResponse> authenticate(
             @RequestBody AuthenticationRequest request
@@ -32,12 +34,19 @@ public class AuthenticationController {
     @PostMapping("/introspect")
     ApiResponse<IntrospectResponse> authenticate(
             @RequestBody IntrospectRequest request
-    ) throws ParseException, JOSEException {
+    ) {
         var result = authenticationService.introspect(request);
         return ApiResponse.<IntrospectResponse>builder()
                 .result(result)
                 .build();
     }
+    @GetMapping("/jwt-metrics")
+    @PreAuthorize("hasRole('ADMIN')")
+    ApiResponse<JwtDecoderMetricsResponse> getJwtMetrics() {
+        return ApiResponse.<JwtDecoderMetricsResponse>builder()
+                .result(customJwtDecoder.getMetrics())
+                .build();
+    }
     @PostMapping("/outbound/authentication")
     ApiResponse<AuthenticationResponse> authenticateOutbound(
             @RequestParam String code
@@ -1,7 +1,9 @@
 package com.capstone.controller;
 
+import com.capstone.dto.response.ChatConversationPageResponse;
 import com.capstone.dto.response.ChatMessageDTO;
 import com.capstone.dto.response.ChatHistoryResponse;
+import com.capstone.dto.response.ReadReceiptResponse;
 import com.capstone.service.ChatService;
 
 import lombok.RequiredArgsConstructor;
@@ -58,8 +60,18 @@ public class ChatController {
         return ResponseEntity.ok(chatService.getConversation(user1Id, user2Id));
     }
 
+    @GetMapping("/conversation/page")
+    public ResponseEntity<ChatConversationPageResponse> getConversationPage(
+            @RequestParam String user1Id,
+            @RequestParam String user2Id,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(chatService.getConversationPage(user1Id, user2Id, before, after, size));
+    }
+
     @PostMapping("/read")
-    public ResponseEntity<List<ChatMessageDTO>> markAsRead(
+    public ResponseEntity<ReadReceiptResponse> markAsRead(
             @RequestParam String userId,
             @RequestParam String senderId) {
         return ResponseEntity.ok(chatService.markMessagesAsRead(userId, senderId));
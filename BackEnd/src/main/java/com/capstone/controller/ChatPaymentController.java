@@ -4,7 +4,9 @@ import com.capstone.dto.request.ChatPaymentRequest;
 import com.capstone.dto.response.ApiResponse;
 import com.capstone.dto.response.ChatPaymentResponse;
 import com.capstone.dto.response.PatientChatResponse;
+import com.capstone.dto.response.SlotHoldMetricsResponse;
 import com.capstone.service.ChatPaymentService;
+import com.capstone.service.SlotReservationService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,6 +21,7 @@ import java.util.List;
 @Slf4j
 public class ChatPaymentController {
     private final ChatPaymentService chatPaymentService;
+    private final SlotReservationService slotReservationService;
     
     @PostMapping
     public ApiResponse<ChatPaymentResponse> createChatPayment(@Valid @RequestBody ChatPaymentRequest request) {
@@ -92,4 +95,15 @@ public class ChatPaymentController {
                 .result(chatPaymentService.getAllConsultations())
                 .build();
     }
-}
\ No newline at end of file
+    
+    /**
+     * Slot hold counters (conflicts, expiries) for admin users
+     */
+    @GetMapping("/admin/slot-holds/metrics")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ApiResponse<SlotHoldMetricsResponse> getSlotHoldMetrics() {
+        return ApiResponse.<SlotHoldMetricsResponse>builder()
+                .result(slotReservationService.getMetrics())
+                .build();
+    }
+}
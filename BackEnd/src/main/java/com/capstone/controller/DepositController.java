@@ -6,11 +6,11 @@ import com.capstone.entity.User;
 import com.capstone.exception.AppException;
 import com.capstone.exception.ErrorCode;
 import com.capstone.repository.PendingDepositRepository;
-import com.capstone.repository.UserRepository;
+import com.capstone.service.CurrentUserResolver;
+import com.capstone.service.DepositCheckerService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Date;
@@ -26,14 +26,12 @@ import java.util.stream.Collectors;
 public class DepositController {
 
     private final PendingDepositRepository pendingDepositRepository;
-    private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
+    private final DepositCheckerService depositCheckerService;
 
     @GetMapping("/balance")
     public ResponseEntity<?> getCurrentBalance() {
-        var context = SecurityContextHolder.getContext();
-        String username = context.getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User user = currentUserResolver.getCurrentUser();
 
         Map<String, Object> result = new HashMap<>();
         result.put("balance", user.getBalance());
@@ -45,10 +43,7 @@ public class DepositController {
     @PostMapping
     public ResponseEntity<?> createDeposit(@RequestBody DepositRequest request) {
         String transactionContent = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-        var context = SecurityContextHolder.getContext();
-        String username = context.getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User user = currentUserResolver.getCurrentUser();
 
         PendingDeposit deposit = PendingDeposit.builder()
                 .user(user)
@@ -58,7 +53,7 @@ public class DepositController {
                 .completed(false)
                 .build();
 
-        pendingDepositRepository.save(deposit);
+        depositCheckerService.track(pendingDepositRepository.save(deposit));
 
         Map<String, Object> result = new HashMap<>();
         result.put("transactionContent", transactionContent);
@@ -70,10 +65,7 @@ public class DepositController {
 
     @GetMapping("/status/{transactionContent}")
     public ResponseEntity<?> checkDepositStatus(@PathVariable String transactionContent) {
-        var context = SecurityContextHolder.getContext();
-        String username = context.getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User user = currentUserResolver.getCurrentUser();
 
         PendingDeposit deposit = pendingDepositRepository.findByTransactionContent(transactionContent)
                 .orElseThrow(() -> new AppException(ErrorCode.DEPOSIT_NOT_FOUND));
@@ -95,10 +87,7 @@ public class DepositController {
     // Endpoint cho người dùng xem lịch sử nạp tiền của họ
     @GetMapping("/history")
     public ResponseEntity<?> getUserDepositHistory() {
-        var context = SecurityContextHolder.getContext();
-        String username = context.getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User user = currentUserResolver.getCurrentUser();
 
         List<PendingDeposit> deposits = pendingDepositRepository.findByUserOrderByCreatedAtDesc(user);
         
@@ -3,7 +3,9 @@ package com.capstone.controller;
 
 import com.capstone.dto.request.DoctorUpgradeRequest;
 import com.capstone.dto.response.ApiResponse;
+import com.capstone.dto.response.BlobCacheMetricsResponse;
 import com.capstone.dto.response.DoctorUpgradeResponse;
+import com.capstone.service.BlobCache;
 import com.capstone.service.DoctorUpgradeService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
@@ -20,6 +22,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class DoctorUpgradeController {
     private final DoctorUpgradeService doctorUpgradeService;
+    private final BlobCache blobCache;
 
     @PostMapping("/request-doctor")
     public ApiResponse<String> requestDoctorUpgrade(
@@ -93,4 +96,15 @@ public class DoctorUpgradeController {
                 .result(hasPendingRequest)
                 .build();
     }
+
+    /**
+     * Download cache counters (hits, revalidations, evictions) for admin users
+     */
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/admin/blob-cache/metrics")
+    public ApiResponse<BlobCacheMetricsResponse> getBlobCacheMetrics() {
+        return ApiResponse.<BlobCacheMetricsResponse>builder()
+                .result(blobCache.getMetrics())
+                .build();
+    }
 }
@@ -5,9 +5,14 @@ import com.capstone.dto.response.WeeklyStressReportResponse;
 import com.capstone.dto.response.MonthlyStressReportResponse;
 import com.capstone.dto.response.DailyStressReportResponse;
 import com.capstone.dto.response.StressAnalysisResponse;
+import com.capstone.dto.response.StressJobResponse;
+import com.capstone.dto.response.StressPipelineMetricsResponse;
 import com.capstone.dto.response.StressTrendResponse;
 import com.capstone.entity.StressAnalysis;
+import com.capstone.entity.User;
+import com.capstone.service.CurrentUserResolver;
 import com.capstone.service.RekognitionService;
+import com.capstone.service.StressAnalysisPipeline;
 import com.capstone.service.StressTrendService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -18,6 +23,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.io.IOException;
 import java.util.List;
@@ -36,6 +42,8 @@ import java.util.Collections;
 public class StressController {
     private final RekognitionService rekognitionService;
     private final StressTrendService stressTrendService;
+    private final StressAnalysisPipeline stressAnalysisPipeline;
+    private final CurrentUserResolver currentUserResolver;
 
 
     @Operation(
@@ -62,6 +70,49 @@ public class StressController {
         }
     }
 
+    @Operation(
+            summary = "Submit facial image for asynchronous stress analysis",
+            description = "Queues the image and returns a job id immediately. The result is pushed to "
+                    + "/user/queue/notifications and can also be polled via /api/stress/jobs/{jobId}."
+    )
+    @PostMapping(value = "/analyze/async", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ApiResponse<StressJobResponse> analyzeStressAsync(
+            @RequestPart("image") MultipartFile image
+    ) throws IOException {
+        User user = currentUserResolver.getCurrentUser();
+        return ApiResponse.<StressJobResponse>builder()
+                .code(HttpStatus.ACCEPTED.value())
+                .message("Stress analysis queued")
+                .result(stressAnalysisPipeline.submit(user, image.getBytes()))
+                .build();
+    }
+
+    @Operation(
+            summary = "Get asynchronous stress analysis job",
+            description = "Returns the status and, once finished, the result of a queued stress analysis."
+    )
+    @GetMapping("/jobs/{jobId}")
+    public ApiResponse<StressJobResponse> getStressJob(@PathVariable String jobId) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        return ApiResponse.<StressJobResponse>builder()
+                .message("Stress analysis job retrieved")
+                .result(stressAnalysisPipeline.getJob(jobId, username))
+                .build();
+    }
+
+    @Operation(
+            summary = "Get stress analysis pipeline metrics",
+            description = "Queue depth, throughput and latency of the asynchronous stress analysis workers, plus result cache hit/miss counters."
+    )
+    @GetMapping("/pipeline/metrics")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<StressPipelineMetricsResponse> getPipelineMetrics() {
+        return ApiResponse.<StressPipelineMetricsResponse>builder()
+                .message("Stress pipeline metrics retrieved")
+                .result(stressAnalysisPipeline.getMetrics())
+                .build();
+    }
+
     @Operation(
             summary = "Retrieve stress analysis history",
             description = "Fetches the user's past stress analysis results."
@@ -90,39 +141,9 @@ public class StressController {
     )
     @GetMapping("/weekly")
     public ApiResponse<List<WeeklyStressReportResponse>> getStressByWeek() {
-        Map<String, List<StressAnalysis>> weeklyGroups = rekognitionService.getStressByWeek();
-        List<WeeklyStressReportResponse> weeklyResults = weeklyGroups.entrySet().stream()
-                .map(entry -> {
-                    List<StressAnalysis> analyses = entry.getValue();
-                    double avgScore = analyses.stream()
-                            .mapToDouble(StressAnalysis::getStressScore)
-                            .average()
-                            .orElse(0.0);
-                    String dominantLevel = rekognitionService.mapStressScoreToLevel(avgScore);
-                    
-                    List<StressAnalysisResponse> analysisResponses = analyses.stream()
-                            .map(analysis -> StressAnalysisResponse.builder()
-                                    .id(analysis.getId())
-                                    .stressScore(analysis.getStressScore())
-                                    .stressLevel(analysis.getStressLevel())
-                                    .createdAt(analysis.getCreatedAt())
-                                    .build())
-                            .collect(Collectors.toList());
-                    
-                    return WeeklyStressReportResponse.builder()
-                            .average_stress_score(avgScore)
-                            .dominant_stress_level(dominantLevel)
-                            .end_date(analyses.get(0).getCreatedAt())
-                            .start_date(analyses.get(analyses.size() - 1).getCreatedAt())
-                            .total_analyses(analyses.size())
-                            .stress_analyses(analysisResponses)
-                            .build();
-                })
-                .collect(Collectors.toList());
-
         return ApiResponse.<List<WeeklyStressReportResponse>>builder()
                 .message("Weekly stress analysis results retrieved")
-                .result(weeklyResults)
+                .result(rekognitionService.getStressByWeek())
                 .build();
     }
 
@@ -132,89 +153,32 @@ public class StressController {
     )
     @GetMapping("/monthly")
     public ApiResponse<List<MonthlyStressReportResponse>> getStressByMonth() {
-        Map<String, List<StressAnalysis>> monthlyGroups = rekognitionService.getStressByMonth();
-        List<MonthlyStressReportResponse> monthlyResults = monthlyGroups.entrySet().stream()
-                .map(entry -> {
-                    List<StressAnalysis> analyses = entry.getValue();
-                    double avgScore = analyses.stream()
-                            .mapToDouble(StressAnalysis::getStressScore)
-                            .average()
-                            .orElse(0.0);
-                    String dominantLevel = rekognitionService.mapStressScoreToLevel(avgScore);
-                    
-                    List<StressAnalysisResponse> analysisResponses = analyses.stream()
-                            .map(analysis -> StressAnalysisResponse.builder()
-                                    .id(analysis.getId())
-                                    .stressScore(analysis.getStressScore())
-                                    .stressLevel(analysis.getStressLevel())
-                                    .createdAt(analysis.getCreatedAt())
-                                    .build())
-                            .collect(Collectors.toList());
-                    
-                    return MonthlyStressReportResponse.builder()
-                            .average_stress_score(avgScore)
-                            .dominant_stress_level(dominantLevel)
-                            .end_date(analyses.get(0).getCreatedAt())
-                            .start_date(analyses.get(analyses.size() - 1).getCreatedAt())
-                            .total_analyses(analyses.size())
-                            .stress_analyses(analysisResponses)
-                            .build();
-                })
-                .collect(Collectors.toList());
-
         return ApiResponse.<List<MonthlyStressReportResponse>>builder()
                 .message("Monthly stress analysis results retrieved")
-                .result(monthlyResults)
+                .result(rekognitionService.getStressByMonth())
                 .build();
     }
 
     @GetMapping("/daily")
     public ApiResponse<List<DailyStressReportResponse>> getStressDaily() {
-        Map<String, List<StressAnalysis>> dailyGroups = rekognitionService.getStressByDay();
-        List<DailyStressReportResponse> dailyResults = dailyGroups.values().stream()
-                .map(analyses -> {
-                    double avgScore = analyses.stream()
-                            .mapToDouble(StressAnalysis::getStressScore)
-                            .average()
-                            .orElse(0.0);
-                    String dominantLevel = rekognitionService.mapStressScoreToLevel(avgScore);
-                    
-                    List<StressAnalysisResponse> analysisResponses = analyses.stream()
-                            .map(analysis -> StressAnalysisResponse.builder()
-                                    .id(analysis.getId())
-                                    .stressScore(analysis.getStressScore())
-                                    .stressLevel(analysis.getStressLevel())
-                                    .createdAt(analysis.getCreatedAt())
-                                    .build())
-                            .collect(Collectors.toList());
-
-                    return DailyStressReportResponse.builder()
-                            .average_stress_score(avgScore)
-                            .dominant_stress_level(dominantLevel)
-                            .end_date(analyses.get(0).getCreatedAt())
-                            .start_date(analyses.get(analyses.size() - 1).getCreatedAt())
-                            .total_analyses(analyses.size())
-                            .stress_analyses(analysisResponses)
-                            .build();
-                })
-                .collect(Collectors.toList());
-
         return ApiResponse.<List<DailyStressReportResponse>>builder()
                 .message("Daily stress analysis results retrieved")
-                .result(dailyResults)
+                .result(rekognitionService.getStressByDay())
                 .build();
     }
 
     @Operation(
             summary = "Analyze stress trends",
-            description = "Analyzes stress trends over time and provides insights about stress patterns."
+            description = "Analyzes stress trends over the last `duration` periods and provides insights about stress patterns. "
+                    + "Pass `alpha` (0-1] to add an EWMA-smoothed series."
     )
     @GetMapping("/trends")
     public ApiResponse<StressTrendResponse> analyzeStressTrends(
             @RequestParam(defaultValue = "day") String period,
-            @RequestParam(defaultValue = "7") int duration
+            @RequestParam(defaultValue = "7") int duration,
+            @RequestParam(required = false) Double alpha
     ) {
-        StressTrendResponse trendAnalysis = stressTrendService.analyzeTrend(period, duration);
+        StressTrendResponse trendAnalysis = stressTrendService.analyzeTrend(period, duration, alpha);
         return ApiResponse.<StressTrendResponse>builder()
                 .message("Stress trend analysis completed")
                 .result(trendAnalysis)
@@ -4,6 +4,7 @@ import com.capstone.dto.request.UserChangePasswordRequest;
 import com.capstone.dto.request.UserCreationRequest;
 import com.capstone.dto.request.UserUpdateRequest;
 import com.capstone.dto.response.ApiResponse;
+import com.capstone.dto.response.UserPageResponse;
 import com.capstone.dto.response.UserResponse;
 import com.capstone.exception.AppException;
 import com.capstone.exception.ErrorCode;
@@ -50,6 +51,16 @@ public class UserController {
                 .build();
     }
 
+    @GetMapping("/page")
+    ApiResponse<UserPageResponse> getUserPage(@RequestParam(required = false) String role,
+                                              @RequestParam(required = false) Integer page,
+                                              @RequestParam(required = false) Integer size,
+                                              @RequestParam(required = false) String sort) {
+        return ApiResponse.<UserPageResponse>builder()
+                .result(userService.getUserPage(role, page, size, sort))
+                .build();
+    }
+
     @GetMapping("/{userId}")
     @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_TEACHER')")
     ApiResponse<UserResponse> getUserById(@PathVariable("userId") String userId) {
@@ -0,0 +1,23 @@
+package com.capstone.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BlobCacheMetricsResponse {
+    private int entries;
+    private long sizeBytes;
+    private long capacityBytes;
+    private long hits;
+    private long revalidated;
+    private long misses;
+    private double hitRate;
+    private long bytesDownloaded;
+    private long staleServed;
+    private long evictions;
+}
@@ -0,0 +1,26 @@
+package com.capstone.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatConversationPageResponse {
+    // Tin nhắn trong trang, luôn theo thứ tự thời gian tăng dần
+    private List<ChatMessageDTO> messages;
+    // Còn tin nhắn cũ hơn / mới hơn ngoài trang này
+    private boolean hasOlder;
+    private boolean hasNewer;
+    // Dùng làm cursor "before" / "after" cho trang tiếp theo
+    private String oldestMessageId;
+    private String newestMessageId;
+    private LocalDateTime expiresAt;
+    private boolean expired;
+}
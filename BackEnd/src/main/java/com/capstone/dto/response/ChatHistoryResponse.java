@@ -2,6 +2,7 @@ package com.capstone.dto.response;
 
 import com.capstone.entity.ChatMessage;
 import com.capstone.entity.ChatPayment;
+import com.capstone.entity.ConversationSummary;
 import com.capstone.entity.User;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -51,4 +52,27 @@ public class ChatHistoryResponse {
                 .totalMessages(totalMessages)
                 .build();
     }
+
+    public static ChatHistoryResponse fromSummary(ConversationSummary summary) {
+        User doctor = summary.getDoctor();
+        LocalDateTime expiresAt = summary.getPaymentExpiresAt();
+        boolean isActive = expiresAt != null && expiresAt.isAfter(LocalDateTime.now());
+
+        return ChatHistoryResponse.builder()
+                .doctorId(doctor.getId())
+                .doctorName(doctor.getFirstName() + " " + doctor.getLastName())
+                .doctorAvatar(doctor.getAvtUrl())
+                .doctorSpecialty(summary.getDoctorSpecialization() != null ? summary.getDoctorSpecialization() : "Bác sĩ tư vấn")
+                .doctorRating(4.5)
+                .requestId(summary.getActiveRequestId())
+                .lastMessage(summary.getLastMessageContent())
+                .lastMessageTime(summary.getLastMessageTime())
+                .createdAt(summary.getPaymentCreatedAt())
+                .expiresAt(expiresAt)
+                .isActive(isActive)
+                .isExpired(!isActive && expiresAt != null)
+                .unreadCount(summary.getPatientUnreadCount())
+                .totalMessages(summary.getTotalMessages())
+                .build();
+    }
 }
@@ -0,0 +1,25 @@
+package com.capstone.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FaceLoginMetricsResponse {
+    private String matcher;
+    private long attempts;
+    private long authenticated;
+    private long failed;
+    private long enrollmentHits;
+    private long enrollmentMisses;
+    private double enrollmentHitRate;
+    private double averageLatencyMillis;
+    private long maxLatencyMillis;
+    private Map<String, Long> similarityHistogram;
+}
@@ -0,0 +1,21 @@
+package com.capstone.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JwtDecoderMetricsResponse {
+    private int cacheSize;
+    private int cacheCapacity;
+    private long cacheHits;
+    private long cacheMisses;
+    private double hitRate;
+    private long rejected;
+    private double averageVerifyMicros;
+    private long maxVerifyMicros;
+}
@@ -0,0 +1,21 @@
+package com.capstone.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReadReceiptResponse {
+    private String readerId;
+    private String senderId;
+    private List<String> messageIds;
+    private int count;
+    private LocalDateTime readAt;
+}
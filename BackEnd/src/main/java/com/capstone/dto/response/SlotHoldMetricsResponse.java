@@ -0,0 +1,21 @@
+package com.capstone.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlotHoldMetricsResponse {
+    private long activeHolds;
+    private long holdTtlSeconds;
+    private long acquired;
+    private long conflicts;
+    private long confirmed;
+    private long released;
+    private long expired;
+    private double conflictRate;
+}
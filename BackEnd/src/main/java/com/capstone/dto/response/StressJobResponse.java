@@ -0,0 +1,23 @@
+package com.capstone.dto.response;
+
+import com.capstone.enums.StressJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StressJobResponse {
+    private String jobId;
+    private StressJobStatus status;
+    private String stressLevel;
+    private Double stressScore;
+    private String error;
+    private LocalDateTime submittedAt;
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,27 @@
+package com.capstone.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StressPipelineMetricsResponse {
+    private int queueDepth;
+    private int queueCapacity;
+    private int activeWorkers;
+    private int concurrency;
+    private long submitted;
+    private long completed;
+    private long failed;
+    private long rejected;
+    private double averageQueueWaitMillis;
+    private double averageProcessingMillis;
+    private long maxProcessingMillis;
+    private long cacheHits;
+    private long cacheMisses;
+    private int cacheSize;
+}
@@ -31,6 +31,9 @@ public class StressTrendResponse {
         private double average_stress_score;
         private String dominant_stress_level;
         private int total_analyses;
+        private double min_stress_score;
+        private double max_stress_score;
+        private Double smoothed_stress_score; // EWMA of period averages, null unless requested
         private double change_from_previous; // percentage change from previous period
     }
 } 
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.capstone.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPageResponse {
+    private List<UserSummaryResponse> users;
+    // Trang hiện tại (bắt đầu từ 0) và kích thước trang đã áp dụng
+    private int page;
+    private int size;
+    private long totalElements;
+    private int totalPages;
+}
@@ -0,0 +1,23 @@
+package com.capstone.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Date;
+
+// Chỉ các cột cần cho danh sách người dùng; thứ tự field khớp constructor dùng trong UserRepository
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UserSummaryResponse {
+    String id;
+    String username;
+    String firstName;
+    String lastName;
+    Date birthdayDate;
+    String avtUrl;
+    Boolean banned;
+    String roleName;
+}
@@ -0,0 +1,55 @@
+package com.capstone.entity;
+
+import com.capstone.enums.LedgerAccount;
+import com.capstone.enums.LedgerEntryType;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * One movement on a user's wallet. Rows are only ever inserted: {@code amount} is signed
+ * (credits positive, debits negative) and {@code balanceAfter} is the cached balance on
+ * {@link User} right after the movement was applied, so the history of an account can be
+ * replayed and checked against the cached value.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "balance_ledger", indexes = {
+        @Index(name = "idx_balance_ledger_user_account_created", columnList = "user_id, account, created_at"),
+        @Index(name = "idx_balance_ledger_reference", columnList = "reference_id")
+})
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BalanceLedgerEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    String id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    User user;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    LedgerAccount account;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    LedgerEntryType type;
+
+    @Column(nullable = false)
+    Double amount;
+
+    @Column(nullable = false)
+    Double balanceAfter;
+
+    @Column(name = "reference_id")
+    String referenceId;
+
+    @Column(name = "created_at", nullable = false)
+    LocalDateTime createdAt;
+}
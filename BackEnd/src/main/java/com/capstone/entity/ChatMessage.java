@@ -10,7 +10,10 @@ import org.hibernate.annotations.GenericGenerator;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages", indexes = {
+        // Keyset pagination of a conversation: (sender, receiver) equality + timestamp range
+        @Index(name = "idx_chat_messages_sender_receiver_ts", columnList = "sender_id, receiver_id, timestamp")
+})
 @Data
 @Builder
 @NoArgsConstructor
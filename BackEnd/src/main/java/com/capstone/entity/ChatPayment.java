@@ -10,7 +10,10 @@ import org.hibernate.annotations.GenericGenerator;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_payments")
+@Table(name = "chat_payments", indexes = {
+        // Refund scan: unrefunded payments still awaiting the doctor's first reply, oldest first
+        @Index(name = "idx_chat_payments_awaiting_response", columnList = "refunded, doctor_first_response_at, created_at")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -51,6 +54,9 @@ public class ChatPayment {
 
     private LocalDateTime refundedAt;
 
+    // Thời điểm bác sĩ trả lời tin nhắn đầu tiên sau khi thanh toán (null = chưa phản hồi)
+    private LocalDateTime doctorFirstResponseAt;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
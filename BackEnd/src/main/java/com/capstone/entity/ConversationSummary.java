@@ -0,0 +1,59 @@
+package com.capstone.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row per patient/doctor conversation, kept current on every message write, read receipt
+ * and chat payment so that the chat history list is a single indexed lookup instead of several
+ * queries per doctor.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "conversation_summaries",
+        uniqueConstraints = @UniqueConstraint(name = "uk_conversation_summary_patient_doctor",
+                columnNames = {"patient_id", "doctor_id"}),
+        indexes = @Index(name = "idx_conversation_summary_patient_last_message",
+                columnList = "patient_id, last_message_time"))
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ConversationSummary {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    String id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "patient_id", nullable = false)
+    User patient;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "doctor_id", nullable = false)
+    User doctor;
+
+    String doctorSpecialization;
+
+    @Column(columnDefinition = "TEXT")
+    String lastMessageContent;
+
+    @Column(name = "last_message_time")
+    LocalDateTime lastMessageTime;
+
+    String lastMessageSenderId;
+
+    int totalMessages;
+
+    // Tin nhắn chưa đọc của từng phía
+    int patientUnreadCount;
+    int doctorUnreadCount;
+
+    // Thanh toán gần nhất của cuộc trò chuyện
+    String activeRequestId;
+    String activePaymentId;
+    LocalDateTime paymentCreatedAt;
+    LocalDateTime paymentExpiresAt;
+}
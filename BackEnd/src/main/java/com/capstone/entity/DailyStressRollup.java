@@ -0,0 +1,50 @@
+package com.capstone.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+/**
+ * Per-user, per-day aggregate of stress analyses. Maintained incrementally each time a new
+ * {@link StressAnalysis} is saved so that day/week/month dashboards read one row per bucket
+ * instead of the whole analysis history.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "daily_stress_rollup",
+        uniqueConstraints = @UniqueConstraint(name = "uk_daily_stress_rollup_user_date",
+                columnNames = {"user_id", "bucket_date"}))
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class DailyStressRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    String id;
+
+    @ManyToOne
+    @JoinColumn(name = "user_id", nullable = false)
+    User user;
+
+    @Column(name = "bucket_date", nullable = false)
+    LocalDate bucketDate;
+
+    int totalAnalyses;
+    double totalStressScore;
+    double minStressScore;
+    double maxStressScore;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    Date firstAnalysisAt;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    Date lastAnalysisAt;
+
+    public double getAverageStressScore() {
+        return totalAnalyses == 0 ? 0.0 : totalStressScore / totalAnalyses;
+    }
+}
@@ -0,0 +1,28 @@
+package com.capstone.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * High-water mark of a bank transaction feed: the id of the newest transaction that has been
+ * reconciled against pending deposits. Updated in the same transaction as the credits it
+ * covers, so a restart resumes exactly after the last committed batch.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "deposit_sync_state")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class DepositSyncState {
+    @Id
+    String provider;
+
+    Long lastTransactionId;
+
+    LocalDateTime updatedAt;
+}
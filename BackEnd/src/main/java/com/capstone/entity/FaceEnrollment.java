@@ -0,0 +1,40 @@
+package com.capstone.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * The face of a user's avatar as enrolled with a {@code FaceMatcher}. {@code faceRef} is the
+ * matcher's compact reference to the stored representation (a Rekognition face id, or the
+ * stub's image hash); it is valid only for the avatar and matcher it was computed from.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "face_enrollments")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class FaceEnrollment {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    String id;
+
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false, unique = true)
+    User user;
+
+    @Column(nullable = false, length = 1000)
+    String avatarUrl;
+
+    @Column(nullable = false)
+    String matcher;
+
+    @Column(nullable = false)
+    String faceRef;
+
+    LocalDateTime enrolledAt;
+}
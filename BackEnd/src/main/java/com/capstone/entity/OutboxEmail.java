@@ -0,0 +1,57 @@
+package com.capstone.entity;
+
+import com.capstone.enums.EmailStatus;
+import com.capstone.enums.EmailType;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outgoing email waiting for (or done with) SMTP delivery. Rows are written before the mail is
+ * handed to the dispatcher, so a restart or an SMTP outage only delays delivery: PENDING rows
+ * are retried from {@code nextAttemptAt} until they are SENT or run out of attempts (FAILED).
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "email_outbox", indexes = {
+        @Index(name = "idx_email_outbox_status_next_attempt", columnList = "status, next_attempt_at")
+})
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OutboxEmail {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    EmailType type;
+
+    @Column(nullable = false)
+    String recipient;
+
+    @Column(nullable = false)
+    String token;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    EmailStatus status;
+
+    @Column(nullable = false)
+    int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    LocalDateTime nextAttemptAt;
+
+    @Column(length = 500)
+    String lastError;
+
+    @Column(nullable = false)
+    LocalDateTime createdAt;
+
+    LocalDateTime sentAt;
+}
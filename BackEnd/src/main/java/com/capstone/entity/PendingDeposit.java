@@ -31,4 +31,8 @@ public class PendingDeposit {
     private Date createdAt;
 
     private boolean completed;
+
+    // SePay transaction that completed this deposit; unique so a bank transfer is credited once
+    @Column(unique = true)
+    private Long sepayTransactionId;
 }
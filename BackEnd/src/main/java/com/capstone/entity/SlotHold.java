@@ -0,0 +1,47 @@
+package com.capstone.entity;
+
+import com.capstone.enums.SlotHoldStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Short-lived claim on one appointment of a {@link DoctorSchedule}. The schedule's
+ * {@code currentAppointments} is incremented when the hold is taken; the hold is then either
+ * confirmed together with the chat payment or released (explicitly, on rollback, or by the
+ * expiry sweep once {@code expiresAt} has passed).
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "slot_holds", indexes = {
+        @Index(name = "idx_slot_holds_status_expires", columnList = "status, expires_at")
+})
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SlotHold {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    String id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "doctor_schedule_id", nullable = false)
+    DoctorSchedule schedule;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "patient_id", nullable = false)
+    User patient;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    SlotHoldStatus status;
+
+    @Column(nullable = false)
+    LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    LocalDateTime expiresAt;
+}
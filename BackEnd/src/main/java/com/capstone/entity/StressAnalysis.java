@@ -10,7 +10,8 @@ import java.util.Date;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
-@Table(name = "stress_analysis")
+@Table(name = "stress_analysis",
+        indexes = @Index(name = "idx_stress_analysis_user_created", columnList = "user_id, createdAt"))
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class StressAnalysis {
     @Id
@@ -0,0 +1,7 @@
+package com.capstone.enums;
+
+public enum EmailStatus {
+    PENDING,
+    SENT,
+    FAILED
+}
@@ -0,0 +1,6 @@
+package com.capstone.enums;
+
+public enum EmailType {
+    VERIFICATION,
+    PASSWORD_RESET
+}
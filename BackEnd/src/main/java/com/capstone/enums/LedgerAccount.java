@@ -0,0 +1,6 @@
+package com.capstone.enums;
+
+public enum LedgerAccount {
+    BALANCE,
+    DOCTOR_BALANCE
+}
@@ -0,0 +1,12 @@
+package com.capstone.enums;
+
+public enum LedgerEntryType {
+    OPENING,
+    DEPOSIT,
+    CHAT_PAYMENT,
+    CHAT_REFUND,
+    PRODUCT_ORDER,
+    DOCTOR_EARNING,
+    WITHDRAWAL_RESERVE,
+    WITHDRAWAL_RESTORE
+}
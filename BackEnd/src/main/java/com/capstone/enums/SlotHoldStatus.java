@@ -0,0 +1,8 @@
+package com.capstone.enums;
+
+public enum SlotHoldStatus {
+    HELD,
+    CONFIRMED,
+    RELEASED,
+    EXPIRED
+}
@@ -0,0 +1,13 @@
+package com.capstone.enums;
+
+public enum StressJobStatus {
+    QUEUED,
+    PROCESSING,
+    COMPLETED,
+    NO_FACE,
+    FAILED;
+
+    public boolean isFinished() {
+        return this == COMPLETED || this == NO_FACE || this == FAILED;
+    }
+}
@@ -61,6 +61,11 @@ public enum ErrorCode {
     MUSIC_NOT_FOUND(1048, "Music not found", HttpStatus.NOT_FOUND),
     VIDEO_NOT_FOUND(1049, "Video not found", HttpStatus.NOT_FOUND),
 
+    STRESS_QUEUE_FULL(1050, "Stress analysis queue is full, please try again later", HttpStatus.TOO_MANY_REQUESTS),
+    STRESS_JOB_NOT_FOUND(1051, "Stress analysis job not found", HttpStatus.NOT_FOUND),
+
+    UPLOAD_CAPACITY_EXCEEDED(1052, "Too many uploads in progress, please try again later", HttpStatus.TOO_MANY_REQUESTS),
+
     ;
 
     ErrorCode(int code, String message, HttpStatusCode statusCode) {
@@ -26,9 +26,14 @@ public class OrderMapper {
     }
 
     public OrderResponse toOrderResponse(ProductOrder order) {
-        List<OrderItemResponse> items = order.getOrderItems() == null ? 
+        return toOrderResponse(order, order.getOrderItems());
+    }
+
+    // Dùng khi order item được ghi thẳng bằng JDBC và không nằm trong order.getOrderItems()
+    public OrderResponse toOrderResponse(ProductOrder order, List<OrderItem> orderItems) {
+        List<OrderItemResponse> items = orderItems == null ? 
             new ArrayList<>() : 
-            order.getOrderItems().stream()
+            orderItems.stream()
                 .map(this::toOrderItemResponse)
                 .collect(Collectors.toList());
 
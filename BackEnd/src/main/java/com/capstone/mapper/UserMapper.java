@@ -2,6 +2,7 @@ package com.capstone.mapper;
 
 import com.capstone.dto.request.UserCreationRequest;
 import com.capstone.dto.response.UserResponse;
+import com.capstone.dto.response.UserSummaryResponse;
 import com.capstone.entity.User;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
@@ -21,4 +22,9 @@ public interface UserMapper {
     @Mapping(source = "avtUrl", target = "avtUrl")
     @Mapping(source = "banned", target = "banned")
     UserResponse toUserResponse(User user);
+
+    @Mapping(source = "roleName", target = "role.name")
+    @Mapping(target = "role.permissions", ignore = true)
+    @Mapping(target = "password", ignore = true)
+    UserResponse toUserResponse(UserSummaryResponse summary);
 }
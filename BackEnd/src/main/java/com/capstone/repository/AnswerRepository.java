@@ -4,9 +4,12 @@ import com.capstone.entity.Answer;
 import com.capstone.entity.Question;
 import com.capstone.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,4 +19,9 @@ public interface AnswerRepository extends JpaRepository<Answer, String> {
     List<Answer> findByUserOrderByCreatedAtDesc(User user);
     List<Answer> findByUserAndCreatedAtAfter(User user, LocalDateTime date);
     Optional<Answer> findByUserAndQuestion(User user, Question question);
+
+    // [userId, answerCount, totalStressScore] of answers since :from for a set of users
+    @Query("SELECT a.user.id, COUNT(a), SUM(a.stressScore) FROM Answer a " +
+           "WHERE a.user.id IN :userIds AND a.createdAt >= :from GROUP BY a.user.id")
+    List<Object[]> sumScoresSince(@Param("userIds") Collection<String> userIds, @Param("from") LocalDateTime from);
 } 
\ No newline at end of file
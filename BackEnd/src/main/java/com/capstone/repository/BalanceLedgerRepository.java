@@ -0,0 +1,22 @@
+package com.capstone.repository;
+
+import com.capstone.entity.BalanceLedgerEntry;
+import com.capstone.entity.User;
+import com.capstone.enums.LedgerAccount;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface BalanceLedgerRepository extends JpaRepository<BalanceLedgerEntry, String> {
+    // Users whose cached balance predates the ledger and has no opening entry yet
+    @Query("SELECT u FROM User u WHERE u.balance <> 0 AND NOT EXISTS (" +
+           "SELECT 1 FROM BalanceLedgerEntry e WHERE e.user = u AND e.account = com.capstone.enums.LedgerAccount.BALANCE)")
+    List<User> findUsersWithoutBalanceEntries();
+
+    @Query("SELECT u FROM User u WHERE u.doctorBalance <> 0 AND NOT EXISTS (" +
+           "SELECT 1 FROM BalanceLedgerEntry e WHERE e.user = u AND e.account = com.capstone.enums.LedgerAccount.DOCTOR_BALANCE)")
+    List<User> findUsersWithoutDoctorBalanceEntries();
+
+    boolean existsByUserIdAndAccount(String userId, LedgerAccount account);
+}
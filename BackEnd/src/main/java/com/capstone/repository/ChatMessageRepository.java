@@ -2,11 +2,15 @@ package com.capstone.repository;
 
 import com.capstone.entity.ChatMessage;
 import com.capstone.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,6 +27,40 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, String
             "ORDER BY m.timestamp ASC")
     List<ChatMessage> findConversation(@Param("user1") User user1, @Param("user2") User user2);
 
+    // Keyset pagination: the cursor is the (timestamp, id) of a message; ties on timestamp are broken by id
+    @Query("SELECT m FROM ChatMessage m JOIN FETCH m.sender JOIN FETCH m.receiver WHERE " +
+            "((m.sender = :user1 AND m.receiver = :user2) OR " +
+            "(m.sender = :user2 AND m.receiver = :user1)) " +
+            "ORDER BY m.timestamp DESC, m.id DESC")
+    List<ChatMessage> findConversationTail(@Param("user1") User user1, @Param("user2") User user2,
+                                           Pageable pageable);
+
+    @Query("SELECT m FROM ChatMessage m JOIN FETCH m.sender JOIN FETCH m.receiver WHERE " +
+            "((m.sender = :user1 AND m.receiver = :user2) OR " +
+            "(m.sender = :user2 AND m.receiver = :user1)) " +
+            "AND (m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id)) " +
+            "ORDER BY m.timestamp DESC, m.id DESC")
+    List<ChatMessage> findConversationBefore(@Param("user1") User user1, @Param("user2") User user2,
+                                             @Param("timestamp") LocalDateTime timestamp, @Param("id") String id,
+                                             Pageable pageable);
+
+    @Query("SELECT m FROM ChatMessage m JOIN FETCH m.sender JOIN FETCH m.receiver WHERE " +
+            "((m.sender = :user1 AND m.receiver = :user2) OR " +
+            "(m.sender = :user2 AND m.receiver = :user1)) " +
+            "AND (m.timestamp > :timestamp OR (m.timestamp = :timestamp AND m.id > :id)) " +
+            "ORDER BY m.timestamp ASC, m.id ASC")
+    List<ChatMessage> findConversationAfter(@Param("user1") User user1, @Param("user2") User user2,
+                                            @Param("timestamp") LocalDateTime timestamp, @Param("id") String id,
+                                            Pageable pageable);
+
+    // Marks a sender's unread messages to one receiver as read in a single statement and returns their ids.
+    // Not @Modifying: UPDATE ... RETURNING produces a result set, which is read like a query.
+    @Transactional
+    @Query(value = "UPDATE chat_messages SET read = true " +
+            "WHERE receiver_id = :receiverId AND sender_id = :senderId AND read = false " +
+            "RETURNING id", nativeQuery = true)
+    List<String> markReadFromSender(@Param("receiverId") String receiverId, @Param("senderId") String senderId);
+
     @Query("SELECT COUNT(m) FROM ChatMessage m WHERE m.receiver = :user AND m.read = false")
     long countUnreadMessages(@Param("user") User user);
 
@@ -48,6 +86,15 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, String
            "ORDER BY m.timestamp DESC")
     Optional<ChatMessage> findTopBySenderAndReceiverOrderByTimestampDesc(@Param("user1") User user1, @Param("user2") User user2);
     
+    @Query("SELECT COUNT(m) FROM ChatMessage m WHERE " +
+           "(m.sender = :user1 AND m.receiver = :user2) OR " +
+           "(m.sender = :user2 AND m.receiver = :user1)")
+    long countConversation(@Param("user1") User user1, @Param("user2") User user2);
+
+    // Every (sender, receiver) pair that has exchanged messages, used to backfill conversation summaries
+    @Query("SELECT DISTINCT m.sender, m.receiver FROM ChatMessage m")
+    List<Object[]> findDistinctSenderReceiverPairs();
+
     // Method to check if doctor has responded to patient after payment
     @Query("SELECT CASE WHEN COUNT(m) > 0 THEN true ELSE false END FROM ChatMessage m " +
            "JOIN ChatPayment cp ON cp.chatRequest.patient = m.receiver AND cp.chatRequest.doctor = m.sender " +
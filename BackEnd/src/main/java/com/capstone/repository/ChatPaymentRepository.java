@@ -3,10 +3,13 @@ package com.capstone.repository;
 import com.capstone.entity.ChatPayment;
 import com.capstone.entity.ChatRequest;
 import com.capstone.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -35,14 +38,57 @@ public interface ChatPaymentRepository extends JpaRepository<ChatPayment, String
            "AND cp.expiresAt > :now")
     boolean existsByChatRequestAndExpiresAtGreaterThan(@Param("chatRequest") ChatRequest chatRequest, @Param("now") LocalDateTime now);
     
+    // (requestId, patientId, doctorId, expiresAt) of every paid session still running, used to warm the session registry
+    @Query("SELECT cr.id, cr.patient.id, cr.doctor.id, cp.expiresAt FROM ChatPayment cp " +
+           "JOIN cp.chatRequest cr " +
+           "WHERE cp.expiresAt > :now " +
+           "AND cr.status = com.capstone.enums.RequestStatus.APPROVED")
+    List<Object[]> findActiveSessions(@Param("now") LocalDateTime now);
+
+    // Approved requests whose paid time ran out while nothing was tracking them
+    @Query("SELECT cr.id FROM ChatPayment cp " +
+           "JOIN cp.chatRequest cr " +
+           "WHERE cp.expiresAt <= :now " +
+           "AND cr.status = com.capstone.enums.RequestStatus.APPROVED")
+    List<String> findExpiredApprovedRequestIds(@Param("now") LocalDateTime now);
+
     // Refund related queries
+    // Payments whose doctor has not replied yet and whose response window closed before the cutoff
     @Query("SELECT cp FROM ChatPayment cp " +
-           "JOIN cp.chatRequest cr " +
+           "JOIN FETCH cp.chatRequest cr " +
            "WHERE cp.refunded = false " +
-           "AND cp.createdAt < :timeoutThreshold " +
-           "AND cr.status = com.capstone.enums.RequestStatus.APPROVED")
-    List<ChatPayment> findPaymentsEligibleForRefund(@Param("timeoutThreshold") LocalDateTime timeoutThreshold);
-    
+           "AND cp.doctorFirstResponseAt IS NULL " +
+           "AND cp.createdAt < :cutoff " +
+           "AND cr.status IN (com.capstone.enums.RequestStatus.APPROVED, com.capstone.enums.RequestStatus.PAYMENT_REQUIRED) " +
+           "ORDER BY cp.createdAt ASC, cp.id ASC")
+    List<ChatPayment> findAwaitingDoctorResponse(@Param("cutoff") LocalDateTime cutoff);
+
+    // Same as findAwaitingDoctorResponse, one keyset page at a time after the (createdAt, id) cursor
+    @Query("SELECT cp FROM ChatPayment cp " +
+           "JOIN FETCH cp.chatRequest cr " +
+           "WHERE cp.refunded = false " +
+           "AND cp.doctorFirstResponseAt IS NULL " +
+           "AND cp.createdAt < :cutoff " +
+           "AND cr.status IN (com.capstone.enums.RequestStatus.APPROVED, com.capstone.enums.RequestStatus.PAYMENT_REQUIRED) " +
+           "AND (cp.createdAt > :afterCreatedAt OR (cp.createdAt = :afterCreatedAt AND cp.id > :afterId)) " +
+           "ORDER BY cp.createdAt ASC, cp.id ASC")
+    List<ChatPayment> findAwaitingDoctorResponseAfter(@Param("cutoff") LocalDateTime cutoff,
+                                                      @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                                      @Param("afterId") String afterId,
+                                                      Pageable pageable);
+
+    // Records the doctor's first reply on every paid request between the pair that is still waiting for one
+    @Transactional
+    @Modifying
+    @Query("UPDATE ChatPayment cp SET cp.doctorFirstResponseAt = :respondedAt " +
+           "WHERE cp.doctorFirstResponseAt IS NULL " +
+           "AND cp.refunded = false " +
+           "AND cp.createdAt < :respondedAt " +
+           "AND cp.chatRequest.id IN (SELECT cr.id FROM ChatRequest cr WHERE cr.patient = :patient AND cr.doctor = :doctor)")
+    int recordDoctorFirstResponse(@Param("patient") User patient,
+                                  @Param("doctor") User doctor,
+                                  @Param("respondedAt") LocalDateTime respondedAt);
+
     @Query("SELECT cp FROM ChatPayment cp " +
            "JOIN cp.chatRequest cr " +
            "WHERE cr.patient = :patient " +
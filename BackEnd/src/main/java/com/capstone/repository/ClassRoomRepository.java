@@ -3,13 +3,25 @@ package com.capstone.repository;
 import com.capstone.entity.ClassRoom;
 import com.capstone.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ClassRoomRepository extends JpaRepository<ClassRoom, String> {
     List<ClassRoom> findByTeacher(User teacher);
     
     List<ClassRoom> findByStudentsContaining(User student);
+
+    @Query("SELECT c FROM ClassRoom c LEFT JOIN FETCH c.students WHERE c.id = :id")
+    Optional<ClassRoom> findWithStudentsById(@Param("id") String id);
+
+    @Query("SELECT DISTINCT c FROM ClassRoom c LEFT JOIN FETCH c.students WHERE c.teacher = :teacher")
+    List<ClassRoom> findWithStudentsByTeacher(@Param("teacher") User teacher);
+
+    @Query("SELECT COUNT(c) > 0 FROM ClassRoom c WHERE c.id = :id AND c.teacher.username = :username")
+    boolean isTaughtBy(@Param("id") String id, @Param("username") String username);
 } 
\ No newline at end of file
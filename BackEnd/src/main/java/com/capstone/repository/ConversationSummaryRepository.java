@@ -0,0 +1,73 @@
+package com.capstone.repository;
+
+import com.capstone.entity.ConversationSummary;
+import com.capstone.entity.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface ConversationSummaryRepository extends JpaRepository<ConversationSummary, String> {
+    Optional<ConversationSummary> findByPatientAndDoctor(User patient, User doctor);
+
+    @Query("SELECT s FROM ConversationSummary s JOIN FETCH s.doctor d LEFT JOIN FETCH d.role " +
+           "WHERE s.patient = :patient AND s.totalMessages > 0 " +
+           "ORDER BY s.lastMessageTime DESC")
+    List<ConversationSummary> findHistoryByPatient(@Param("patient") User patient);
+
+    // Atomically fold one new message into the summary; returns 0 when the summary does not exist yet
+    @Modifying
+    @Query("UPDATE ConversationSummary s SET " +
+           "s.totalMessages = s.totalMessages + 1, " +
+           "s.patientUnreadCount = s.patientUnreadCount + :patientUnread, " +
+           "s.doctorUnreadCount = s.doctorUnreadCount + :doctorUnread, " +
+           "s.lastMessageContent = CASE WHEN s.lastMessageTime IS NULL OR :timestamp >= s.lastMessageTime THEN :content ELSE s.lastMessageContent END, " +
+           "s.lastMessageSenderId = CASE WHEN s.lastMessageTime IS NULL OR :timestamp >= s.lastMessageTime THEN :senderId ELSE s.lastMessageSenderId END, " +
+           "s.lastMessageTime = CASE WHEN s.lastMessageTime IS NULL OR :timestamp >= s.lastMessageTime THEN :timestamp ELSE s.lastMessageTime END " +
+           "WHERE s.patient = :patient AND s.doctor = :doctor")
+    int recordMessage(@Param("patient") User patient,
+                      @Param("doctor") User doctor,
+                      @Param("content") String content,
+                      @Param("senderId") String senderId,
+                      @Param("timestamp") LocalDateTime timestamp,
+                      @Param("patientUnread") int patientUnread,
+                      @Param("doctorUnread") int doctorUnread);
+
+    @Modifying
+    @Query("UPDATE ConversationSummary s SET s.patientUnreadCount = 0 WHERE s.patient = :patient AND s.doctor = :doctor")
+    int clearPatientUnread(@Param("patient") User patient, @Param("doctor") User doctor);
+
+    @Modifying
+    @Query("UPDATE ConversationSummary s SET s.doctorUnreadCount = 0 WHERE s.patient = :patient AND s.doctor = :doctor")
+    int clearDoctorUnread(@Param("patient") User patient, @Param("doctor") User doctor);
+
+    @Modifying
+    @Query("UPDATE ConversationSummary s SET " +
+           "s.activeRequestId = :requestId, " +
+           "s.activePaymentId = :paymentId, " +
+           "s.paymentCreatedAt = :createdAt, " +
+           "s.paymentExpiresAt = :expiresAt " +
+           "WHERE s.patient = :patient AND s.doctor = :doctor")
+    int recordPayment(@Param("patient") User patient,
+                      @Param("doctor") User doctor,
+                      @Param("requestId") String requestId,
+                      @Param("paymentId") String paymentId,
+                      @Param("createdAt") LocalDateTime createdAt,
+                      @Param("expiresAt") LocalDateTime expiresAt);
+
+    // Claims the row for a conversation without a summary; returns 0 when another transaction created it.
+    // ON CONFLICT waits for that transaction, so a following update sees its committed row.
+    @Modifying
+    @Query(value = "INSERT INTO conversation_summaries (id, patient_id, doctor_id, total_messages, " +
+           "patient_unread_count, doctor_unread_count) " +
+           "VALUES (:id, :patientId, :doctorId, 0, 0, 0) " +
+           "ON CONFLICT (patient_id, doctor_id) DO NOTHING",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("id") String id,
+                       @Param("patientId") String patientId,
+                       @Param("doctorId") String doctorId);
+}
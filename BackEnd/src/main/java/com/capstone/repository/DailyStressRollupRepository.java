@@ -0,0 +1,66 @@
+package com.capstone.repository;
+
+import com.capstone.entity.DailyStressRollup;
+import com.capstone.entity.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+public interface DailyStressRollupRepository extends JpaRepository<DailyStressRollup, String> {
+    List<DailyStressRollup> findByUserOrderByBucketDateDesc(User user);
+    List<DailyStressRollup> findByUserAndBucketDateBetweenOrderByBucketDateDesc(User user, LocalDate from, LocalDate to);
+
+    // [userId, totalAnalyses, totalStressScore, lastAnalysisAt] of one day for a set of users
+    @Query("SELECT r.user.id, r.totalAnalyses, r.totalStressScore, r.lastAnalysisAt FROM DailyStressRollup r " +
+           "WHERE r.user.id IN :userIds AND r.bucketDate = :day")
+    List<Object[]> findDayTotals(@Param("userIds") Collection<String> userIds, @Param("day") LocalDate day);
+
+    // [userId, totalAnalyses, totalStressScore] summed over a date range for a set of users
+    @Query("SELECT r.user.id, SUM(r.totalAnalyses), SUM(r.totalStressScore) FROM DailyStressRollup r " +
+           "WHERE r.user.id IN :userIds AND r.bucketDate BETWEEN :from AND :to GROUP BY r.user.id")
+    List<Object[]> sumTotalsBetween(@Param("userIds") Collection<String> userIds,
+                                    @Param("from") LocalDate from,
+                                    @Param("to") LocalDate to);
+
+    // [userId, earliest firstAnalysisAt] of every user with rollups
+    @Query("SELECT r.user.id, MIN(r.firstAnalysisAt) FROM DailyStressRollup r GROUP BY r.user.id")
+    List<Object[]> findEarliestAnalysisPerUser();
+
+    @Query("SELECT MIN(r.firstAnalysisAt) FROM DailyStressRollup r WHERE r.user.id = :userId")
+    Date findEarliestAnalysisAt(@Param("userId") String userId);
+
+    @Modifying
+    @Query("DELETE FROM DailyStressRollup r WHERE r.user.id = :userId")
+    int deleteAllByUserId(@Param("userId") String userId);
+
+    // Serializes rollup writes of one user until the transaction ends, so a rebuild never interleaves with accumulate
+    @Query(value = "SELECT COUNT(*) FROM (SELECT pg_advisory_xact_lock(hashtext('daily_stress_rollup:' || :userId))) l",
+           nativeQuery = true)
+    long lockUser(@Param("userId") String userId);
+
+    // Atomically fold one analysis into its bucket, creating the bucket for the first analysis of the day.
+    // ON CONFLICT keeps two concurrent first analyses from both inserting and failing on the unique key.
+    @Modifying
+    @Query(value = "INSERT INTO daily_stress_rollup (id, user_id, bucket_date, total_analyses, total_stress_score, " +
+           "min_stress_score, max_stress_score, first_analysis_at, last_analysis_at) " +
+           "VALUES (:id, :userId, :bucketDate, 1, :score, :score, :score, :createdAt, :createdAt) " +
+           "ON CONFLICT (user_id, bucket_date) DO UPDATE SET " +
+           "total_analyses = daily_stress_rollup.total_analyses + 1, " +
+           "total_stress_score = daily_stress_rollup.total_stress_score + EXCLUDED.total_stress_score, " +
+           "min_stress_score = LEAST(daily_stress_rollup.min_stress_score, EXCLUDED.min_stress_score), " +
+           "max_stress_score = GREATEST(daily_stress_rollup.max_stress_score, EXCLUDED.max_stress_score), " +
+           "first_analysis_at = LEAST(daily_stress_rollup.first_analysis_at, EXCLUDED.first_analysis_at), " +
+           "last_analysis_at = GREATEST(daily_stress_rollup.last_analysis_at, EXCLUDED.last_analysis_at)",
+           nativeQuery = true)
+    int accumulate(@Param("id") String id,
+                   @Param("userId") String userId,
+                   @Param("bucketDate") LocalDate bucketDate,
+                   @Param("score") double score,
+                   @Param("createdAt") Date createdAt);
+}
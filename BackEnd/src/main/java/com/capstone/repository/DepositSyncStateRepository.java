@@ -0,0 +1,7 @@
+package com.capstone.repository;
+
+import com.capstone.entity.DepositSyncState;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface DepositSyncStateRepository extends JpaRepository<DepositSyncState, String> {
+}
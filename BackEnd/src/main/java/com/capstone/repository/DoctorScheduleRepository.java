@@ -49,6 +49,9 @@ public interface DoctorScheduleRepository extends JpaRepository<DoctorSchedule,
            "AND ds.currentAppointments > 0")
     int decrementCurrentAppointments(@Param("scheduleId") String scheduleId);
     
+    @Query("SELECT ds.currentAppointments FROM DoctorSchedule ds WHERE ds.id = :scheduleId")
+    Optional<Integer> findCurrentAppointments(@Param("scheduleId") String scheduleId);
+    
     // Find schedules by date and time that have available slots
     @Query("SELECT ds FROM DoctorSchedule ds WHERE ds.date = :date " +
            "AND ds.startTime <= :currentTime " +
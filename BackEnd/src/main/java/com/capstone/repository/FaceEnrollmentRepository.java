@@ -0,0 +1,14 @@
+package com.capstone.repository;
+
+import com.capstone.entity.FaceEnrollment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface FaceEnrollmentRepository extends JpaRepository<FaceEnrollment, String> {
+
+    @Query("SELECT e FROM FaceEnrollment e WHERE e.user.id = :userId")
+    Optional<FaceEnrollment> findByUserId(@Param("userId") String userId);
+}
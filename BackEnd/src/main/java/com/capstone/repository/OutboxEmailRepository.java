@@ -0,0 +1,39 @@
+package com.capstone.repository;
+
+import com.capstone.entity.OutboxEmail;
+import com.capstone.enums.EmailStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxEmailRepository extends JpaRepository<OutboxEmail, String> {
+
+    @Query("SELECT e.id FROM OutboxEmail e " +
+           "WHERE e.status = com.capstone.enums.EmailStatus.PENDING AND e.nextAttemptAt <= :now " +
+           "ORDER BY e.nextAttemptAt ASC")
+    List<String> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxEmail e SET e.status = com.capstone.enums.EmailStatus.SENT, " +
+           "e.attempts = e.attempts + 1, e.sentAt = :sentAt, e.lastError = null " +
+           "WHERE e.id = :id AND e.status = com.capstone.enums.EmailStatus.PENDING")
+    int markSent(@Param("id") String id, @Param("sentAt") LocalDateTime sentAt);
+
+    // Records a failed attempt; the row stays PENDING until nextAttemptAt unless it is given up on
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxEmail e SET e.status = :status, e.attempts = e.attempts + 1, " +
+           "e.nextAttemptAt = :nextAttemptAt, e.lastError = :error " +
+           "WHERE e.id = :id AND e.status = com.capstone.enums.EmailStatus.PENDING")
+    int markAttemptFailed(@Param("id") String id,
+                          @Param("status") EmailStatus status,
+                          @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                          @Param("error") String error);
+}
@@ -3,6 +3,9 @@ package com.capstone.repository;
 import com.capstone.entity.PendingDeposit;
 import com.capstone.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Date;
 import java.util.List;
@@ -20,4 +23,10 @@ public interface PendingDepositRepository extends JpaRepository<PendingDeposit,
     
     // Find all completed deposits (for admin)
     List<PendingDeposit> findByCompletedTrueOrderByCreatedAtDesc();
+
+    // Completes a deposit only once; returns 0 if it was already completed by an earlier transaction
+    @Modifying
+    @Query("UPDATE PendingDeposit d SET d.completed = true, d.sepayTransactionId = :transactionId " +
+           "WHERE d.id = :id AND d.completed = false")
+    int markCompleted(@Param("id") String id, @Param("transactionId") Long transactionId);
 }
@@ -0,0 +1,31 @@
+package com.capstone.repository;
+
+import com.capstone.entity.SlotHold;
+import com.capstone.enums.SlotHoldStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface SlotHoldRepository extends JpaRepository<SlotHold, String> {
+    long countByStatus(SlotHoldStatus status);
+
+    @Query("SELECT h.schedule.id FROM SlotHold h WHERE h.id = :id")
+    Optional<String> findScheduleId(@Param("id") String id);
+
+    @Query("SELECT h.id FROM SlotHold h " +
+           "WHERE h.status = com.capstone.enums.SlotHoldStatus.HELD AND h.expiresAt < :now " +
+           "ORDER BY h.expiresAt ASC")
+    List<String> findExpiredHoldIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Moves a hold out of HELD; returns 0 if it was already confirmed, released or expired
+    @Modifying
+    @Query("UPDATE SlotHold h SET h.status = :status " +
+           "WHERE h.id = :id AND h.status = com.capstone.enums.SlotHoldStatus.HELD")
+    int finishHold(@Param("id") String id, @Param("status") SlotHoldStatus status);
+}
@@ -4,16 +4,36 @@ import com.capstone.entity.StressAnalysis;
 import com.capstone.entity.User;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import java.util.List;
+import java.util.stream.Stream;
 import java.util.Date;
 
 public interface StressAnalysisRepository extends JpaRepository<StressAnalysis, String> {
     List<StressAnalysis> findByUserId(String userId);
     List<StressAnalysis> findByUserOrderByCreatedAtDesc(User user);
     List<StressAnalysis> findByUserAndCreatedAtBetween(User user, Date startDate, Date endDate);
+    List<StressAnalysis> findByUserAndCreatedAtBetweenOrderByCreatedAtDesc(User user, Date startDate, Date endDate);
     
     // Find top N most recent stress analyses
     List<StressAnalysis> findFirst5ByUserOrderByCreatedAtDesc(User user);
+
+    // [userId, earliest createdAt] of every user with analyses
+    @Query("SELECT s.user.id, MIN(s.createdAt) FROM StressAnalysis s GROUP BY s.user.id")
+    List<Object[]> findEarliestAnalysisPerUser();
+
+    // Streams only (createdAt, stressScore) for a time window; caller must hold a transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT s.createdAt AS createdAt, s.stressScore AS stressScore FROM StressAnalysis s " +
+           "WHERE s.user = :user AND s.createdAt >= :from AND s.createdAt < :to")
+    Stream<ScoreSample> streamScores(@Param("user") User user, @Param("from") Date from, @Param("to") Date to);
+
+    interface ScoreSample {
+        Date getCreatedAt();
+        double getStressScore();
+    }
 }
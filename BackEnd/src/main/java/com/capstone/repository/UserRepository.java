@@ -1,9 +1,17 @@
 package com.capstone.repository;
 
+import com.capstone.dto.response.UserSummaryResponse;
 import com.capstone.entity.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +19,46 @@ public interface UserRepository extends JpaRepository<User, String> {
     Optional<User> findByUsername(String username);
     boolean existsByUsername(String username);
     Optional<User> findByVerificationToken(String token);
+
+    @Query("SELECT u FROM User u LEFT JOIN FETCH u.role r LEFT JOIN FETCH r.permissions WHERE u.username = :username")
+    Optional<User> findWithRoleByUsername(@Param("username") String username);
+
+    // Role.name là khóa chính của role, nên lọc trên u.role.name chỉ đọc cột role_id, không join
+    @Query("SELECT new com.capstone.dto.response.UserSummaryResponse(u.id, u.username, u.firstName, u.lastName, " +
+            "u.birthdayDate, u.avtUrl, u.banned, u.role.name) FROM User u WHERE u.role.name IN :roleNames " +
+            "ORDER BY u.username")
+    List<UserSummaryResponse> findSummariesByRoleNames(@Param("roleNames") Collection<String> roleNames);
+
+    @Query(value = "SELECT new com.capstone.dto.response.UserSummaryResponse(u.id, u.username, u.firstName, u.lastName, " +
+            "u.birthdayDate, u.avtUrl, u.banned, u.role.name) FROM User u WHERE u.role.name IN :roleNames",
+            countQuery = "SELECT COUNT(u) FROM User u WHERE u.role.name IN :roleNames")
+    Page<UserSummaryResponse> findSummariesByRoleNames(@Param("roleNames") Collection<String> roleNames, Pageable pageable);
+
+    // Atomic wallet updates: only the balance column is written, debits fail (0 rows) instead of going negative
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE User u SET u.balance = u.balance + :amount WHERE u.id = :id")
+    int creditBalance(@Param("id") String id, @Param("amount") double amount);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE User u SET u.balance = u.balance - :amount WHERE u.id = :id AND u.balance >= :amount")
+    int debitBalance(@Param("id") String id, @Param("amount") double amount);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE User u SET u.doctorBalance = u.doctorBalance + :amount WHERE u.id = :id")
+    int creditDoctorBalance(@Param("id") String id, @Param("amount") double amount);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE User u SET u.doctorBalance = u.doctorBalance - :amount WHERE u.id = :id AND u.doctorBalance >= :amount")
+    int debitDoctorBalance(@Param("id") String id, @Param("amount") double amount);
+
+    // Takes the user's row lock without changing it, serializing with the wallet updates above
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE User u SET u.balance = u.balance WHERE u.id = :id")
+    int lockBalances(@Param("id") String id);
+
+    @Query("SELECT u.balance FROM User u WHERE u.id = :id")
+    Optional<Double> findBalance(@Param("id") String id);
+
+    @Query("SELECT u.doctorBalance FROM User u WHERE u.id = :id")
+    Optional<Double> findDoctorBalance(@Param("id") String id);
 }
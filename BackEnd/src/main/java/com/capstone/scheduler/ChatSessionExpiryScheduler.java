@@ -0,0 +1,52 @@
+package com.capstone.scheduler;
+
+import com.capstone.service.ActiveChatSessionRegistry;
+import com.capstone.service.ChatPaymentService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Drives the {@link ActiveChatSessionRegistry} timer wheel and applies the side effects of
+ * expired chat sessions (PAYMENT_REQUIRED status, slot release) off the message send path.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChatSessionExpiryScheduler {
+
+    private final ActiveChatSessionRegistry activeChatSessionRegistry;
+    private final ChatPaymentService chatPaymentService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadActiveSessions() {
+        try {
+            List<String> expiredRequestIds = chatPaymentService.loadActiveChatSessions();
+            expiredRequestIds.forEach(this::expire);
+        } catch (Exception e) {
+            log.error("Failed to load active chat sessions", e);
+        }
+    }
+
+    @Scheduled(fixedDelay = 1000)
+    public void sweepExpiredSessions() {
+        List<ActiveChatSessionRegistry.ChatSession> expired =
+                activeChatSessionRegistry.advance(System.currentTimeMillis());
+        for (ActiveChatSessionRegistry.ChatSession session : expired) {
+            expire(session.getRequestId());
+        }
+    }
+
+    private void expire(String chatRequestId) {
+        try {
+            chatPaymentService.expireChatSession(chatRequestId);
+        } catch (Exception e) {
+            log.error("Failed to expire chat request {}: {}", chatRequestId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.capstone.service;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * In-process registry of paid chat sessions keyed by (patient, doctor), so that the message
+ * send path answers "is this chat paid for?" with a single map lookup instead of a query.
+ *
+ * <p>Expiry is tracked on a hashed timer wheel of one-second ticks: each session sits in the
+ * bucket of its expiry tick and {@link #advance(long)} only visits the buckets whose tick has
+ * passed since the previous call. Sessions that outlive one turn of the wheel simply stay in
+ * their bucket until their deadline is reached. A session extended by a later payment on the
+ * same request is dropped from the wheel without being reported as expired.
+ */
+@Component
+public class ActiveChatSessionRegistry {
+    private static final long TICK_MILLIS = 1000L;
+    private static final int WHEEL_SIZE = 512;
+
+    private final Map<String, ChatSession> sessions = new ConcurrentHashMap<>();
+    private final List<Queue<ChatSession>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private long lastTick = System.currentTimeMillis() / TICK_MILLIS;
+
+    public ActiveChatSessionRegistry() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    /**
+     * Registers (or extends) the paid session of a patient/doctor pair. An earlier expiry never
+     * replaces a later one.
+     */
+    public void register(String requestId, String patientId, String doctorId, LocalDateTime expiresAt) {
+        long expiresAtMillis = expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        ChatSession session = new ChatSession(key(patientId, doctorId), requestId, patientId, doctorId, expiresAtMillis);
+        ChatSession current = sessions.merge(session.key, session,
+                (existing, added) -> added.expiresAtMillis >= existing.expiresAtMillis ? added : existing);
+        if (current == session) {
+            long tick = Math.max(expiresAtMillis / TICK_MILLIS, System.currentTimeMillis() / TICK_MILLIS + 1);
+            wheel.get((int) (tick % WHEEL_SIZE)).add(session);
+        }
+    }
+
+    public boolean isActive(String patientId, String doctorId) {
+        ChatSession session = sessions.get(key(patientId, doctorId));
+        return session != null && session.expiresAtMillis > System.currentTimeMillis();
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Moves the wheel up to {@code nowMillis} and returns the sessions that expired on the way.
+     */
+    public synchronized List<ChatSession> advance(long nowMillis) {
+        long currentTick = nowMillis / TICK_MILLIS;
+        List<ChatSession> expired = new ArrayList<>();
+        if (currentTick <= lastTick) {
+            return expired;
+        }
+
+        // Sau một vòng đầy đủ mọi bucket đều đã được duyệt, không cần quay tiếp
+        long ticks = Math.min(currentTick - lastTick, WHEEL_SIZE);
+        for (long i = 1; i <= ticks; i++) {
+            Iterator<ChatSession> bucket = wheel.get((int) ((lastTick + i) % WHEEL_SIZE)).iterator();
+            while (bucket.hasNext()) {
+                ChatSession session = bucket.next();
+                if (session.expiresAtMillis > nowMillis) {
+                    continue;
+                }
+                bucket.remove();
+                if (sessions.remove(session.key, session)) {
+                    expired.add(session);
+                } else {
+                    // Đã bị thay bởi phiên mới hơn; vẫn báo hết hạn nếu phiên mới thuộc yêu cầu khác
+                    ChatSession current = sessions.get(session.key);
+                    if (current == null || !current.requestId.equals(session.requestId)) {
+                        expired.add(session);
+                    }
+                }
+            }
+        }
+        lastTick = currentTick;
+        return expired;
+    }
+
+    private static String key(String patientId, String doctorId) {
+        return patientId + ":" + doctorId;
+    }
+
+    public static class ChatSession {
+        private final String key;
+        private final String requestId;
+        private final String patientId;
+        private final String doctorId;
+        private final long expiresAtMillis;
+
+        ChatSession(String key, String requestId, String patientId, String doctorId, long expiresAtMillis) {
+            this.key = key;
+            this.requestId = requestId;
+            this.patientId = patientId;
+            this.doctorId = doctorId;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public String getRequestId() {
+            return requestId;
+        }
+
+        public String getPatientId() {
+            return patientId;
+        }
+
+        public String getDoctorId() {
+            return doctorId;
+        }
+
+        public long getExpiresAtMillis() {
+            return expiresAtMillis;
+        }
+    }
+}
@@ -1,58 +1,89 @@
 package com.capstone.service;
 
 import com.capstone.dto.response.AuthenticationResponse;
+import com.capstone.dto.response.FaceLoginMetricsResponse;
+import com.capstone.entity.FaceEnrollment;
 import com.capstone.entity.User;
 import com.capstone.exception.AppException;
 import com.capstone.exception.ErrorCode;
 import com.capstone.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.core.SdkBytes;
-import software.amazon.awssdk.services.rekognition.RekognitionClient;
-import software.amazon.awssdk.services.rekognition.model.CompareFacesRequest;
-import software.amazon.awssdk.services.rekognition.model.CompareFacesResponse;
-import software.amazon.awssdk.services.rekognition.model.Image;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Face login against the face enrolled from the user's avatar. The avatar is enrolled once
+ * (at upload, or lazily on the first login after it changed); each login then only sends the
+ * selfie to the {@link FaceMatcher}.
+ */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class AuthFaceService {
-    private final RekognitionClient rekognitionClient;
+    private static final float SIMILARITY_THRESHOLD = 90F;
+    // Cận trên của từng nhóm trong histogram độ tương đồng
+    private static final int[] HISTOGRAM_BOUNDS = {50, 70, 80, 90, 95, 100};
+
     private final UserRepository userRepository;
     private final CloudinaryService cloudinaryService;
-    private final AuthenticationService  authenticationService;
+    private final AuthenticationService authenticationService;
+    private final FaceEnrollmentService faceEnrollmentService;
+    private final FaceMatcher faceMatcher;
+
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder authenticated = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder enrollmentHits = new LongAdder();
+    private final LongAdder enrollmentMisses = new LongAdder();
+    private final LongAdder totalLatencyMillis = new LongAdder();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+    private final LongAdder[] similarityBuckets = new LongAdder[HISTOGRAM_BOUNDS.length];
+
+    public AuthFaceService(UserRepository userRepository,
+                           CloudinaryService cloudinaryService,
+                           AuthenticationService authenticationService,
+                           FaceEnrollmentService faceEnrollmentService,
+                           FaceMatcher faceMatcher) {
+        this.userRepository = userRepository;
+        this.cloudinaryService = cloudinaryService;
+        this.authenticationService = authenticationService;
+        this.faceEnrollmentService = faceEnrollmentService;
+        this.faceMatcher = faceMatcher;
+        for (int i = 0; i < similarityBuckets.length; i++) {
+            similarityBuckets[i] = new LongAdder();
+        }
+    }
 
     public AuthenticationResponse compareFaces(String username, byte[] targetImageBytes) {
         User user;
         user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
         log.info("Compare faces for {}", user.getUsername());
+        attempts.increment();
+        long startedAt = System.currentTimeMillis();
         try {
             String userImageUrl = user.getAvtUrl();
             if (userImageUrl == null || userImageUrl.isEmpty()) {
                 throw new AppException(ErrorCode.INVALID_IMAGE_URL);
             }
 
-            byte[] sourceImageBytes = cloudinaryService.downloadFile(userImageUrl);
-
-            Image source = Image.builder()
-                    .bytes(SdkBytes.fromByteArray(sourceImageBytes))
-                    .build();
+            FaceEnrollment enrollment = faceEnrollmentService.findCurrent(user).orElse(null);
+            if (enrollment != null) {
+                enrollmentHits.increment();
+            } else {
+                // Avatar chưa được đăng ký (tài khoản cũ hoặc avatar mới) -> đăng ký một lần
+                enrollmentMisses.increment();
+                enrollment = faceEnrollmentService.enroll(user, cloudinaryService.downloadFile(userImageUrl));
+            }
 
-            Image target = Image.builder()
-                    .bytes(SdkBytes.fromByteArray(targetImageBytes))
-                    .build();
-            CompareFacesRequest request = CompareFacesRequest.builder()
-                    .sourceImage(source)
-                    .targetImage(target)
-                    .similarityThreshold(90F)
-                    .build();            CompareFacesResponse response = rekognitionClient.compareFaces(request);
-            boolean result = !response.faceMatches().isEmpty() &&
-                    response.faceMatches().get(0).similarity() > 90;
-            if (result){
+            float similarity = faceMatcher.match(enrollment.getFaceRef(), targetImageBytes);
+            recordSimilarity(similarity);
+            if (similarity > SIMILARITY_THRESHOLD) {
+                authenticated.increment();
                 String token = authenticationService.generateToken(user);
                 return AuthenticationResponse.builder()
                         .authenticated(true)
@@ -63,14 +94,52 @@ public class AuthFaceService {
                     .authenticated(false)
                     .build();
 
-
         } catch (IOException e) {
+            failed.increment();
             log.error("Error downloading image from URL: {}", e.getMessage(), e);
             throw new AppException(ErrorCode.FAILED_TO_PROCESS_IMAGE);
+        } catch (AppException e) {
+            failed.increment();
+            throw e;
         } catch (Exception e) {
+            failed.increment();
             log.error("Error comparing faces: {}", e.getMessage(), e);
             throw new AppException(ErrorCode.FACE_COMPARISON_FAILED);
+        } finally {
+            long latency = System.currentTimeMillis() - startedAt;
+            totalLatencyMillis.add(latency);
+            maxLatencyMillis.accumulateAndGet(latency, Math::max);
+        }
+    }
+
+    public FaceLoginMetricsResponse getMetrics() {
+        long lookups = enrollmentHits.sum() + enrollmentMisses.sum();
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        int lower = 0;
+        for (int i = 0; i < HISTOGRAM_BOUNDS.length; i++) {
+            histogram.put(lower + "-" + HISTOGRAM_BOUNDS[i], similarityBuckets[i].sum());
+            lower = HISTOGRAM_BOUNDS[i];
         }
+        return FaceLoginMetricsResponse.builder()
+                .matcher(faceMatcher.name())
+                .attempts(attempts.sum())
+                .authenticated(authenticated.sum())
+                .failed(failed.sum())
+                .enrollmentHits(enrollmentHits.sum())
+                .enrollmentMisses(enrollmentMisses.sum())
+                .enrollmentHitRate(lookups == 0 ? 0.0 : (double) enrollmentHits.sum() / lookups)
+                .averageLatencyMillis(attempts.sum() == 0 ? 0.0 : (double) totalLatencyMillis.sum() / attempts.sum())
+                .maxLatencyMillis(maxLatencyMillis.get())
+                .similarityHistogram(histogram)
+                .build();
     }
 
-}
\ No newline at end of file
+    private void recordSimilarity(float similarity) {
+        for (int i = 0; i < HISTOGRAM_BOUNDS.length; i++) {
+            if (similarity < HISTOGRAM_BOUNDS[i] || i == HISTOGRAM_BOUNDS.length - 1) {
+                similarityBuckets[i].increment();
+                return;
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.capstone.service;
 
+import com.capstone.configuration.CustomJwtDecoder;
 import com.capstone.dto.request.AuthenticationRequest;
 import com.capstone.dto.request.ExchangeTokenRequest;
 import com.capstone.dto.request.IntrospectRequest;
@@ -14,9 +15,7 @@ import com.capstone.repository.httpclient.OutboundIdentityClient;
 import com.capstone.repository.UserRepository;
 import com.capstone.repository.httpclient.OutboundUserClient;
 import com.nimbusds.jose.*;
-import com.nimbusds.jose.crypto.MACVerifier;
 import com.nimbusds.jwt.JWTClaimsSet;
-import com.nimbusds.jwt.SignedJWT;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
@@ -25,11 +24,11 @@ import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.jwt.JwtException;
 import org.springframework.stereotype.Service;
 import com.nimbusds.jose.crypto.MACSigner;
 import org.springframework.util.CollectionUtils;
 
-import java.text.ParseException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Date;
@@ -43,6 +42,7 @@ public class AuthenticationService {
     UserRepository userRepository;
     OutboundIdentityClient outboundIdentityClient;
     OutboundUserClient outboundUserClient;
+    CustomJwtDecoder customJwtDecoder;
 
     @NonFinal
     @Value("${jwt.signerKey}")
@@ -61,15 +61,17 @@ public class AuthenticationService {
     protected String GRANT_TYPE = "authorization_code";
 
 
-    public IntrospectResponse introspect(IntrospectRequest request)
-            throws JOSEException, ParseException {
-        var token = request.getToken();
-        JWSVerifier verifier = new MACVerifier(SIGNER_KEY.getBytes());
-        SignedJWT signedJWT = SignedJWT.parse(token);
-        Date expiryTime = signedJWT.getJWTClaimsSet().getExpirationTime();
-        var verified = signedJWT.verify(verifier);
+    public IntrospectResponse introspect(IntrospectRequest request) {
+        // Dùng chung decoder (và cache token đã xác thực) với resource server
+        boolean valid;
+        try {
+            customJwtDecoder.decode(request.getToken());
+            valid = true;
+        } catch (JwtException e) {
+            valid = false;
+        }
         return IntrospectResponse.builder()
-                .valid(verified && expiryTime.after(new Date()))
+                .valid(valid)
                 .build();
     }
 
@@ -0,0 +1,152 @@
+package com.capstone.service;
+
+import com.capstone.entity.BalanceLedgerEntry;
+import com.capstone.entity.User;
+import com.capstone.enums.LedgerAccount;
+import com.capstone.enums.LedgerEntryType;
+import com.capstone.exception.AppException;
+import com.capstone.exception.ErrorCode;
+import com.capstone.repository.BalanceLedgerRepository;
+import com.capstone.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Single entry point for moving money on {@link User#getBalance()} and
+ * {@link User#getDoctorBalance()}. Each movement is one conditional {@code UPDATE} of the
+ * balance column (so concurrent payments, refunds and deposits cannot overwrite each other and a
+ * debit can never take an account below zero) plus one appended {@link BalanceLedgerEntry}.
+ * The column on {@code users} stays the cached balance that reads use; the ledger is its history.
+ * The first movement of an account that still has a balance from before the ledger writes an
+ * OPENING entry for that balance first, so every account's ledger sums to its cached balance.
+ *
+ * <p>Callers must not write the balance fields themselves. A managed {@code User} passed in is
+ * refreshed after the update, so it reflects the new balance without becoming dirty. Any other
+ * instance (e.g. the shared snapshot from {@link CurrentUserResolver}) is never modified; use
+ * the returned balance instead.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceLedgerService {
+    private final UserRepository userRepository;
+    private final BalanceLedgerRepository balanceLedgerRepository;
+    private final EntityManager entityManager;
+    private final CurrentUserResolver currentUserResolver;
+
+    /**
+     * Adds {@code amount} to the account and returns the new balance.
+     */
+    @Transactional
+    public double credit(User user, LedgerAccount account, double amount, LedgerEntryType type, String referenceId) {
+        requirePositive(amount);
+        int updated = account == LedgerAccount.BALANCE
+                ? userRepository.creditBalance(user.getId(), amount)
+                : userRepository.creditDoctorBalance(user.getId(), amount);
+        if (updated == 0) {
+            throw new AppException(ErrorCode.USER_NOT_EXISTED);
+        }
+        return append(user, account, amount, type, referenceId);
+    }
+
+    /**
+     * Takes {@code amount} from the account and returns the new balance. Throws
+     * {@link ErrorCode#INSUFFICIENT_BALANCE} when the account holds less than {@code amount}
+     * at the moment of the update; nothing is written in that case.
+     */
+    @Transactional
+    public double debit(User user, LedgerAccount account, double amount, LedgerEntryType type, String referenceId) {
+        requirePositive(amount);
+        int updated = account == LedgerAccount.BALANCE
+                ? userRepository.debitBalance(user.getId(), amount)
+                : userRepository.debitDoctorBalance(user.getId(), amount);
+        if (updated == 0) {
+            log.info("Rejected {} debit of {} for user {}: insufficient funds", account, amount, user.getUsername());
+            throw new AppException(ErrorCode.INSUFFICIENT_BALANCE);
+        }
+        return append(user, account, -amount, type, referenceId);
+    }
+
+    /**
+     * Writes an OPENING entry for every non-zero balance that has no ledger history yet, for
+     * accounts that have not moved since the ledger was introduced. Returns the number of
+     * entries written.
+     */
+    @Transactional
+    public int openMissingAccounts() {
+        int opened = 0;
+        for (User user : balanceLedgerRepository.findUsersWithoutBalanceEntries()) {
+            if (openAccount(user, LedgerAccount.BALANCE)) {
+                opened++;
+            }
+        }
+        for (User user : balanceLedgerRepository.findUsersWithoutDoctorBalanceEntries()) {
+            if (openAccount(user, LedgerAccount.DOCTOR_BALANCE)) {
+                opened++;
+            }
+        }
+        return opened;
+    }
+
+    // Khóa dòng user rồi kiểm tra lại: giao dịch đồng thời có thể đã mở tài khoản trong lúc quét
+    private boolean openAccount(User user, LedgerAccount account) {
+        userRepository.lockBalances(user.getId());
+        if (balanceLedgerRepository.existsByUserIdAndAccount(user.getId(), account)) {
+            return false;
+        }
+        double balance = syncBalance(user, account);
+        if (balance == 0) {
+            return false;
+        }
+        balanceLedgerRepository.save(entry(user, account, balance, balance, LedgerEntryType.OPENING, null));
+        return true;
+    }
+
+    private double append(User user, LedgerAccount account, double amount, LedgerEntryType type, String referenceId) {
+        double balanceAfter = syncBalance(user, account);
+        // Lệnh UPDATE ở trên giữ khóa dòng user, nên chỉ một giao dịch thấy tài khoản chưa có lịch sử
+        double balanceBefore = balanceAfter - amount;
+        if (balanceBefore != 0 && !balanceLedgerRepository.existsByUserIdAndAccount(user.getId(), account)) {
+            balanceLedgerRepository.save(entry(user, account, balanceBefore, balanceBefore, LedgerEntryType.OPENING, null));
+        }
+        balanceLedgerRepository.save(entry(user, account, amount, balanceAfter, type, referenceId));
+        currentUserResolver.evictUser(user.getId());
+        return balanceAfter;
+    }
+
+    // Đồng bộ entity đang được quản lý mà không làm nó bị "dirty"; user ngoài persistence context
+    // có thể là snapshot dùng chung của CurrentUserResolver nên chỉ đọc số dư mới, không ghi vào
+    private double syncBalance(User user, LedgerAccount account) {
+        if (entityManager.contains(user)) {
+            entityManager.refresh(user);
+            return account == LedgerAccount.BALANCE ? user.getBalance() : user.getDoctorBalance();
+        }
+        return (account == LedgerAccount.BALANCE
+                ? userRepository.findBalance(user.getId())
+                : userRepository.findDoctorBalance(user.getId())).orElse(0.0);
+    }
+
+    private BalanceLedgerEntry entry(User user, LedgerAccount account, double amount, double balanceAfter,
+                                     LedgerEntryType type, String referenceId) {
+        return BalanceLedgerEntry.builder()
+                .user(entityManager.contains(user) ? user : entityManager.getReference(User.class, user.getId()))
+                .account(account)
+                .type(type)
+                .amount(amount)
+                .balanceAfter(balanceAfter)
+                .referenceId(referenceId)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static void requirePositive(double amount) {
+        if (!(amount > 0)) {
+            throw new AppException(ErrorCode.INVALID_PARAM, "Amount must be positive");
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.capstone.service;
+
+import com.capstone.configuration.BlobCacheProperties;
+import com.capstone.dto.response.BlobCacheMetricsResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Disk-backed LRU cache of remote files keyed by URL, used for files that are fetched again
+ * and again (avatars compared on face login, certificates reviewed by admins).
+ *
+ * <p>A cached file is served without any network call for {@code revalidate-after-seconds};
+ * after that the origin is asked with {@code If-None-Match}/{@code If-Modified-Since} and a
+ * 304 keeps the local copy. If the origin cannot be reached the stale copy is served. Downloads
+ * go through one shared {@link HttpClient} (keep-alive connection pool) with connect and
+ * response timeouts, are streamed to disk and capped at {@code max-file-bytes}; the total
+ * cache size is capped at {@code max-bytes}.
+ */
+@Slf4j
+@Component
+public class BlobCache {
+    private final BlobCacheProperties properties;
+    private final HttpClient httpClient;
+    private final Path directory;
+
+    // Thứ tự truy cập: phần tử đầu là file ít dùng nhất
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder revalidated = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesDownloaded = new LongAdder();
+    private final LongAdder staleServed = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BlobCache(BlobCacheProperties properties) throws IOException {
+        this.properties = properties;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(properties.getConnectTimeoutMillis()))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.directory = Path.of(properties.getDirectory());
+        Files.createDirectories(directory);
+        // Không lưu index trên đĩa: các file từ lần chạy trước bị xoá
+        try (Stream<Path> leftovers = Files.list(directory)) {
+            leftovers.forEach(BlobCache::deleteQuietly);
+        }
+    }
+
+    /**
+     * Returns the content of {@code url}, from the local copy when it is fresh or the origin
+     * confirms it is unchanged.
+     */
+    public byte[] get(String url) throws IOException {
+        Entry cached = lookup(url);
+        if (cached != null && System.currentTimeMillis() - cached.validatedAtMillis
+                < properties.getRevalidateAfterSeconds() * 1000) {
+            byte[] content = read(url, cached);
+            if (content != null) {
+                hits.increment();
+                return content;
+            }
+            cached = null;
+        }
+        return fetch(url, cached);
+    }
+
+    public BlobCacheMetricsResponse getMetrics() {
+        long lookups = hits.sum() + revalidated.sum() + misses.sum();
+        synchronized (this) {
+            return BlobCacheMetricsResponse.builder()
+                    .entries(entries.size())
+                    .sizeBytes(totalBytes)
+                    .capacityBytes(properties.getMaxBytes())
+                    .hits(hits.sum())
+                    .revalidated(revalidated.sum())
+                    .misses(misses.sum())
+                    .hitRate(lookups == 0 ? 0.0 : (double) (hits.sum() + revalidated.sum()) / lookups)
+                    .bytesDownloaded(bytesDownloaded.sum())
+                    .staleServed(staleServed.sum())
+                    .evictions(evictions.sum())
+                    .build();
+        }
+    }
+
+    private byte[] fetch(String url, Entry cached) throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(properties.getReadTimeoutMillis()))
+                .GET();
+        if (cached != null && cached.etag != null) {
+            request.header("If-None-Match", cached.etag);
+        }
+        if (cached != null && cached.lastModified != null) {
+            request.header("If-Modified-Since", cached.lastModified);
+        }
+
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException e) {
+            return serveStale(url, cached, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading " + url, e);
+        }
+
+        try (InputStream body = response.body()) {
+            if (response.statusCode() == 304 && cached != null) {
+                byte[] content = read(url, cached);
+                if (content != null) {
+                    cached.validatedAtMillis = System.currentTimeMillis();
+                    revalidated.increment();
+                    return content;
+                }
+                // File cục bộ đã mất: tải lại không điều kiện
+                return fetch(url, null);
+            }
+            if (response.statusCode() != 200) {
+                return serveStale(url, cached, new IOException("HTTP " + response.statusCode() + " for " + url));
+            }
+            long declaredLength = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+            if (declaredLength > properties.getMaxFileBytes()) {
+                throw new IOException("File too large: " + declaredLength + " bytes");
+            }
+
+            misses.increment();
+            Path file = directory.resolve(key(url));
+            Path temp = Files.createTempFile(directory, "download-", ".tmp");
+            long size;
+            try {
+                size = copyLimited(body, temp);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                deleteQuietly(temp);
+                throw e;
+            }
+            bytesDownloaded.add(size);
+
+            byte[] content = Files.readAllBytes(file);
+            store(url, new Entry(file, size,
+                    response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null),
+                    System.currentTimeMillis()));
+            return content;
+        }
+    }
+
+    private byte[] serveStale(String url, Entry cached, IOException failure) throws IOException {
+        if (cached != null) {
+            byte[] content = read(url, cached);
+            if (content != null) {
+                staleServed.increment();
+                log.warn("Serving cached copy of {} after revalidation failed: {}", url, failure.getMessage());
+                return content;
+            }
+        }
+        throw failure;
+    }
+
+    private long copyLimited(InputStream in, Path target) throws IOException {
+        long limit = properties.getMaxFileBytes();
+        long copied = 0;
+        byte[] buffer = new byte[8192];
+        try (OutputStream out = Files.newOutputStream(target)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                copied += read;
+                if (copied > limit) {
+                    throw new IOException("File too large: more than " + limit + " bytes");
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+        return copied;
+    }
+
+    private byte[] read(String url, Entry entry) {
+        try {
+            return Files.readAllBytes(entry.file);
+        } catch (NoSuchFileException e) {
+            remove(url, entry);
+            return null;
+        } catch (IOException e) {
+            log.warn("Failed to read cached copy of {}: {}", url, e.getMessage());
+            remove(url, entry);
+            return null;
+        }
+    }
+
+    private synchronized Entry lookup(String url) {
+        return entries.get(url);
+    }
+
+    private void store(String url, Entry entry) {
+        List<Path> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(url, entry);
+            if (previous != null) {
+                totalBytes -= previous.size;
+            }
+            totalBytes += entry.size;
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (totalBytes > properties.getMaxBytes() && eldest.hasNext()) {
+                Map.Entry<String, Entry> candidate = eldest.next();
+                if (candidate.getValue() == entry) {
+                    continue;
+                }
+                eldest.remove();
+                totalBytes -= candidate.getValue().size;
+                evicted.add(candidate.getValue().file);
+                evictions.increment();
+            }
+        }
+        evicted.forEach(BlobCache::deleteQuietly);
+    }
+
+    private synchronized void remove(String url, Entry entry) {
+        if (entries.remove(url, entry)) {
+            totalBytes -= entry.size;
+        }
+    }
+
+    private static String key(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(url.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.debug("Failed to delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static final class Entry {
+        final Path file;
+        final long size;
+        final String etag;
+        final String lastModified;
+        volatile long validatedAtMillis;
+
+        Entry(Path file, long size, String etag, String lastModified, long validatedAtMillis) {
+            this.file = file;
+            this.size = size;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.validatedAtMillis = validatedAtMillis;
+        }
+    }
+}
@@ -6,7 +6,10 @@ import com.capstone.dto.response.PatientChatResponse;
 import com.capstone.entity.ChatPayment;
 import com.capstone.entity.ChatRequest;
 import com.capstone.entity.DoctorSchedule;
+import com.capstone.entity.SlotHold;
 import com.capstone.entity.User;
+import com.capstone.enums.LedgerAccount;
+import com.capstone.enums.LedgerEntryType;
 import com.capstone.enums.RequestStatus;
 import com.capstone.exception.AppException;
 import com.capstone.exception.ErrorCode;
@@ -14,10 +17,10 @@ import com.capstone.repository.ChatMessageRepository;
 import com.capstone.repository.ChatPaymentRepository;
 import com.capstone.repository.ChatRequestRepository;
 import com.capstone.repository.UserRepository;
+import com.capstone.util.AfterCommit;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -35,19 +38,20 @@ public class ChatPaymentService {
     private final ChatPaymentRepository chatPaymentRepository;
     private final ChatRequestRepository chatRequestRepository;
     private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
     private final SystemConfigService systemConfigService;    private final ChatMessageRepository chatMessageRepository;
     private final SimpMessagingTemplate messagingTemplate;
     private final DoctorScheduleService doctorScheduleService;
     private final DoctorEarningService doctorEarningService;
+    private final ConversationSummaryService conversationSummaryService;
+    private final ActiveChatSessionRegistry activeChatSessionRegistry;
+    private final SlotReservationService slotReservationService;
+    private final BalanceLedgerService balanceLedgerService;
       @Transactional
     public ChatPaymentResponse createChatPayment(ChatPaymentRequest request) {
         log.info("Starting chat payment creation with request: {}", request);
         
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        log.info("Authenticated username: {}", username);
-        
-        User patient = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User patient = currentUserResolver.getCurrentUser();
         log.info("Found patient: {}", patient.getUsername());
 
         User doctor = userRepository.findById(request.getDoctorId())
@@ -59,53 +63,8 @@ public class ChatPaymentService {
             throw new AppException(ErrorCode.UNAUTHORIZED);
         }
         
-        // Check if doctor has available schedule slots right now
-        Optional<DoctorSchedule> availableSchedule = doctorScheduleService.findAvailableScheduleForDoctor(doctor);
-        if (availableSchedule.isEmpty()) {
-            log.error("No available schedule slots for doctor {} at current time", doctor.getUsername());
-            throw new AppException(ErrorCode.NO_AVAILABLE_SLOTS, 
-                    "Bác sĩ hiện không có lịch trống hoặc đã hết slot. Vui lòng thử lại sau.");
-        }
-        
-        DoctorSchedule schedule = availableSchedule.get();
-        log.info("Found available schedule slot: {} for doctor {}", schedule.getId(), doctor.getUsername());
-
-        // Check for existing chat request or create new one
-        ChatRequest chatRequest;
-        Optional<ChatRequest> existingRequest = chatRequestRepository
-                .findByPatientAndDoctorAndStatus(patient, doctor, RequestStatus.PENDING);
-        
-        if (existingRequest.isPresent()) {
-            chatRequest = existingRequest.get();
-            log.info("Found existing chat request: {}", chatRequest.getId());
-            
-            // Check if there's already a payment for this chat request
-            Optional<ChatPayment> existingPayment = chatPaymentRepository.findByChatRequest(chatRequest);
-            if (existingPayment.isPresent()) {
-                log.error("Payment already exists for chat request: {}", chatRequest.getId());
-                throw new AppException(ErrorCode.DUPLICATE_RESOURCE, "Đã tồn tại thanh toán cho yêu cầu tư vấn này");
-            }
-        } else {
-            // Atomically book the appointment slot before creating the chat request
-            boolean slotBooked = doctorScheduleService.bookAppointmentSlot(schedule.getId());
-            if (!slotBooked) {
-                log.error("Failed to book appointment slot for schedule: {} - slot may have been taken by another user", schedule.getId());
-                throw new AppException(ErrorCode.NO_AVAILABLE_SLOTS, 
-                        "Slot đã được đặt bởi người khác. Vui lòng thử lại.");
-            }
-            
-            log.info("Successfully booked appointment slot for schedule: {}", schedule.getId());
-            
-            chatRequest = ChatRequest.builder()
-                    .patient(patient)
-                    .doctor(doctor)
-                    .doctorSchedule(schedule)  // Link to the booked schedule
-                    .status(RequestStatus.PENDING)
-                    .build();
-            chatRequest = chatRequestRepository.save(chatRequest);
-            log.info("Created new chat request: {} with schedule: {}", chatRequest.getId(), schedule.getId());
-        }
-          // Get the current cost per hour from system config
+        // Check the balance before touching any slot, so an underfunded request costs nothing
+        // Get the current cost per hour from system config
         double costPerHour = systemConfigService.getChatCostPerHour();
         double costPerMinute = systemConfigService.getChatCostPerMinute();
         log.info("Current chat cost per hour: {} VND", costPerHour);
@@ -143,6 +102,49 @@ public class ChatPaymentService {
             
             throw new AppException(ErrorCode.PAYMENT_REQUIRED, errorMessage);
         }
+        
+        // Check if doctor has available schedule slots right now
+        Optional<DoctorSchedule> availableSchedule = doctorScheduleService.findAvailableScheduleForDoctor(doctor);
+        if (availableSchedule.isEmpty()) {
+            log.error("No available schedule slots for doctor {} at current time", doctor.getUsername());
+            throw new AppException(ErrorCode.NO_AVAILABLE_SLOTS, 
+                    "Bác sĩ hiện không có lịch trống hoặc đã hết slot. Vui lòng thử lại sau.");
+        }
+        
+        DoctorSchedule schedule = availableSchedule.get();
+        log.info("Found available schedule slot: {} for doctor {}", schedule.getId(), doctor.getUsername());
+
+        // Check for existing chat request or create new one
+        ChatRequest chatRequest;
+        SlotHold slotHold = null;
+        Optional<ChatRequest> existingRequest = chatRequestRepository
+                .findByPatientAndDoctorAndStatus(patient, doctor, RequestStatus.PENDING);
+        
+        if (existingRequest.isPresent()) {
+            chatRequest = existingRequest.get();
+            log.info("Found existing chat request: {}", chatRequest.getId());
+            
+            // Check if there's already a payment for this chat request
+            Optional<ChatPayment> existingPayment = chatPaymentRepository.findByChatRequest(chatRequest);
+            if (existingPayment.isPresent()) {
+                log.error("Payment already exists for chat request: {}", chatRequest.getId());
+                throw new AppException(ErrorCode.DUPLICATE_RESOURCE, "Đã tồn tại thanh toán cho yêu cầu tư vấn này");
+            }
+        } else {
+            // Hold the slot in its own short transaction: collisions fail here, before any payment work
+            slotHold = slotReservationService.acquire(schedule, patient);
+            releaseHoldUnlessCommitted(slotHold.getId());
+            log.info("Holding appointment slot {} for {} until {}", schedule.getId(), patient.getUsername(), slotHold.getExpiresAt());
+            
+            chatRequest = ChatRequest.builder()
+                    .patient(patient)
+                    .doctor(doctor)
+                    .doctorSchedule(schedule)  // Link to the booked schedule
+                    .status(RequestStatus.PENDING)
+                    .build();
+            chatRequest = chatRequestRepository.save(chatRequest);
+            log.info("Created new chat request: {} with schedule: {}", chatRequest.getId(), schedule.getId());
+        }
           // Create payment record
         ChatPayment payment = ChatPayment.builder()
                 .chatRequest(chatRequest)
@@ -152,11 +154,6 @@ public class ChatPaymentService {
                 .expiresAt(expiresAt)
                 .build();
           try {
-            // Deduct amount from user's balance
-            patient.setBalance(patient.getBalance() - amount);
-            userRepository.save(patient);
-            log.info("Deducted {} VND from user {}'s balance", amount, patient.getUsername());
-            
             // Update chat request status to APPROVED
             chatRequest.setStatus(RequestStatus.APPROVED);
             chatRequestRepository.save(chatRequest);
@@ -164,6 +161,20 @@ public class ChatPaymentService {
               payment = chatPaymentRepository.save(payment);
             log.info("Successfully created chat payment: {}", payment.getId());
             
+            // Deduct amount from user's balance; a concurrent spend that emptied it rolls everything back
+            balanceLedgerService.debit(patient, LedgerAccount.BALANCE, amount,
+                    LedgerEntryType.CHAT_PAYMENT, payment.getId());
+            log.info("Deducted {} VND from user {}'s balance", amount, patient.getUsername());
+            
+            // Confirm the hold together with the payment; if it already expired, book the slot again
+            if (slotHold != null && !slotReservationService.confirm(slotHold.getId())
+                    && !doctorScheduleService.bookAppointmentSlot(schedule.getId())) {
+                throw new AppException(ErrorCode.NO_AVAILABLE_SLOTS,
+                        "Slot đã được đặt bởi người khác. Vui lòng thử lại.");
+            }
+            conversationSummaryService.recordPayment(payment);
+            registerSessionAfterCommit(chatRequest, payment);
+            
             // Create doctor earning record
             try {
                 doctorEarningService.createEarningFromPayment(payment);
@@ -196,54 +207,97 @@ public class ChatPaymentService {
             }
             
             return ChatPaymentResponse.fromEntity(payment);
+        } catch (AppException e) {
+            throw e;
         } catch (Exception e) {
-            // If payment processing fails and we just booked a new slot, release it
-            if (existingRequest.isEmpty() && chatRequest != null && chatRequest.getDoctorSchedule() != null) {
-                try {
-                    boolean released = doctorScheduleService.releaseAppointmentSlot(chatRequest.getDoctorSchedule().getId());
-                    log.info("Released appointment slot {} due to payment failure: {}", 
-                            chatRequest.getDoctorSchedule().getId(), released);
-                } catch (Exception releaseException) {
-                    log.error("Failed to release appointment slot during rollback: ", releaseException);
-                }
-            }
+            // The slot hold, if any, is released when this transaction rolls back
             log.error("Error processing chat payment: ", e);
             throw new AppException(ErrorCode.INTERNAL_SERVER_ERROR, "Không thể xử lý thanh toán. Vui lòng thử lại sau.");
         }
     }
     
-    public ChatPaymentResponse getChatPaymentByRequestId(String requestId) {
+    private void releaseHoldUnlessCommitted(String holdId) {
+        AfterCommit.runUnlessCommitted(() -> slotReservationService.release(holdId));
+    }
+
+        public ChatPaymentResponse getChatPaymentByRequestId(String requestId) {
         ChatPayment payment = chatPaymentRepository.findByChatRequestId(requestId)
                 .orElseThrow(() -> new AppException(ErrorCode.PAYMENT_NOT_FOUND));
         
         return ChatPaymentResponse.fromEntity(payment);
     }
-      public boolean isChatActive(ChatRequest chatRequest) {
-        // Get current time
-        LocalDateTime now = LocalDateTime.now();
-        
-        // Check if there's an active payment for this chat request
-        boolean isActive = chatPaymentRepository.existsByChatRequestAndExpiresAtGreaterThan(chatRequest, now);
-        
-        if (!isActive) {
-            // If not active, update chat request status to indicate expiration
-            chatRequest.setStatus(RequestStatus.PAYMENT_REQUIRED);
-            chatRequestRepository.save(chatRequest);
-            log.info("Chat request {} marked as PAYMENT_REQUIRED due to expiration", chatRequest.getId());
-            
-            // Release the appointment slot if one was booked
-            if (chatRequest.getDoctorSchedule() != null) {
-                try {
-                    boolean released = doctorScheduleService.releaseAppointmentSlot(chatRequest.getDoctorSchedule().getId());
-                    log.info("Released appointment slot {} for expired chat request {}: {}", 
-                            chatRequest.getDoctorSchedule().getId(), chatRequest.getId(), released);
-                } catch (Exception e) {
-                    log.error("Failed to release appointment slot for expired chat request {}: ", chatRequest.getId(), e);
-                }
+    /**
+     * Lock-free check against {@link ActiveChatSessionRegistry}; expiry side effects (status and
+     * slot release) are applied by {@link #expireChatSession(String)} from the sweeper instead.
+     */
+    public boolean isChatActive(ChatRequest chatRequest) {
+        return isChatActive(chatRequest.getPatient(), chatRequest.getDoctor());
+    }
+
+    public boolean isChatActive(User patient, User doctor) {
+        return activeChatSessionRegistry.isActive(patient.getId(), doctor.getId());
+    }
+
+    /**
+     * Marks an expired chat request as PAYMENT_REQUIRED and releases its appointment slot,
+     * unless the request has been paid again in the meantime.
+     */
+    @Transactional
+    public void expireChatSession(String chatRequestId) {
+        ChatRequest chatRequest = chatRequestRepository.findById(chatRequestId).orElse(null);
+        if (chatRequest == null || chatRequest.getStatus() != RequestStatus.APPROVED) {
+            return;
+        }
+        if (chatPaymentRepository.existsByChatRequestAndExpiresAtGreaterThan(chatRequest, LocalDateTime.now())) {
+            return;
+        }
+
+        chatRequest.setStatus(RequestStatus.PAYMENT_REQUIRED);
+        chatRequestRepository.save(chatRequest);
+        log.info("Chat request {} marked as PAYMENT_REQUIRED due to expiration", chatRequest.getId());
+
+        // Release the appointment slot if one was booked
+        if (chatRequest.getDoctorSchedule() != null) {
+            try {
+                boolean released = doctorScheduleService.releaseAppointmentSlot(chatRequest.getDoctorSchedule().getId());
+                log.info("Released appointment slot {} for expired chat request {}: {}", 
+                        chatRequest.getDoctorSchedule().getId(), chatRequest.getId(), released);
+            } catch (Exception e) {
+                log.error("Failed to release appointment slot for expired chat request {}: ", chatRequest.getId(), e);
             }
         }
-        
-        return isActive;
+    }
+
+    /**
+     * Stamps the doctor's first reply on the pair's paid requests that are still waiting for one,
+     * which takes them out of the refund scan.
+     */
+    public void recordDoctorResponse(User patient, User doctor, LocalDateTime respondedAt) {
+        int updated = chatPaymentRepository.recordDoctorFirstResponse(patient, doctor, respondedAt);
+        if (updated > 0) {
+            log.info("Recorded first response of doctor {} to patient {} on {} payment(s)",
+                    doctor.getUsername(), patient.getUsername(), updated);
+        }
+    }
+
+    /**
+     * Fills the session registry from the database (on startup) and returns the ids of approved
+     * requests that expired while the registry was not running, so they can be expired too.
+     */
+    public List<String> loadActiveChatSessions() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> activeSessions = chatPaymentRepository.findActiveSessions(now);
+        for (Object[] row : activeSessions) {
+            activeChatSessionRegistry.register((String) row[0], (String) row[1], (String) row[2], (LocalDateTime) row[3]);
+        }
+        log.info("Loaded {} active chat sessions into the registry", activeSessions.size());
+        return chatPaymentRepository.findExpiredApprovedRequestIds(now);
+    }
+
+    private void registerSessionAfterCommit(ChatRequest chatRequest, ChatPayment payment) {
+        // Chỉ mở phiên chat khi thanh toán đã commit thành công
+        AfterCommit.run(() -> activeChatSessionRegistry.register(
+                chatRequest.getId(), chatRequest.getPatient().getId(), chatRequest.getDoctor().getId(), payment.getExpiresAt()));
     }
     
     public Optional<LocalDateTime> getChatExpiryTime(ChatRequest chatRequest) {
@@ -255,9 +309,7 @@ public class ChatPaymentService {
         log.info("Getting active chat payments for current user");
         
         // Get current authenticated user
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User currentUser = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User currentUser = currentUserResolver.getCurrentUser();
         
         log.info("Found user: {}", currentUser.getUsername());
         
@@ -290,9 +342,7 @@ public class ChatPaymentService {
         log.info("Getting paid chat patients for current doctor");
         
         // Get current authenticated user
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User doctor = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User doctor = currentUserResolver.getCurrentUser();
         
         log.info("Found doctor: {}", doctor.getUsername());
         
@@ -336,9 +386,7 @@ public class ChatPaymentService {
         log.info("Getting refund history for current user");
         
         // Get current authenticated user
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User currentUser = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User currentUser = currentUserResolver.getCurrentUser();
         
         log.info("Found user: {} with role: {}", currentUser.getUsername(), currentUser.getRole().getName());
         
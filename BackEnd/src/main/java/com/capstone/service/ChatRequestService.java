@@ -11,7 +11,6 @@ import com.capstone.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
@@ -26,13 +25,12 @@ import java.util.stream.Collectors;
 public class ChatRequestService {
     private final ChatRequestRepository chatRequestRepository;
     private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
     private final SimpMessagingTemplate messagingTemplate;
     private final DoctorScheduleService doctorScheduleService;
 
     public ChatRequest createChatRequest(String doctorId) {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User patient = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User patient = currentUserResolver.getCurrentUser();
         
         User doctor = userRepository.findById(doctorId)
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
@@ -107,9 +105,7 @@ public class ChatRequestService {
     }
 
     public ChatRequest acceptChatRequest(String requestId) {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User doctor = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User doctor = currentUserResolver.getCurrentUser();
 
         ChatRequest chatRequest = chatRequestRepository.findById(requestId)
                 .orElseThrow(() -> new AppException(ErrorCode.REQUEST_NOT_FOUND));
@@ -121,9 +117,7 @@ public class ChatRequestService {
         chatRequest.setStatus(RequestStatus.APPROVED);
         return chatRequestRepository.save(chatRequest);
     }    public ChatRequest rejectChatRequest(String requestId) {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User doctor = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User doctor = currentUserResolver.getCurrentUser();
 
         ChatRequest chatRequest = chatRequestRepository.findById(requestId)
                 .orElseThrow(() -> new AppException(ErrorCode.REQUEST_NOT_FOUND));
@@ -149,9 +143,7 @@ public class ChatRequestService {
     }
 
     public List<ChatRequestResponse> getPendingRequests() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User doctor = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User doctor = currentUserResolver.getCurrentUser();
 
         return chatRequestRepository.findByDoctorAndStatus(doctor, RequestStatus.PENDING)
                 .stream()
@@ -160,9 +152,7 @@ public class ChatRequestService {
     }
 
     public List<ChatRequestResponse> getMyRequests() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User patient = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User patient = currentUserResolver.getCurrentUser();
 
         return chatRequestRepository.findByPatientAndStatus(patient, RequestStatus.PENDING)
                 .stream()
@@ -171,9 +161,7 @@ public class ChatRequestService {
     }
 
     public List<ChatRequestResponse> getAcceptedRequests() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User doctor = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User doctor = currentUserResolver.getCurrentUser();
 
         return chatRequestRepository.findByDoctorAndStatus(doctor, RequestStatus.APPROVED)
                 .stream()
@@ -182,9 +170,7 @@ public class ChatRequestService {
     }
 
     public List<ChatRequestResponse> getUserAcceptedRequests() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User patient = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User patient = currentUserResolver.getCurrentUser();
 
         return chatRequestRepository.findByPatientAndStatus(patient, RequestStatus.APPROVED)
                 .stream()
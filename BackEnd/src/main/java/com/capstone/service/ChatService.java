@@ -1,11 +1,11 @@
 package com.capstone.service;
 
+import com.capstone.dto.response.ChatConversationPageResponse;
 import com.capstone.dto.response.ChatMessageDTO;
 import com.capstone.dto.response.ChatHistoryResponse;
+import com.capstone.dto.response.ReadReceiptResponse;
 import com.capstone.entity.ChatMessage;
 import com.capstone.entity.ChatRequest;
-import com.capstone.entity.ChatPayment;
-import com.capstone.entity.DoctorUpgrade;
 import com.capstone.entity.User;
 import com.capstone.enums.RequestStatus;
 import com.capstone.exception.AppException;
@@ -13,48 +13,49 @@ import com.capstone.exception.ErrorCode;
 import com.capstone.mapper.ChatMessageMapper;
 import com.capstone.repository.ChatMessageRepository;
 import com.capstone.repository.ChatRequestRepository;
-import com.capstone.repository.ChatPaymentRepository;
-import com.capstone.repository.DoctorUpgradeRepository;
 import com.capstone.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
-public class ChatService {    private final ChatMessageRepository chatMessageRepository;
+public class ChatService {
+    private static final int DEFAULT_CONVERSATION_PAGE_SIZE = 30;
+    private static final int MAX_CONVERSATION_PAGE_SIZE = 100;
+
+    private final ChatMessageRepository chatMessageRepository;
     private final ChatRequestRepository chatRequestRepository;
-    private final ChatPaymentRepository chatPaymentRepository;
-    private final DoctorUpgradeRepository doctorUpgradeRepository;
     private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
     private final SimpMessagingTemplate messagingTemplate;
     private final ChatMessageMapper chatMessageMapper;
     private final CloudinaryService cloudinaryService;
     private final RekognitionService rekognitionService;
     private final ChatPaymentService chatPaymentService;
+    private final ConversationSummaryService conversationSummaryService;
 
     public ChatMessageDTO saveMessage(String content, String senderId, String receiverId) {
         log.info("Saving message from {} to {}", senderId, receiverId);
         
         // Get current authenticated user
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User currentUser = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User currentUser = currentUserResolver.getCurrentUser();
         
         // Verify that the sender is the authenticated user
         if (!currentUser.getId().equals(senderId)) {
-            log.error("User {} attempted to send message as {}", username, senderId);
+            log.error("User {} attempted to send message as {}", currentUser.getUsername(), senderId);
             throw new AppException(ErrorCode.UNAUTHORIZED, "Bạn không có quyền gửi tin nhắn với tư cách người khác");
         }
         
@@ -121,12 +122,7 @@ public class ChatService {    private final ChatMessageRepository chatMessageRep
         
         if (!hasActivePayment) {
             // Only check payment if sender is a patient
-            for (ChatRequest chatRequest : chatRequests) {
-                if (chatPaymentService.isChatActive(chatRequest)) {
-                    hasActivePayment = true;
-                    break;
-                }
-            }
+            hasActivePayment = chatPaymentService.isChatActive(patient, doctor);
             
             if (!hasActivePayment) {
                 log.error("No active chat payment found for patient {} and doctor {}", 
@@ -147,6 +143,10 @@ public class ChatService {    private final ChatMessageRepository chatMessageRep
                 .build();
         
         chatMessageRepository.save(chatMessage);
+        updateConversationSummary(patient, doctor, chatMessage);
+        if (sender == doctor) {
+            recordDoctorResponse(patient, doctor, chatMessage.getTimestamp());
+        }
         
         // Convert to DTO
         ChatMessageDTO messageDTO = chatMessageMapper.toDTO(chatMessage);
@@ -211,7 +211,7 @@ public class ChatService {    private final ChatMessageRepository chatMessageRep
             
             // Check if chat payment is active - but only if sender is a patient
             // Doctors can always send messages without payment check
-            if (!sender.getRole().getName().equals("DOCTOR") && !chatPaymentService.isChatActive(chatRequest)) {
+            if (!sender.getRole().getName().equals("DOCTOR") && !chatPaymentService.isChatActive(patient, doctor)) {
                 throw new AppException(ErrorCode.PAYMENT_REQUIRED, "Phiên chat đã hết hạn. Vui lòng thanh toán để tiếp tục trò chuyện.");
             }
 
@@ -239,6 +239,10 @@ public class ChatService {    private final ChatMessageRepository chatMessageRep
                     .build();
 
             ChatMessage savedMessage = chatMessageRepository.save(message);
+            updateConversationSummary(patient, doctor, savedMessage);
+            if (sender == doctor) {
+                recordDoctorResponse(patient, doctor, savedMessage.getTimestamp());
+            }
             ChatMessageDTO messageDTO = chatMessageMapper.toDTO(savedMessage);
 
             // Gửi tin nhắn đến người nhận cụ thể
@@ -265,16 +269,7 @@ public class ChatService {    private final ChatMessageRepository chatMessageRep
         log.info("Found users: {} and {}", user1.getUsername(), user2.getUsername());
 
         // Find the most recent approved chat request
-        ChatRequest chatRequest = chatRequestRepository
-                .findFirstByPatientAndDoctorAndStatusOrderByCreatedAtDesc(user1, user2, RequestStatus.APPROVED)
-                .orElseGet(() -> chatRequestRepository
-                        .findFirstByPatientAndDoctorAndStatusOrderByCreatedAtDesc(user2, user1, RequestStatus.APPROVED)
-                        .orElseThrow(() -> {
-                            log.error("No approved chat request found between {} and {}", 
-                                    user1.getUsername(), user2.getUsername());
-                            return new AppException(ErrorCode.UNAUTHORIZED, 
-                                    "Không tìm thấy yêu cầu tư vấn đã được duyệt");
-                        }));
+        ChatRequest chatRequest = findApprovedChatRequest(user1, user2);
         
         log.info("Found approved chat request: {}", chatRequest.getId());
         
@@ -294,17 +289,142 @@ public class ChatService {    private final ChatMessageRepository chatMessageRep
         });
 
         return messages;
-    }    public List<ChatMessageDTO> markMessagesAsRead(String userId, String senderId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+    }
+    /**
+     * Keyset-paginated view of a conversation. Without a cursor the newest {@code size} messages
+     * are returned; {@code beforeId} pages towards older messages and {@code afterId} towards newer
+     * ones. Messages in the page are always in ascending time order.
+     */
+    public ChatConversationPageResponse getConversationPage(String user1Id, String user2Id,
+                                                            String beforeId, String afterId, Integer size) {
+        if (beforeId != null && afterId != null) {
+            throw new AppException(ErrorCode.INVALID_PARAM, "Chỉ được dùng một trong hai tham số before hoặc after");
+        }
+        int pageSize = size == null ? DEFAULT_CONVERSATION_PAGE_SIZE : size;
+        if (pageSize < 1) {
+            throw new AppException(ErrorCode.INVALID_PARAM, "Kích thước trang không hợp lệ");
+        }
+        pageSize = Math.min(pageSize, MAX_CONVERSATION_PAGE_SIZE);
 
-        List<ChatMessage> messages = chatMessageRepository.findByReceiverAndReadFalseOrderByTimestampDesc(user);
-        messages.forEach(message -> message.setRead(true));
-        chatMessageRepository.saveAll(messages);
+        User user1 = userRepository.findById(user1Id)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User user2 = userRepository.findById(user2Id)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        ChatRequest chatRequest = findApprovedChatRequest(user1, user2);
+
+        // Lấy thêm một bản ghi để biết còn trang tiếp theo hay không
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<ChatMessage> rows;
+        boolean hasOlder;
+        boolean hasNewer;
+        if (afterId != null) {
+            ChatMessage cursor = findCursor(afterId, user1, user2);
+            rows = chatMessageRepository.findConversationAfter(user1, user2, cursor.getTimestamp(), cursor.getId(), limit);
+            hasNewer = rows.size() > pageSize;
+            hasOlder = true;
+            if (hasNewer) {
+                rows = rows.subList(0, pageSize);
+            }
+        } else {
+            if (beforeId != null) {
+                ChatMessage cursor = findCursor(beforeId, user1, user2);
+                rows = chatMessageRepository.findConversationBefore(user1, user2, cursor.getTimestamp(), cursor.getId(), limit);
+                hasNewer = true;
+            } else {
+                rows = chatMessageRepository.findConversationTail(user1, user2, limit);
+                hasNewer = false;
+            }
+            hasOlder = rows.size() > pageSize;
+            if (hasOlder) {
+                rows = rows.subList(0, pageSize);
+            }
+            rows = new ArrayList<>(rows);
+            Collections.reverse(rows);
+        }
 
-        return messages.stream()
+        List<ChatMessageDTO> messages = rows.stream()
                 .map(chatMessageMapper::toDTO)
                 .collect(Collectors.toList());
+
+        LocalDateTime expiresAt = chatPaymentService.getChatExpiryTime(chatRequest).orElse(null);
+        return ChatConversationPageResponse.builder()
+                .messages(messages)
+                .hasOlder(hasOlder)
+                .hasNewer(hasNewer)
+                .oldestMessageId(messages.isEmpty() ? null : messages.get(0).getId())
+                .newestMessageId(messages.isEmpty() ? null : messages.get(messages.size() - 1).getId())
+                .expiresAt(expiresAt)
+                .expired(expiresAt != null && expiresAt.isBefore(LocalDateTime.now()))
+                .build();
+    }
+
+    private ChatMessage findCursor(String messageId, User user1, User user2) {
+        ChatMessage cursor = chatMessageRepository.findById(messageId)
+                .orElseThrow(() -> new AppException(ErrorCode.INVALID_PARAM, "Không tìm thấy tin nhắn dùng làm cursor"));
+        String senderId = cursor.getSender().getId();
+        String receiverId = cursor.getReceiver().getId();
+        boolean inConversation = (senderId.equals(user1.getId()) && receiverId.equals(user2.getId()))
+                || (senderId.equals(user2.getId()) && receiverId.equals(user1.getId()));
+        if (!inConversation) {
+            throw new AppException(ErrorCode.INVALID_PARAM, "Tin nhắn không thuộc cuộc trò chuyện này");
+        }
+        return cursor;
+    }
+
+    private ChatRequest findApprovedChatRequest(User user1, User user2) {
+        return chatRequestRepository
+                .findFirstByPatientAndDoctorAndStatusOrderByCreatedAtDesc(user1, user2, RequestStatus.APPROVED)
+                .orElseGet(() -> chatRequestRepository
+                        .findFirstByPatientAndDoctorAndStatusOrderByCreatedAtDesc(user2, user1, RequestStatus.APPROVED)
+                        .orElseThrow(() -> {
+                            log.error("No approved chat request found between {} and {}", 
+                                    user1.getUsername(), user2.getUsername());
+                            return new AppException(ErrorCode.UNAUTHORIZED, 
+                                    "Không tìm thấy yêu cầu tư vấn đã được duyệt");
+                        }));
+    }
+
+    /**
+     * Marks every unread message from {@code senderId} to {@code userId} as read with one bulk
+     * update and pushes a read receipt to the sender on {@code /queue/read-receipts}.
+     */
+    public ReadReceiptResponse markMessagesAsRead(String userId, String senderId) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User sender = userRepository.findById(senderId)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+
+        List<String> messageIds = chatMessageRepository.markReadFromSender(user.getId(), sender.getId());
+        ReadReceiptResponse receipt = ReadReceiptResponse.builder()
+                .readerId(user.getId())
+                .senderId(sender.getId())
+                .messageIds(messageIds)
+                .count(messageIds.size())
+                .readAt(LocalDateTime.now())
+                .build();
+        if (messageIds.isEmpty()) {
+            return receipt;
+        }
+
+        log.info("Marked {} messages from {} as read for {}", messageIds.size(), sender.getUsername(), user.getUsername());
+
+        try {
+            conversationSummaryService.markConversationRead(user, sender);
+        } catch (Exception e) {
+            log.error("Failed to clear unread counter for {} in conversation with {}: {}",
+                    user.getUsername(), sender.getUsername(), e.getMessage());
+        }
+
+        try {
+            messagingTemplate.convertAndSendToUser(
+                    sender.getUsername(),
+                    "/queue/read-receipts",
+                    receipt);
+        } catch (Exception e) {
+            log.error("Failed to send read receipt to {}: {}", sender.getUsername(), e.getMessage());
+        }
+
+        return receipt;
     }
 
     public List<ChatMessageDTO> getUnreadMessages(String userId) {
@@ -341,70 +461,34 @@ public class ChatService {    private final ChatMessageRepository chatMessageRep
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
 
-        log.info("Getting chat history for user: {}", user.getUsername());        // Get all distinct doctors that the user has chatted with
-        // This includes doctors that sent messages to user and doctors that received messages from user
-        List<User> doctorsReceived = chatMessageRepository.findDistinctReceiversByUser(user);
-        List<User> doctorsSent = chatMessageRepository.findDistinctSendersByUser(user);
-        
-        // Combine and deduplicate the lists
-        List<User> doctors = new ArrayList<>(doctorsReceived);
-        for (User doctor : doctorsSent) {
-            if (!doctors.contains(doctor)) {
-                doctors.add(doctor);
-            }
-        }
-        
-        // Filter to only include doctors (users with DOCTOR role)
-        doctors = doctors.stream()
-                .filter(u -> u.getRole().getName().equals("DOCTOR"))
-                .collect(Collectors.toList());
-                
-        log.info("Found {} doctors that user has chatted with", doctors.size());
-
-        List<ChatHistoryResponse> chatHistory = new ArrayList<>();
+        log.info("Getting chat history for user: {}", user.getUsername());
 
-        for (User doctor : doctors) {
-            try {
-                // Get the latest chat message between user and doctor
-                ChatMessage latestMessage = chatMessageRepository.findTopBySenderAndReceiverOrderByTimestampDesc(user, doctor)
-                        .orElse(null);
-
-                // Get unread message count from this doctor
-                int unreadCount = chatMessageRepository.countUnreadMessagesFromUser(user.getId(), doctor.getId());
-                
-                // Get total message count between user and doctor
-                List<ChatMessage> allMessages = chatMessageRepository.findConversation(user, doctor);
-                int totalMessages = allMessages.size();                // Find any chat payment/request between user and doctor
-                ChatPayment payment = null;
-                List<ChatRequest> chatRequests = chatRequestRepository
-                        .findByPatientAndDoctorAndStatusOrderByCreatedAtDesc(user, doctor, RequestStatus.APPROVED);
-                
-                if (!chatRequests.isEmpty()) {
-                    ChatRequest latestRequest = chatRequests.get(0);
-                    payment = chatPaymentRepository.findByChatRequest(latestRequest).orElse(null);
-                }
-
-                // Get doctor specialization from DoctorUpgrade
-                String specialization = "Bác sĩ tư vấn"; // Default value
-                Optional<DoctorUpgrade> doctorUpgradeOpt = doctorUpgradeRepository.findLatestByUser(doctor);
-                if (doctorUpgradeOpt.isPresent()) {
-                    specialization = doctorUpgradeOpt.get().getSpecialization();
-                }
-
-                // Create chat history response using the static factory method
-                ChatHistoryResponse historyResponse = ChatHistoryResponse.fromChatData(
-                        doctor, latestMessage, payment, unreadCount, totalMessages, specialization);
+        // Một truy vấn trên bảng conversation_summaries thay vì nhiều truy vấn cho mỗi bác sĩ
+        List<ChatHistoryResponse> chatHistory = conversationSummaryService.getHistory(user)
+                .stream()
+                .map(ChatHistoryResponse::fromSummary)
+                .collect(Collectors.toList());
 
-                chatHistory.add(historyResponse);
-                log.info("Added chat history for doctor: {} with {} messages", doctor.getUsername(), totalMessages);
+        log.info("Returning {} chat history entries", chatHistory.size());
+        return chatHistory;
+    }
 
-            } catch (Exception e) {
-                log.error("Error processing chat history for doctor {}: ", doctor.getUsername(), e);
-                // Continue with other doctors even if one fails
-            }
+    private void recordDoctorResponse(User patient, User doctor, LocalDateTime respondedAt) {
+        try {
+            chatPaymentService.recordDoctorResponse(patient, doctor, respondedAt);
+        } catch (Exception e) {
+            log.error("Failed to record response of doctor {} to patient {}: {}",
+                    doctor.getUsername(), patient.getUsername(), e.getMessage());
         }
+    }
 
-        log.info("Returning {} chat history entries", chatHistory.size());
-        return chatHistory;
+    private void updateConversationSummary(User patient, User doctor, ChatMessage message) {
+        try {
+            conversationSummaryService.recordMessage(patient, doctor, message);
+        } catch (Exception e) {
+            // Tin nhắn đã được lưu; không làm hỏng việc gửi tin vì lỗi cập nhật summary
+            log.error("Failed to update conversation summary for patient {} and doctor {}: {}",
+                    patient.getUsername(), doctor.getUsername(), e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
@@ -5,7 +5,6 @@ import com.capstone.dto.StudentStressDto;
 import com.capstone.dto.StudentAnswerDto;
 import com.capstone.dto.ClassStressOverviewDto;
 import com.capstone.entity.ClassRoom;
-import com.capstone.entity.StressAnalysis;
 import com.capstone.entity.Answer;
 import com.capstone.entity.User;
 import com.capstone.exception.AppException;
@@ -31,9 +30,10 @@ public class ClassRoomService {
     
     private final ClassRoomRepository classRoomRepository;
     private final UserRepository userRepository;
-    private final StressAnalysisRepository stressAnalysisRepository;
     private final AnswerRepository answerRepository;
     private final RoleRepository roleRepository;
+    private final ClassStressAggregator classStressAggregator;
+    private final ClassStressStream classStressStream;
     
     @Transactional
     public ClassRoomDto createClassRoom(String teacherId, String className, String description) {
@@ -69,6 +69,7 @@ public class ClassRoomService {
         
         classRoom.getStudents().add(student);
         classRoomRepository.save(classRoom);
+        classStressStream.invalidate(classId);
         
         return mapToClassRoomDto(classRoom);
     }
@@ -83,6 +84,7 @@ public class ClassRoomService {
         
         classRoom.getStudents().remove(student);
         classRoomRepository.save(classRoom);
+        classStressStream.invalidate(classId);
     }
     
     public ClassRoomDto getClassRoom(String classId) {
@@ -104,58 +106,11 @@ public class ClassRoomService {
     }
     
     public List<StudentStressDto> getStudentsStressData(String classId) {
-        ClassRoom classRoom = classRoomRepository.findById(classId)
+        ClassRoom classRoom = classRoomRepository.findWithStudentsById(classId)
                 .orElseThrow(() -> new AppException(ErrorCode.RESOURCE_NOT_FOUND));
         
-        List<StudentStressDto> studentStressDtos = new ArrayList<>();
-        
-        // Get today's date range
-        LocalDate today = LocalDate.now();
-        LocalDateTime startOfDay = today.atStartOfDay();
-        LocalDateTime endOfDay = today.atTime(23, 59, 59);
-        Date todayStart = Date.from(startOfDay.atZone(ZoneId.systemDefault()).toInstant());
-        Date todayEnd = Date.from(endOfDay.atZone(ZoneId.systemDefault()).toInstant());
-        
-        for (User student : classRoom.getStudents()) {
-            // Get today's stress analyses for the student
-            List<StressAnalysis> todayAnalyses = stressAnalysisRepository
-                    .findByUserAndCreatedAtBetween(student, todayStart, todayEnd);
-            
-            double dailyAverageScore = 0.0;
-            String dailyAverageLevel = "NO_DATA";
-            Date lastUpdated = null;
-            
-            if (!todayAnalyses.isEmpty()) {
-                // Calculate daily average stress score
-                dailyAverageScore = todayAnalyses.stream()
-                        .mapToDouble(StressAnalysis::getStressScore)
-                        .average()
-                        .orElse(0.0);
-                
-                // Map average score to level
-                dailyAverageLevel = mapStressScoreToLevel(dailyAverageScore);
-                
-                // Get the most recent analysis timestamp
-                lastUpdated = todayAnalyses.stream()
-                        .map(StressAnalysis::getCreatedAt)
-                        .max(Date::compareTo)
-                        .orElse(null);
-            }
-            
-            StudentStressDto dto = StudentStressDto.builder()
-                    .studentId(student.getId())
-                    .studentName(student.getFirstName() + " " + student.getLastName())
-                    .username(student.getUsername())
-                    .stressLevel(dailyAverageLevel)
-                    .dailyAverageStressScore(dailyAverageScore)
-                    .totalAnalysesToday(todayAnalyses.size())
-                    .lastUpdated(lastUpdated)
-                    .build();
-            
-            studentStressDtos.add(dto);
-        }
-        
-        return studentStressDtos;
+        // Một truy vấn trên daily_stress_rollup cho cả lớp
+        return classStressAggregator.getStudentsStressData(classRoom.getStudents());
     }
     
     public List<StudentAnswerDto> getStudentAnswers(String studentId, LocalDate fromDate, LocalDate toDate) {
@@ -258,80 +213,20 @@ public class ClassRoomService {
     }
     
     public ClassStressOverviewDto getClassStressOverview(String classId) {
-        ClassRoom classRoom = classRoomRepository.findById(classId)
+        ClassRoom classRoom = classRoomRepository.findWithStudentsById(classId)
                 .orElseThrow(() -> new AppException(ErrorCode.RESOURCE_NOT_FOUND));
         
-        List<StudentStressDto> studentStressList = getStudentsStressData(classId);
-        
-        // Calculate class-level statistics
-        int totalStudents = studentStressList.size();
-        int highStressCount = 0;
-        int mediumStressCount = 0;
-        int lowStressCount = 0;
-        int noDataCount = 0;
-        
-        double totalScore = 0.0;
-        int studentsWithData = 0;
-        Date latestUpdate = null;
-        
-        for (StudentStressDto student : studentStressList) {
-            String level = student.getStressLevel();
-            switch (level) {
-                case "HIGH":
-                case "EXTREME_STRESS":
-                    highStressCount++;
-                    break;
-                case "MEDIUM":
-                    mediumStressCount++;
-                    break;
-                case "LOW":
-                case "VERY_LOW":
-                    lowStressCount++;
-                    break;
-                default:
-                    noDataCount++;
-                    break;
-            }
-            
-            if (student.getDailyAverageStressScore() > 0) {
-                totalScore += student.getDailyAverageStressScore();
-                studentsWithData++;
-            }
-            
-            if (student.getLastUpdated() != null && 
-                (latestUpdate == null || student.getLastUpdated().after(latestUpdate))) {
-                latestUpdate = student.getLastUpdated();
-            }
-        }
-        
-        double classAverageScore = studentsWithData > 0 ? totalScore / studentsWithData : 0.0;
-        String classStressLevel = mapStressScoreToLevel(classAverageScore);
-        
-        return ClassStressOverviewDto.builder()
-                .classId(classId)
-                .className(classRoom.getName())
-                .classAverageStressScore(classAverageScore)
-                .classStressLevel(classStressLevel)
-                .totalStudents(totalStudents)
-                .studentsWithHighStress(highStressCount)
-                .studentsWithMediumStress(mediumStressCount)
-                .studentsWithLowStress(lowStressCount)
-                .studentsWithNoData(noDataCount)
-                .trend("STABLE") // TODO: Implement trend calculation
-                .lastUpdated(latestUpdate)
-                .students(studentStressList)
-                .build();
+        return classStressAggregator.getClassOverviews(List.of(classRoom)).get(0);
     }
 
     public List<ClassStressOverviewDto> getAllClassesStressOverview(String teacherUsername) {
         User teacher = userRepository.findByUsername(teacherUsername)
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
         
-        List<ClassRoom> teacherClasses = classRoomRepository.findByTeacher(teacher);
+        // Lớp + học sinh trong một truy vấn, số liệu stress của mọi lớp trong hai truy vấn
+        List<ClassRoom> teacherClasses = classRoomRepository.findWithStudentsByTeacher(teacher);
         
-        return teacherClasses.stream()
-                .map(classRoom -> getClassStressOverview(classRoom.getId()))
-                .collect(Collectors.toList());
+        return classStressAggregator.getClassOverviews(teacherClasses);
     }
     
     private ClassRoomDto mapToClassRoomDto(ClassRoom classRoom) {
@@ -354,20 +249,4 @@ public class ClassRoomService {
                 )
                 .build();
     }
-
-    private String mapStressScoreToLevel(double score) {
-        if (score >= 85) {
-            return "EXTREME_STRESS";
-        } else if (score >= 70) {
-            return "HIGH";
-        } else if (score >= 50) {
-            return "MEDIUM";
-        } else if (score >= 30) {
-            return "LOW";
-        } else if (score >= 10) {
-            return "VERY_LOW";
-        } else {
-            return "NO_DATA";
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,254 @@
+package com.capstone.service;
+
+import com.capstone.dto.ClassStressOverviewDto;
+import com.capstone.dto.StudentStressDto;
+import com.capstone.entity.ClassRoom;
+import com.capstone.entity.User;
+import com.capstone.repository.DailyStressRollupRepository;
+import com.capstone.util.StressCalendar;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds class stress dashboards from {@code daily_stress_rollup} for many students at once:
+ * today's per-student average, count and last analysis come from one query over the day's
+ * rollup rows, and the trend baseline (the previous {@value #TREND_BASELINE_DAYS} days) from
+ * one grouped query, however many students and classes are involved. Days are those of
+ * {@link StressCalendar}, the calendar the rollups are bucketed in; history that predates the
+ * rollup table is filled in on startup by {@link com.capstone.util.DailyStressRollupBackfill}.
+ */
+@Component
+@RequiredArgsConstructor
+public class ClassStressAggregator {
+    static final int TREND_BASELINE_DAYS = 7;
+    // Chênh lệch điểm trung bình (so với baseline) để coi là tăng/giảm
+    private static final double TREND_THRESHOLD = 5.0;
+
+    private final DailyStressRollupRepository dailyStressRollupRepository;
+
+    /**
+     * Today's stress data of {@code students}, in iteration order.
+     */
+    public List<StudentStressDto> getStudentsStressData(Collection<User> students) {
+        Map<String, DayTotals> today = loadToday(idsOf(students));
+        List<StudentStressDto> result = new ArrayList<>(students.size());
+        for (User student : students) {
+            result.add(toStudentDto(student, today.get(student.getId())));
+        }
+        return result;
+    }
+
+    /**
+     * Stress overviews of {@code classRooms} (with their students loaded), in the same order.
+     */
+    public List<ClassStressOverviewDto> getClassOverviews(List<ClassRoom> classRooms) {
+        Set<String> studentIds = new HashSet<>();
+        for (ClassRoom classRoom : classRooms) {
+            studentIds.addAll(idsOf(classRoom.getStudents()));
+        }
+        Map<String, DayTotals> today = loadToday(studentIds);
+        Map<String, DayTotals> baseline = loadBaseline(studentIds);
+
+        List<ClassStressOverviewDto> overviews = new ArrayList<>(classRooms.size());
+        for (ClassRoom classRoom : classRooms) {
+            overviews.add(toOverview(classRoom, today, baseline));
+        }
+        return overviews;
+    }
+
+    /**
+     * Average over {@code students} of their mean score in the trend baseline window, or null
+     * when none of them has data there.
+     */
+    public Double getBaselineAverage(Collection<User> students) {
+        double total = 0.0;
+        int withData = 0;
+        for (DayTotals previous : loadBaseline(idsOf(students)).values()) {
+            if (previous.average() > 0) {
+                total += previous.average();
+                withData++;
+            }
+        }
+        return withData > 0 ? total / withData : null;
+    }
+
+    private ClassStressOverviewDto toOverview(ClassRoom classRoom,
+                                              Map<String, DayTotals> today,
+                                              Map<String, DayTotals> baseline) {
+        List<StudentStressDto> studentStressList = new ArrayList<>();
+        int highStressCount = 0;
+        int mediumStressCount = 0;
+        int lowStressCount = 0;
+        int noDataCount = 0;
+
+        double totalScore = 0.0;
+        int studentsWithData = 0;
+        double baselineTotal = 0.0;
+        int studentsWithBaseline = 0;
+        Date latestUpdate = null;
+
+        for (User student : classRoom.getStudents()) {
+            StudentStressDto dto = toStudentDto(student, today.get(student.getId()));
+            studentStressList.add(dto);
+
+            switch (dto.getStressLevel()) {
+                case "HIGH":
+                case "EXTREME_STRESS":
+                    highStressCount++;
+                    break;
+                case "MEDIUM":
+                    mediumStressCount++;
+                    break;
+                case "LOW":
+                case "VERY_LOW":
+                    lowStressCount++;
+                    break;
+                default:
+                    noDataCount++;
+                    break;
+            }
+
+            if (dto.getDailyAverageStressScore() > 0) {
+                totalScore += dto.getDailyAverageStressScore();
+                studentsWithData++;
+            }
+
+            DayTotals previous = baseline.get(student.getId());
+            if (previous != null && previous.average() > 0) {
+                baselineTotal += previous.average();
+                studentsWithBaseline++;
+            }
+
+            if (dto.getLastUpdated() != null &&
+                (latestUpdate == null || dto.getLastUpdated().after(latestUpdate))) {
+                latestUpdate = dto.getLastUpdated();
+            }
+        }
+
+        double classAverageScore = studentsWithData > 0 ? totalScore / studentsWithData : 0.0;
+        Double baselineAverage = studentsWithBaseline > 0 ? baselineTotal / studentsWithBaseline : null;
+
+        return ClassStressOverviewDto.builder()
+                .classId(classRoom.getId())
+                .className(classRoom.getName())
+                .classAverageStressScore(classAverageScore)
+                .classStressLevel(mapStressScoreToLevel(classAverageScore))
+                .totalStudents(studentStressList.size())
+                .studentsWithHighStress(highStressCount)
+                .studentsWithMediumStress(mediumStressCount)
+                .studentsWithLowStress(lowStressCount)
+                .studentsWithNoData(noDataCount)
+                .trend(trend(studentsWithData > 0 ? classAverageScore : null, baselineAverage))
+                .lastUpdated(latestUpdate)
+                .students(studentStressList)
+                .build();
+    }
+
+    private StudentStressDto toStudentDto(User student, DayTotals today) {
+        double dailyAverageScore = today == null ? 0.0 : today.average();
+        return StudentStressDto.builder()
+                .studentId(student.getId())
+                .studentName(student.getFirstName() + " " + student.getLastName())
+                .username(student.getUsername())
+                .stressLevel(today == null ? "NO_DATA" : mapStressScoreToLevel(dailyAverageScore))
+                .dailyAverageStressScore(dailyAverageScore)
+                .totalAnalysesToday(today == null ? 0 : (int) today.count)
+                .lastUpdated(today == null ? null : today.lastAnalysisAt)
+                .build();
+    }
+
+    /**
+     * INCREASING / DECREASING when today's class average moved by at least
+     * {@link #TREND_THRESHOLD} points from the baseline average, STABLE otherwise (or when
+     * either side has no data).
+     */
+    static String trend(Double todayAverage, Double baselineAverage) {
+        if (todayAverage == null || baselineAverage == null) {
+            return "STABLE";
+        }
+        double delta = todayAverage - baselineAverage;
+        if (delta >= TREND_THRESHOLD) {
+            return "INCREASING";
+        }
+        if (delta <= -TREND_THRESHOLD) {
+            return "DECREASING";
+        }
+        return "STABLE";
+    }
+
+    static String mapStressScoreToLevel(double score) {
+        if (score >= 85) {
+            return "EXTREME_STRESS";
+        } else if (score >= 70) {
+            return "HIGH";
+        } else if (score >= 50) {
+            return "MEDIUM";
+        } else if (score >= 30) {
+            return "LOW";
+        } else if (score >= 10) {
+            return "VERY_LOW";
+        } else {
+            return "NO_DATA";
+        }
+    }
+
+    private Map<String, DayTotals> loadToday(Collection<String> studentIds) {
+        Map<String, DayTotals> totals = new HashMap<>();
+        if (studentIds.isEmpty()) {
+            return totals;
+        }
+        for (Object[] row : dailyStressRollupRepository.findDayTotals(studentIds, StressCalendar.today())) {
+            totals.put((String) row[0], new DayTotals(
+                    ((Number) row[1]).longValue(), ((Number) row[2]).doubleValue(), (Date) row[3]));
+        }
+        return totals;
+    }
+
+    private Map<String, DayTotals> loadBaseline(Collection<String> studentIds) {
+        Map<String, DayTotals> totals = new HashMap<>();
+        if (studentIds.isEmpty()) {
+            return totals;
+        }
+        LocalDate today = StressCalendar.today();
+        for (Object[] row : dailyStressRollupRepository.sumTotalsBetween(
+                studentIds, today.minusDays(TREND_BASELINE_DAYS), today.minusDays(1))) {
+            totals.put((String) row[0], new DayTotals(
+                    ((Number) row[1]).longValue(), ((Number) row[2]).doubleValue(), null));
+        }
+        return totals;
+    }
+
+    private static Set<String> idsOf(Collection<User> students) {
+        Set<String> ids = new HashSet<>();
+        for (User student : students) {
+            ids.add(student.getId());
+        }
+        return ids;
+    }
+
+    private static final class DayTotals {
+        final long count;
+        final double totalScore;
+        final Date lastAnalysisAt;
+
+        DayTotals(long count, double totalScore, Date lastAnalysisAt) {
+            this.count = count;
+            this.totalScore = totalScore;
+            this.lastAnalysisAt = lastAnalysisAt;
+        }
+
+        double average() {
+            return count == 0 ? 0.0 : totalScore / count;
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package com.capstone.service;
+
+import com.capstone.dto.StudentStressDto;
+import com.capstone.entity.ClassRoom;
+import com.capstone.entity.User;
+import com.capstone.repository.AnswerRepository;
+import com.capstone.repository.ClassRoomRepository;
+import com.capstone.util.AfterCommit;
+import com.capstone.util.StressCalendar;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Live class stress dashboards over STOMP. Teachers subscribe to
+ * {@code /topic/classes/{classId}/stress}; while a class has subscribers its dashboard is kept
+ * in memory (loaded once from {@link ClassStressAggregator}) and every committed stress
+ * analysis or question answer of one of its students is folded in in O(1) and pushed as a
+ * {@code STUDENT_UPDATE} carrying only the changed student row and the class totals.
+ *
+ * <p>Clients load the full overview over REST once after subscribing and then apply the
+ * deltas; each message carries a per-class {@code sequence}, so a gap means "reload". Loaded
+ * classes are rebuilt every five minutes and at the start of a new day to absorb any drift,
+ * and dropped when their last subscriber leaves.
+ */
+@Slf4j
+@Component
+public class ClassStressStream {
+    private static final Pattern CLASS_TOPIC = Pattern.compile("^/topic/classes/([^/]+)/stress$");
+
+    private final ClassRoomRepository classRoomRepository;
+    private final ClassStressAggregator classStressAggregator;
+    private final AnswerRepository answerRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    private final Map<String, LiveClass> classes = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> classIdsByStudent = new ConcurrentHashMap<>();
+    // sessionId -> (subscriptionId -> classId)
+    private final Map<String, Map<String, String>> subscriptions = new HashMap<>();
+    private final Map<String, Integer> subscriberCounts = new HashMap<>();
+
+    public ClassStressStream(ClassRoomRepository classRoomRepository,
+                             ClassStressAggregator classStressAggregator,
+                             AnswerRepository answerRepository,
+                             SimpMessagingTemplate messagingTemplate) {
+        this.classRoomRepository = classRoomRepository;
+        this.classStressAggregator = classStressAggregator;
+        this.answerRepository = answerRepository;
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    public static String topic(String classId) {
+        return "/topic/classes/" + classId + "/stress";
+    }
+
+    /**
+     * The class id of a class stress topic, or null for any other destination.
+     */
+    public static String classIdOf(String destination) {
+        Matcher matcher = destination == null ? null : CLASS_TOPIC.matcher(destination);
+        return matcher != null && matcher.matches() ? matcher.group(1) : null;
+    }
+
+    /**
+     * Folds a stress analysis into the live dashboards of the student's classes once the
+     * current transaction (if any) has committed.
+     */
+    public void recordAnalysis(String studentId, double score, Date createdAt) {
+        AfterCommit.run(() -> apply(studentId, live -> live.applyAnalysis(studentId, score, createdAt)));
+    }
+
+    /**
+     * Folds a question answer into the live dashboards of the student's classes once the
+     * current transaction (if any) has committed.
+     */
+    public void recordAnswer(String studentId, double score) {
+        AfterCommit.run(() -> apply(studentId, live -> live.applyAnswer(studentId, score)));
+    }
+
+    /**
+     * Drops the live dashboard of a class whose membership changed; it is rebuilt right away
+     * when someone is watching it.
+     */
+    public void invalidate(String classId) {
+        AfterCommit.run(() -> {
+            if (unload(classId) != null && isWatched(classId)) {
+                load(classId);
+            }
+        });
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        // StompAuthChannelInterceptor đã chặn mọi subscribe không phải của giáo viên phụ trách lớp
+        String classId = classIdOf(accessor.getDestination());
+        if (classId == null || accessor.getSessionId() == null) {
+            return;
+        }
+        boolean first;
+        synchronized (this) {
+            subscriptions.computeIfAbsent(accessor.getSessionId(), id -> new HashMap<>())
+                    .put(accessor.getSubscriptionId(), classId);
+            first = subscriberCounts.merge(classId, 1, Integer::sum) == 1;
+        }
+        if (first || !classes.containsKey(classId)) {
+            load(classId);
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String classId;
+        synchronized (this) {
+            Map<String, String> sessionSubscriptions = subscriptions.get(accessor.getSessionId());
+            classId = sessionSubscriptions == null ? null : sessionSubscriptions.remove(accessor.getSubscriptionId());
+        }
+        if (classId != null) {
+            release(classId);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> sessionSubscriptions;
+        synchronized (this) {
+            sessionSubscriptions = subscriptions.remove(event.getSessionId());
+        }
+        if (sessionSubscriptions != null) {
+            sessionSubscriptions.values().forEach(this::release);
+        }
+    }
+
+    @Scheduled(fixedDelay = 300000)
+    public void refresh() {
+        for (String classId : new ArrayList<>(classes.keySet())) {
+            LiveClass live = load(classId);
+            if (live != null) {
+                Map<String, Object> message;
+                synchronized (live) {
+                    message = live.totalsMessage("CLASS_TOTALS");
+                }
+                publish(live, message);
+            }
+        }
+    }
+
+    private void apply(String studentId, Function<LiveClass, Map<String, Object>> update) {
+        Set<String> classIds = classIdsByStudent.get(studentId);
+        if (classIds == null) {
+            return;
+        }
+        LocalDate today = StressCalendar.today();
+        for (String classId : classIds) {
+            LiveClass live = classes.get(classId);
+            if (live == null) {
+                continue;
+            }
+            if (!live.day.equals(today)) {
+                // Sang ngày mới: dựng lại từ rollup thay vì cộng dồn vào ngày cũ
+                live = load(classId);
+                if (live == null) {
+                    continue;
+                }
+            }
+            Map<String, Object> message;
+            synchronized (live) {
+                message = update.apply(live);
+            }
+            if (message != null) {
+                publish(live, message);
+            }
+        }
+    }
+
+    private LiveClass load(String classId) {
+        ClassRoom classRoom = classRoomRepository.findWithStudentsById(classId).orElse(null);
+        if (classRoom == null) {
+            unload(classId);
+            return null;
+        }
+        LocalDate today = StressCalendar.today();
+        List<StudentStressDto> rows = classStressAggregator.getStudentsStressData(classRoom.getStudents());
+        Double baselineAverage = classStressAggregator.getBaselineAverage(classRoom.getStudents());
+
+        // [userId, answerCount, totalStressScore] của câu trả lời hôm nay
+        Map<String, Object[]> answerRows = new HashMap<>();
+        if (!classRoom.getStudents().isEmpty()) {
+            List<String> ids = classRoom.getStudents().stream().map(User::getId).toList();
+            for (Object[] row : answerRepository.sumScoresSince(ids, StressCalendar.localStartOf(today))) {
+                answerRows.put((String) row[0], row);
+            }
+        }
+
+        LiveClass previous = classes.get(classId);
+        LiveClass live = new LiveClass(classId, classRoom.getName(), today, baselineAverage,
+                previous == null ? 0 : previous.sequence);
+        for (StudentStressDto row : rows) {
+            Object[] answers = answerRows.get(row.getStudentId());
+            live.addStudent(row,
+                    answers == null ? 0 : ((Number) answers[1]).longValue(),
+                    answers == null || answers[2] == null ? 0.0 : ((Number) answers[2]).doubleValue());
+        }
+
+        classes.put(classId, live);
+        for (String studentId : live.students.keySet()) {
+            classIdsByStudent.computeIfAbsent(studentId, id -> ConcurrentHashMap.newKeySet()).add(classId);
+        }
+        if (previous != null) {
+            for (String studentId : previous.students.keySet()) {
+                if (!live.students.containsKey(studentId)) {
+                    removeIndex(studentId, classId);
+                }
+            }
+        }
+        log.debug("Loaded live stress dashboard of class {} ({} students)", classId, live.students.size());
+        return live;
+    }
+
+    private LiveClass unload(String classId) {
+        LiveClass removed = classes.remove(classId);
+        if (removed != null) {
+            for (String studentId : removed.students.keySet()) {
+                removeIndex(studentId, classId);
+            }
+        }
+        return removed;
+    }
+
+    private void release(String classId) {
+        boolean last;
+        synchronized (this) {
+            Integer remaining = subscriberCounts.computeIfPresent(classId, (id, count) -> count > 1 ? count - 1 : null);
+            last = remaining == null;
+        }
+        if (last) {
+            unload(classId);
+        }
+    }
+
+    private synchronized boolean isWatched(String classId) {
+        return subscriberCounts.containsKey(classId);
+    }
+
+    private void removeIndex(String studentId, String classId) {
+        classIdsByStudent.computeIfPresent(studentId, (id, classIds) -> {
+            classIds.remove(classId);
+            return classIds.isEmpty() ? null : classIds;
+        });
+    }
+
+    private void publish(LiveClass live, Map<String, Object> message) {
+        try {
+            messagingTemplate.convertAndSend(topic(live.classId), message);
+        } catch (Exception e) {
+            log.error("Failed to push stress update of class {}: {}", live.classId, e.getMessage());
+        }
+    }
+
+    private static final class LiveStudent {
+        final String id;
+        final String name;
+        final String username;
+        long analyses;
+        double totalScore;
+        Date lastUpdated;
+        long answers;
+        double answerTotal;
+
+        LiveStudent(String id, String name, String username) {
+            this.id = id;
+            this.name = name;
+            this.username = username;
+        }
+
+        double average() {
+            return analyses == 0 ? 0.0 : totalScore / analyses;
+        }
+
+        String level() {
+            return analyses == 0 ? "NO_DATA" : ClassStressAggregator.mapStressScoreToLevel(average());
+        }
+
+        Map<String, Object> toMessage() {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("studentId", id);
+            row.put("studentName", name);
+            row.put("username", username);
+            row.put("stressLevel", level());
+            row.put("dailyAverageStressScore", average());
+            row.put("totalAnalysesToday", analyses);
+            row.put("lastUpdated", lastUpdated);
+            row.put("answersToday", answers);
+            row.put("averageAnswerStressScore", answers == 0 ? 0.0 : answerTotal / answers);
+            return row;
+        }
+    }
+
+    // Trạng thái của một lớp; mọi thay đổi diễn ra khi giữ khoá trên chính đối tượng này
+    private static final class LiveClass {
+        final String classId;
+        final String className;
+        final LocalDate day;
+        final Double baselineAverage;
+        final Map<String, LiveStudent> students = new LinkedHashMap<>();
+        final Map<String, Integer> levelCounts = new HashMap<>();
+        double totalOfAverages;
+        int studentsWithData;
+        Date lastUpdated;
+        long sequence;
+
+        LiveClass(String classId, String className, LocalDate day, Double baselineAverage, long sequence) {
+            this.classId = classId;
+            this.className = className;
+            this.day = day;
+            this.baselineAverage = baselineAverage;
+            this.sequence = sequence;
+        }
+
+        void addStudent(StudentStressDto row, long answers, double answerTotal) {
+            LiveStudent student = new LiveStudent(row.getStudentId(), row.getStudentName(), row.getUsername());
+            student.analyses = row.getTotalAnalysesToday();
+            student.totalScore = row.getDailyAverageStressScore() * row.getTotalAnalysesToday();
+            student.lastUpdated = row.getLastUpdated();
+            student.answers = answers;
+            student.answerTotal = answerTotal;
+            students.put(student.id, student);
+            include(student);
+            lastUpdated = later(lastUpdated, student.lastUpdated);
+        }
+
+        Map<String, Object> applyAnalysis(String studentId, double score, Date createdAt) {
+            LiveStudent student = students.get(studentId);
+            if (student == null || !StressCalendar.dayOf(createdAt).equals(day)) {
+                return null;
+            }
+            exclude(student);
+            student.analyses++;
+            student.totalScore += score;
+            student.lastUpdated = later(student.lastUpdated, createdAt);
+            include(student);
+            lastUpdated = later(lastUpdated, createdAt);
+            return studentMessage(student);
+        }
+
+        Map<String, Object> applyAnswer(String studentId, double score) {
+            LiveStudent student = students.get(studentId);
+            if (student == null) {
+                return null;
+            }
+            student.answers++;
+            student.answerTotal += score;
+            return studentMessage(student);
+        }
+
+        private void include(LiveStudent student) {
+            levelCounts.merge(bucket(student.level()), 1, Integer::sum);
+            if (student.average() > 0) {
+                totalOfAverages += student.average();
+                studentsWithData++;
+            }
+        }
+
+        private void exclude(LiveStudent student) {
+            levelCounts.merge(bucket(student.level()), -1, Integer::sum);
+            if (student.average() > 0) {
+                totalOfAverages -= student.average();
+                studentsWithData--;
+            }
+        }
+
+        private Map<String, Object> studentMessage(LiveStudent student) {
+            Map<String, Object> message = totalsMessage("STUDENT_UPDATE");
+            message.put("student", student.toMessage());
+            return message;
+        }
+
+        Map<String, Object> totalsMessage(String type) {
+            double classAverage = studentsWithData > 0 ? totalOfAverages / studentsWithData : 0.0;
+            Map<String, Object> totals = new LinkedHashMap<>();
+            totals.put("classAverageStressScore", classAverage);
+            totals.put("classStressLevel", ClassStressAggregator.mapStressScoreToLevel(classAverage));
+            totals.put("totalStudents", students.size());
+            totals.put("studentsWithHighStress", levelCounts.getOrDefault("HIGH", 0));
+            totals.put("studentsWithMediumStress", levelCounts.getOrDefault("MEDIUM", 0));
+            totals.put("studentsWithLowStress", levelCounts.getOrDefault("LOW", 0));
+            totals.put("studentsWithNoData", levelCounts.getOrDefault("NO_DATA", 0));
+            totals.put("trend", ClassStressAggregator.trend(studentsWithData > 0 ? classAverage : null, baselineAverage));
+            totals.put("lastUpdated", lastUpdated);
+
+            Map<String, Object> message = new LinkedHashMap<>();
+            message.put("type", type);
+            message.put("classId", classId);
+            message.put("className", className);
+            message.put("sequence", ++sequence);
+            message.put("totals", totals);
+            return message;
+        }
+
+        // Cùng cách nhóm mức độ như ClassStressAggregator
+        private static String bucket(String level) {
+            switch (level) {
+                case "HIGH":
+                case "EXTREME_STRESS":
+                    return "HIGH";
+                case "MEDIUM":
+                    return "MEDIUM";
+                case "LOW":
+                case "VERY_LOW":
+                    return "LOW";
+                default:
+                    return "NO_DATA";
+            }
+        }
+
+        private static Date later(Date a, Date b) {
+            if (a == null) {
+                return b;
+            }
+            return b != null && b.after(a) ? b : a;
+        }
+
+    }
+}
@@ -0,0 +1,200 @@
+package com.capstone.service;
+
+import com.capstone.entity.ChatMessage;
+import com.capstone.entity.ChatPayment;
+import com.capstone.entity.ChatRequest;
+import com.capstone.entity.ConversationSummary;
+import com.capstone.entity.DoctorUpgrade;
+import com.capstone.entity.User;
+import com.capstone.enums.RequestStatus;
+import com.capstone.repository.ChatMessageRepository;
+import com.capstone.repository.ChatPaymentRepository;
+import com.capstone.repository.ChatRequestRepository;
+import com.capstone.repository.ConversationSummaryRepository;
+import com.capstone.repository.DoctorUpgradeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Maintains {@link ConversationSummary} rows. Message writes, read receipts and chat payments
+ * update the row with a single atomic statement; a row that does not exist yet is claimed with
+ * {@code INSERT ... ON CONFLICT DO NOTHING} and built once from {@code chat_messages}, so
+ * conversations that predate the table are picked up lazily (and all at once by
+ * {@link #backfillIfEmpty()} on startup) and two concurrent first messages never both insert.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ConversationSummaryService {
+    public static final String DEFAULT_SPECIALIZATION = "Bác sĩ tư vấn";
+
+    private final ConversationSummaryRepository conversationSummaryRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatRequestRepository chatRequestRepository;
+    private final ChatPaymentRepository chatPaymentRepository;
+    private final DoctorUpgradeRepository doctorUpgradeRepository;
+
+    @Transactional(readOnly = true)
+    public List<ConversationSummary> getHistory(User patient) {
+        return conversationSummaryRepository.findHistoryByPatient(patient);
+    }
+
+    /**
+     * Folds a message that has already been saved into its conversation summary.
+     */
+    @Transactional
+    public void recordMessage(User patient, User doctor, ChatMessage message) {
+        if (foldMessage(patient, doctor, message) > 0) {
+            return;
+        }
+        // Tin nhắn đầu tiên (hoặc cuộc trò chuyện cũ) -> dựng summary từ chat_messages
+        if (!createSummary(patient, doctor, rebuilt -> { })) {
+            // Tin nhắn đồng thời khác vừa tạo summary (chưa chứa tin nhắn này) -> cộng dồn như bình thường
+            foldMessage(patient, doctor, message);
+        }
+    }
+
+    private int foldMessage(User patient, User doctor, ChatMessage message) {
+        boolean sentByDoctor = message.getSender().getId().equals(doctor.getId());
+        return conversationSummaryRepository.recordMessage(
+                patient, doctor,
+                message.getContent(),
+                message.getSender().getId(),
+                message.getTimestamp(),
+                sentByDoctor ? 1 : 0,
+                sentByDoctor ? 0 : 1);
+    }
+
+    /**
+     * Clears the unread counter of {@code reader} in its conversation with {@code sender}.
+     */
+    @Transactional
+    public void markConversationRead(User reader, User sender) {
+        if (isDoctor(reader)) {
+            conversationSummaryRepository.clearDoctorUnread(sender, reader);
+        } else {
+            conversationSummaryRepository.clearPatientUnread(reader, sender);
+        }
+    }
+
+    @Transactional
+    public void recordPayment(ChatPayment payment) {
+        ChatRequest chatRequest = payment.getChatRequest();
+        if (foldPayment(payment) > 0) {
+            return;
+        }
+        if (!createSummary(chatRequest.getPatient(), chatRequest.getDoctor(), rebuilt -> applyPayment(rebuilt, payment))) {
+            foldPayment(payment);
+        }
+    }
+
+    private int foldPayment(ChatPayment payment) {
+        ChatRequest chatRequest = payment.getChatRequest();
+        return conversationSummaryRepository.recordPayment(
+                chatRequest.getPatient(), chatRequest.getDoctor(),
+                chatRequest.getId(), payment.getId(),
+                payment.getCreatedAt(), payment.getExpiresAt());
+    }
+
+    /**
+     * Builds summaries for all existing conversations when the table is still empty, i.e. on
+     * the first start after it was introduced.
+     */
+    @Transactional
+    public int backfillIfEmpty() {
+        if (conversationSummaryRepository.count() > 0) {
+            return 0;
+        }
+
+        Set<String> seen = new HashSet<>();
+        int created = 0;
+        for (Object[] pair : chatMessageRepository.findDistinctSenderReceiverPairs()) {
+            User sender = (User) pair[0];
+            User receiver = (User) pair[1];
+            User patient, doctor;
+            if (isDoctor(receiver) && !isDoctor(sender)) {
+                patient = sender;
+                doctor = receiver;
+            } else if (isDoctor(sender) && !isDoctor(receiver)) {
+                patient = receiver;
+                doctor = sender;
+            } else {
+                continue;
+            }
+            if (seen.add(patient.getId() + ":" + doctor.getId()) && createSummary(patient, doctor, rebuilt -> { })) {
+                created++;
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Inserts the summary row for a conversation that has none and fills it from
+     * {@code chat_messages}. Returns {@code false} without writing when a concurrent transaction
+     * created the row first; the insert waits for that transaction, so the caller can then apply
+     * its change to the committed row with the usual atomic update.
+     */
+    private boolean createSummary(User patient, User doctor, Consumer<ConversationSummary> adjust) {
+        String id = UUID.randomUUID().toString();
+        if (conversationSummaryRepository.insertIfAbsent(id, patient.getId(), doctor.getId()) == 0) {
+            return false;
+        }
+        ConversationSummary summary = rebuild(patient, doctor);
+        summary.setId(id);
+        adjust.accept(summary);
+        conversationSummaryRepository.save(summary);
+        return true;
+    }
+
+    private ConversationSummary rebuild(User patient, User doctor) {
+        ConversationSummary summary = ConversationSummary.builder()
+                .patient(patient)
+                .doctor(doctor)
+                .doctorSpecialization(findSpecialization(doctor))
+                .totalMessages((int) chatMessageRepository.countConversation(patient, doctor))
+                .patientUnreadCount(chatMessageRepository.countUnreadMessagesFromUser(patient.getId(), doctor.getId()))
+                .doctorUnreadCount(chatMessageRepository.countUnreadMessagesFromUser(doctor.getId(), patient.getId()))
+                .build();
+
+        chatMessageRepository.findLastMessageBetweenUsers(patient.getId(), doctor.getId())
+                .ifPresent(last -> {
+                    summary.setLastMessageContent(last.getContent());
+                    summary.setLastMessageSenderId(last.getSender().getId());
+                    summary.setLastMessageTime(last.getTimestamp());
+                });
+
+        chatRequestRepository.findFirstByPatientAndDoctorAndStatusOrderByCreatedAtDesc(patient, doctor, RequestStatus.APPROVED)
+                .flatMap(chatPaymentRepository::findByChatRequest)
+                .ifPresent(payment -> applyPayment(summary, payment));
+
+        return summary;
+    }
+
+    private String findSpecialization(User doctor) {
+        // Không dùng findLatestByUser: truy vấn đó lỗi khi bác sĩ có nhiều yêu cầu đã duyệt
+        return doctorUpgradeRepository.findByUserAndStatus(doctor, RequestStatus.APPROVED).stream()
+                .max(Comparator.comparing(DoctorUpgrade::getId))
+                .map(DoctorUpgrade::getSpecialization)
+                .orElse(DEFAULT_SPECIALIZATION);
+    }
+
+    private static void applyPayment(ConversationSummary summary, ChatPayment payment) {
+        summary.setActiveRequestId(payment.getChatRequest().getId());
+        summary.setActivePaymentId(payment.getId());
+        summary.setPaymentCreatedAt(payment.getCreatedAt());
+        summary.setPaymentExpiresAt(payment.getExpiresAt());
+    }
+
+    private static boolean isDoctor(User user) {
+        return user.getRole() != null && "DOCTOR".equals(user.getRole().getName());
+    }
+}
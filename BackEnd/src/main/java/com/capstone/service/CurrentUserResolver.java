@@ -0,0 +1,119 @@
+package com.capstone.service;
+
+import com.capstone.entity.User;
+import com.capstone.exception.AppException;
+import com.capstone.exception.ErrorCode;
+import com.capstone.repository.UserRepository;
+import com.capstone.util.AfterCommit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Resolves the authenticated {@link User} (with role and permissions loaded) at most once per
+ * HTTP request, and across requests from a small LRU cache keyed by username that holds each
+ * user for {@code security.principal-cache.ttl-seconds}.
+ *
+ * <p>The returned user is a detached snapshot meant for identity, authorization checks and
+ * entity references. Code that changes a user must load it from {@link UserRepository} and call
+ * {@link #evictUser(String)}; ban, role, profile and balance changes already do.
+ */
+@Component
+public class CurrentUserResolver {
+    private static final String REQUEST_ATTRIBUTE = CurrentUserResolver.class.getName() + ".user";
+
+    private final UserRepository userRepository;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Map<String, CachedUser> entries;
+    private final Map<String, String> usernamesById = new HashMap<>();
+
+    public CurrentUserResolver(UserRepository userRepository,
+                               @Value("${security.principal-cache.ttl-seconds:30}") long ttlSeconds,
+                               @Value("${security.principal-cache.max-entries:10000}") int maxEntries) {
+        this.userRepository = userRepository;
+        this.ttlMillis = ttlSeconds * 1000L;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+                if (size() > CurrentUserResolver.this.maxEntries) {
+                    usernamesById.remove(eldest.getValue().user.getId());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public User getCurrentUser() {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null
+                && attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof User user
+                && username.equals(user.getUsername())) {
+            return user;
+        }
+
+        User user = resolve(username);
+        if (attributes != null) {
+            attributes.setAttribute(REQUEST_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+        }
+        return user;
+    }
+
+    /**
+     * Drops the cached user now and again once the current transaction commits, so a request
+     * that read the old row in between cannot keep it cached.
+     */
+    public void evictUser(String userId) {
+        evictNow(userId);
+        AfterCommit.run(() -> evictNow(userId));
+    }
+
+    private User resolve(String username) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            CachedUser cached = entries.get(username);
+            if (cached != null) {
+                if (cached.expiresAt > now) {
+                    return cached.user;
+                }
+                entries.remove(username);
+            }
+        }
+
+        User user = userRepository.findWithRoleByUsername(username)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        synchronized (entries) {
+            entries.put(username, new CachedUser(user, now + ttlMillis));
+            usernamesById.put(user.getId(), username);
+        }
+        return user;
+    }
+
+    private void evictNow(String userId) {
+        synchronized (entries) {
+            String username = usernamesById.remove(userId);
+            if (username != null) {
+                entries.remove(username);
+            }
+        }
+    }
+
+    private static class CachedUser {
+        final User user;
+        final long expiresAt;
+
+        CachedUser(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
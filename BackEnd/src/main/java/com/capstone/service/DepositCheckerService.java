@@ -1,77 +1,331 @@
 package com.capstone.service;
 
+import com.capstone.entity.DepositSyncState;
 import com.capstone.entity.PendingDeposit;
-import com.capstone.entity.User;
+import com.capstone.enums.LedgerAccount;
+import com.capstone.enums.LedgerEntryType;
+import com.capstone.repository.DepositSyncStateRepository;
 import com.capstone.repository.PendingDepositRepository;
 import com.capstone.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Reconciles SePay bank transactions against {@link PendingDeposit}s.
+ *
+ * <p>Pending deposits of the last few minutes are kept in memory, keyed by their normalized
+ * transfer code, so each transaction is matched by sliding a code-sized window over its
+ * normalized content instead of comparing it with every deposit. Only transactions newer than
+ * the persisted high-water mark ({@link DepositSyncState}) are fetched. SePay returns the newest
+ * rows first, so a full page may leave a gap above the mark; the fetch is repeated with a
+ * larger limit until it comes back short, and the mark only moves once every transaction above
+ * it has been seen. The credits and the new mark are written in one database transaction, and a
+ * deposit is completed with a conditional update, so a transfer is never credited twice.
+ *
+ * <p>Without pending deposits, the pending set is re-read from the database with an
+ * exponential back-off and SePay is only asked for its newest transaction, which becomes the new
+ * mark; {@link #track(PendingDeposit)} wakes the poller as soon as a new deposit is created.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class DepositCheckerService {
+    private static final String PROVIDER = "sepay";
 
     private final PendingDepositRepository pendingDepositRepository;
+    private final DepositSyncStateRepository depositSyncStateRepository;
     private final UserRepository userRepository;
-    private final WebClient webClient;
+    private final BalanceLedgerService balanceLedgerService;
+    private final SepayClient sepayClient;
+    private final TransactionTemplate transactionTemplate;
+    private final int fetchLimit;
+    private final int maxFetchLimit;
+    private final long pollIntervalMillis;
+    private final long idlePollIntervalMillis;
+    private final long depositWindowMillis;
 
-    @Scheduled(fixedDelay = 3000)
+    private final Map<String, PendingEntry> pendingByCode = new ConcurrentHashMap<>();
+    private volatile long nextPollAt;
+    private long idleDelayMillis;
+
+    public DepositCheckerService(PendingDepositRepository pendingDepositRepository,
+                                 DepositSyncStateRepository depositSyncStateRepository,
+                                 UserRepository userRepository,
+                                 BalanceLedgerService balanceLedgerService,
+                                 SepayClient sepayClient,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${sepay.fetch-limit:100}") int fetchLimit,
+                                 @Value("${sepay.max-fetch-limit:2000}") int maxFetchLimit,
+                                 @Value("${sepay.poll-interval-ms:3000}") long pollIntervalMillis,
+                                 @Value("${sepay.idle-poll-interval-ms:60000}") long idlePollIntervalMillis,
+                                 @Value("${sepay.deposit-window-minutes:5}") long depositWindowMinutes) {
+        this.pendingDepositRepository = pendingDepositRepository;
+        this.depositSyncStateRepository = depositSyncStateRepository;
+        this.userRepository = userRepository;
+        this.balanceLedgerService = balanceLedgerService;
+        this.sepayClient = sepayClient;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.fetchLimit = fetchLimit;
+        this.maxFetchLimit = Math.max(fetchLimit, maxFetchLimit);
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.idlePollIntervalMillis = idlePollIntervalMillis;
+        this.depositWindowMillis = depositWindowMinutes * 60 * 1000;
+        this.idleDelayMillis = pollIntervalMillis;
+    }
+
+    /**
+     * Starts watching a newly created deposit and makes the next tick poll SePay.
+     */
+    public void track(PendingDeposit deposit) {
+        PendingEntry entry = PendingEntry.of(deposit);
+        if (entry != null) {
+            pendingByCode.put(entry.code, entry);
+            nextPollAt = 0;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPendingDeposits() {
+        try {
+            reloadPending();
+        } catch (Exception e) {
+            log.error("Failed to load pending deposits: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelay = 1000)
     public void checkDeposits() {
-        Date fiveMinutesAgo = new Date(System.currentTimeMillis() - 5 * 60 * 1000);
-        List<PendingDeposit> pendingList = pendingDepositRepository.findByCompletedFalseAndCreatedAtAfter(fiveMinutesAgo);
-
-        if (pendingList.isEmpty()) return;
-
-        webClient.get()
-                .uri("/userapi/transactions/list")
-                .retrieve()
-                .bodyToMono(Map.class)
-                .subscribe(responseMap -> {
-                    log.info("📥 SePay response: {}", responseMap);
-
-                    List<Map<String, Object>> transactions = (List<Map<String, Object>>) responseMap.get("transactions");
-                    if (transactions == null) {
-                        log.warn("⚠️ Không tìm thấy 'transactions' trong phản hồi SePay");
-                        return;
-                    }
-
-                    for (PendingDeposit deposit : pendingList) {
-                        for (Map<String, Object> tx : transactions) {
-                            String content = (String) tx.get("transaction_content");
-                            Object amountObj = tx.get("amount_in");
-
-                            if (content == null || amountObj == null) continue;
-
-                            double money = Double.parseDouble(amountObj.toString());
-
-                            if (content.trim().toLowerCase().contains(deposit.getTransactionContent().toLowerCase())
-                                    && money >= deposit.getAmount()
-                                    && !deposit.isCompleted()) {
-
-                                User user = deposit.getUser();
-                                user.setBalance(user.getBalance() + deposit.getAmount());
-                                userRepository.save(user);
-
-                                deposit.setCompleted(true);
-                                pendingDepositRepository.save(deposit);
-
-
-                                log.info("✅ Nạp tiền thành công cho user '{}', số tiền: {}, nội dung: {}",
-                                        user.getUsername(), deposit.getAmount(), content);
-                                break;
-                            }
-                        }
-                    }
-                }, error -> {
-                    log.error("Lỗi gọi SePay API: {}", error.getMessage(), error);
-                });
+        long now = System.currentTimeMillis();
+        if (now < nextPollAt) {
+            return;
+        }
+
+        pendingByCode.values().removeIf(entry -> entry.createdAtMillis < now - depositWindowMillis);
+        if (pendingByCode.isEmpty()) {
+            // Không có giao dịch chờ: chỉ đọc lại DB, giãn dần chu kỳ
+            reloadPending();
+            if (pendingByCode.isEmpty()) {
+                nextPollAt = now + idleDelayMillis;
+                idleDelayMillis = Math.min(idleDelayMillis * 2, idlePollIntervalMillis);
+                try {
+                    skipIdleTransactions();
+                } catch (Exception e) {
+                    log.error("Lỗi gọi SePay API: {}", e.getMessage(), e);
+                }
+                return;
+            }
+        }
+        idleDelayMillis = pollIntervalMillis;
+        nextPollAt = now + pollIntervalMillis;
+
+        try {
+            reconcileNewTransactions();
+        } catch (Exception e) {
+            log.error("Lỗi gọi SePay API: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Fetches every transaction after the high-water mark and reconciles them. The mark is only
+     * advanced when the fetch is known to be complete, i.e. it returned fewer rows than asked for.
+     */
+    private void reconcileNewTransactions() {
+        Long lastTransactionId = depositSyncStateRepository.findById(PROVIDER)
+                .map(DepositSyncState::getLastTransactionId)
+                .orElse(null);
+
+        List<SepayClient.Transaction> transactions;
+        boolean complete;
+        int limit = fetchLimit;
+        while (true) {
+            transactions = new ArrayList<>(sepayClient.fetchTransactions(lastTransactionId, limit));
+            // Không có mốc: chỉ cần các giao dịch gần nhất. Trang chưa đầy: đã thấy hết phía trên mốc
+            complete = lastTransactionId == null || transactions.size() < limit;
+            if (complete || limit >= maxFetchLimit) {
+                break;
+            }
+            limit = (int) Math.min((long) limit * 2, maxFetchLimit);
+        }
+        if (!complete) {
+            log.error("More than {} SePay transactions after id {}; keeping the mark until they can be read in one fetch",
+                    maxFetchLimit, lastTransactionId);
+        }
+
+        transactions.removeIf(tx -> lastTransactionId != null && tx.getId() <= lastTransactionId);
+        if (transactions.isEmpty()) {
+            return;
+        }
+        transactions.sort(Comparator.comparingLong(SepayClient.Transaction::getId));
+
+        List<Match> matches = match(transactions);
+        Long highWaterMark = complete ? transactions.get(transactions.size() - 1).getId() : lastTransactionId;
+        List<Match> credited = transactionTemplate.execute(status -> creditBatch(matches, highWaterMark));
+
+        for (Match match : credited) {
+            pendingByCode.remove(match.entry.code, match.entry);
+            log.info("✅ Nạp tiền thành công cho user '{}', số tiền: {}, nội dung: {}",
+                    match.entry.userId, match.entry.amount, match.transaction.getContent());
+        }
+    }
+
+    /**
+     * Moves the mark to the newest transaction while no deposit is pending. Nothing received in
+     * that time can belong to a deposit, and keeping the mark close means the first poll after a
+     * deposit is created never has more than {@code max-fetch-limit} transactions to read.
+     */
+    private void skipIdleTransactions() {
+        Long lastTransactionId = depositSyncStateRepository.findById(PROVIDER)
+                .map(DepositSyncState::getLastTransactionId)
+                .orElse(null);
+        long newest = sepayClient.fetchTransactions(lastTransactionId, 1).stream()
+                .mapToLong(SepayClient.Transaction::getId)
+                .max()
+                .orElse(Long.MIN_VALUE);
+        // Deposit vừa được tạo trong lúc gọi SePay -> để lần poll tiếp theo đối soát bình thường
+        if (newest == Long.MIN_VALUE || !pendingByCode.isEmpty()) {
+            return;
+        }
+        depositSyncStateRepository.save(DepositSyncState.builder()
+                .provider(PROVIDER)
+                .lastTransactionId(newest)
+                .updatedAt(LocalDateTime.now())
+                .build());
+    }
+
+    private List<Match> match(List<SepayClient.Transaction> transactions) {
+        Set<Integer> codeLengths = new HashSet<>();
+        for (String code : pendingByCode.keySet()) {
+            codeLengths.add(code.length());
+        }
+
+        List<Match> matches = new ArrayList<>();
+        Set<String> claimed = new HashSet<>();
+        for (SepayClient.Transaction tx : transactions) {
+            if (tx.getAmountIn() <= 0) {
+                continue;
+            }
+            PendingEntry entry = findEntry(normalize(tx.getContent()), codeLengths, claimed);
+            if (entry == null) {
+                continue;
+            }
+            if (tx.getAmountIn() < entry.amount) {
+                log.warn("SePay transaction {} for code {} is below the deposit amount: {} < {}",
+                        tx.getId(), entry.code, tx.getAmountIn(), entry.amount);
+                continue;
+            }
+            claimed.add(entry.code);
+            matches.add(new Match(entry, tx));
+        }
+        return matches;
+    }
+
+    private PendingEntry findEntry(String content, Set<Integer> codeLengths, Set<String> claimed) {
+        for (int length : codeLengths) {
+            for (int i = 0; i + length <= content.length(); i++) {
+                String window = content.substring(i, i + length);
+                PendingEntry entry = pendingByCode.get(window);
+                if (entry != null && !claimed.contains(window)) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    private List<Match> creditBatch(List<Match> matches, Long highWaterMark) {
+        List<Match> credited = new ArrayList<>();
+        for (Match match : matches) {
+            // Chỉ cộng tiền khi chính lệnh này chuyển deposit sang completed
+            if (pendingDepositRepository.markCompleted(match.entry.depositId, match.transaction.getId()) == 0) {
+                continue;
+            }
+            balanceLedgerService.credit(userRepository.getReferenceById(match.entry.userId),
+                    LedgerAccount.BALANCE, match.entry.amount, LedgerEntryType.DEPOSIT, match.entry.depositId);
+            credited.add(match);
+        }
+        if (highWaterMark == null) {
+            return credited;
+        }
+        depositSyncStateRepository.save(DepositSyncState.builder()
+                .provider(PROVIDER)
+                .lastTransactionId(highWaterMark)
+                .updatedAt(LocalDateTime.now())
+                .build());
+        return credited;
+    }
+
+    private void reloadPending() {
+        Date since = new Date(System.currentTimeMillis() - depositWindowMillis);
+        for (PendingDeposit deposit : pendingDepositRepository.findByCompletedFalseAndCreatedAtAfter(since)) {
+            PendingEntry entry = PendingEntry.of(deposit);
+            if (entry != null) {
+                pendingByCode.putIfAbsent(entry.code, entry);
+            }
+        }
+    }
+
+    static String normalize(String value) {
+        StringBuilder normalized = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString().toUpperCase(Locale.ROOT);
+    }
+
+    private static final class PendingEntry {
+        final String code;
+        final String depositId;
+        final String userId;
+        final double amount;
+        final long createdAtMillis;
+
+        PendingEntry(String code, String depositId, String userId, double amount, long createdAtMillis) {
+            this.code = code;
+            this.depositId = depositId;
+            this.userId = userId;
+            this.amount = amount;
+            this.createdAtMillis = createdAtMillis;
+        }
+
+        static PendingEntry of(PendingDeposit deposit) {
+            if (deposit.isCompleted() || deposit.getTransactionContent() == null || deposit.getUser() == null) {
+                return null;
+            }
+            String code = normalize(deposit.getTransactionContent());
+            if (code.isEmpty()) {
+                return null;
+            }
+            long createdAt = deposit.getCreatedAt() == null ? System.currentTimeMillis() : deposit.getCreatedAt().getTime();
+            return new PendingEntry(code, deposit.getId(), deposit.getUser().getId(), deposit.getAmount(), createdAt);
+        }
+    }
+
+    private static final class Match {
+        final PendingEntry entry;
+        final SepayClient.Transaction transaction;
+
+        Match(PendingEntry entry, SepayClient.Transaction transaction) {
+            this.entry = entry;
+            this.transaction = transaction;
+        }
     }
 }
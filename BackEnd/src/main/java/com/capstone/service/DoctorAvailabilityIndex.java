@@ -0,0 +1,296 @@
+package com.capstone.service;
+
+import com.capstone.entity.DoctorSchedule;
+import com.capstone.repository.DoctorScheduleRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory availability index over {@link DoctorSchedule}, one immutable {@link DayIndex} per
+ * date. A day is loaded from the database on first use and then kept current by
+ * {@link DoctorScheduleService} after each committed create/update/delete/book/release
+ * (bookings re-read their count after commit rather than carrying a snapshot);
+ * writers replace the whole day (copy-on-write), so readers never lock. Database reads never
+ * run while a day's map entry is locked: every change bumps a generation, and a day that was
+ * read while a change came in is not installed (a reload only replaces the exact day it
+ * started from), so the next reader loads it again.
+ *
+ * <p>Inside a day the slots are sorted by start time and laid out as an implicit balanced
+ * binary tree where every subtree knows its latest end time, so "which slots cover time T"
+ * is answered in O(log n + k). Loaded days are reloaded periodically to absorb any drift,
+ * and past days are dropped.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DoctorAvailabilityIndex {
+    private final DoctorScheduleRepository doctorScheduleRepository;
+
+    private final Map<LocalDate, DayIndex> days = new ConcurrentHashMap<>();
+    private final Map<String, LocalDate> scheduleDates = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong refreshTickets = new AtomicLong();
+    // Vé của lần refresh số lượng đặt chỗ mới nhất đang chạy cho từng lịch
+    private final Map<String, Long> latestRefresh = new ConcurrentHashMap<>();
+
+    /**
+     * Doctors with an available schedule covering {@code time} (start and end inclusive), in
+     * order of schedule start; with {@code requireFreeSlot} only schedules that still have
+     * appointment capacity count.
+     */
+    public List<String> findDoctorsAvailableAt(LocalDate date, LocalTime time, boolean requireFreeSlot) {
+        return day(date).doctorsCovering(time.toSecondOfDay(), requireFreeSlot);
+    }
+
+    /**
+     * Doctors with any available schedule on {@code date}, in order of schedule start.
+     */
+    public List<String> findDoctorsAvailableOn(LocalDate date) {
+        return day(date).availableDoctors();
+    }
+
+    public void upsert(DoctorSchedule schedule) {
+        generation.incrementAndGet();
+        Slot slot = Slot.of(schedule);
+        LocalDate previous = scheduleDates.put(slot.id, schedule.getDate());
+        if (previous != null && !previous.equals(schedule.getDate())) {
+            days.computeIfPresent(previous, (date, day) -> day.without(slot.id));
+        }
+        days.computeIfPresent(schedule.getDate(), (date, day) -> day.with(slot));
+    }
+
+    /**
+     * Re-reads the committed booked count of a schedule. When refreshes of one schedule overlap,
+     * only the one that started last is applied: it started after every booking that triggered
+     * the others had committed, so its read is at least as new as theirs.
+     */
+    public void refreshBookedCount(String scheduleId) {
+        generation.incrementAndGet();
+        LocalDate date = scheduleDates.get(scheduleId);
+        if (date == null || !days.containsKey(date)) {
+            return;
+        }
+        long ticket = refreshTickets.incrementAndGet();
+        latestRefresh.put(scheduleId, ticket);
+        Optional<Integer> current = doctorScheduleRepository.findCurrentAppointments(scheduleId);
+        days.computeIfPresent(date, (d, day) -> current.isPresent() && Long.valueOf(ticket).equals(latestRefresh.get(scheduleId))
+                ? day.withBookedCount(scheduleId, current.get())
+                : day);
+        latestRefresh.remove(scheduleId, ticket);
+    }
+
+    public void remove(String scheduleId) {
+        generation.incrementAndGet();
+        LocalDate date = scheduleDates.remove(scheduleId);
+        if (date != null) {
+            days.computeIfPresent(date, (d, day) -> day.without(scheduleId));
+        }
+    }
+
+    @Scheduled(fixedDelay = 300000)
+    public void refresh() {
+        LocalDate today = LocalDate.now();
+        for (LocalDate date : new ArrayList<>(days.keySet())) {
+            if (date.isBefore(today)) {
+                DayIndex dropped = days.remove(date);
+                if (dropped != null) {
+                    for (Slot slot : dropped.slots) {
+                        scheduleDates.remove(slot.id, date);
+                    }
+                }
+            } else {
+                DayIndex current = days.get(date);
+                if (current != null) {
+                    // Ngày bị thay đổi trong lúc đọc DB thì giữ bản đang có, lần refresh sau sẽ nạp lại
+                    days.replace(date, current, load(date));
+                }
+            }
+        }
+    }
+
+    private DayIndex day(LocalDate date) {
+        DayIndex current = days.get(date);
+        if (current != null) {
+            return current;
+        }
+        long loading = generation.get();
+        DayIndex loaded = load(date);
+        if (generation.get() != loading) {
+            return loaded;
+        }
+        DayIndex existing = days.putIfAbsent(date, loaded);
+        if (existing != null) {
+            return existing;
+        }
+        if (generation.get() != loading) {
+            // Một thay đổi đến giữa lúc kiểm tra và lúc lưu có thể đã bỏ qua ngày này -> bỏ bản vừa nạp
+            days.remove(date, loaded);
+        }
+        return loaded;
+    }
+
+    private DayIndex load(LocalDate date) {
+        List<DoctorSchedule> schedules = doctorScheduleRepository.findByDate(date);
+        Slot[] slots = new Slot[schedules.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = Slot.of(schedules.get(i));
+            scheduleDates.put(slots[i].id, date);
+        }
+        log.debug("Loaded {} schedules for {} into the availability index", slots.length, date);
+        return new DayIndex(slots);
+    }
+
+    private static final class Slot {
+        final String id;
+        final String doctorId;
+        final int start;
+        final int end;
+        final int maxAppointments;
+        final int currentAppointments;
+        final boolean available;
+
+        Slot(String id, String doctorId, int start, int end,
+             int maxAppointments, int currentAppointments, boolean available) {
+            this.id = id;
+            this.doctorId = doctorId;
+            this.start = start;
+            this.end = end;
+            this.maxAppointments = maxAppointments;
+            this.currentAppointments = currentAppointments;
+            this.available = available;
+        }
+
+        static Slot of(DoctorSchedule schedule) {
+            return new Slot(schedule.getId(),
+                    schedule.getDoctor().getId(),
+                    schedule.getStartTime().toSecondOfDay(),
+                    schedule.getEndTime().toSecondOfDay(),
+                    schedule.getMaxAppointments() == null ? 0 : schedule.getMaxAppointments(),
+                    schedule.getCurrentAppointments() == null ? 0 : schedule.getCurrentAppointments(),
+                    Boolean.TRUE.equals(schedule.getIsAvailable()));
+        }
+
+        Slot withBookedCount(int currentAppointments) {
+            return new Slot(id, doctorId, start, end, maxAppointments, currentAppointments, available);
+        }
+
+        boolean hasFreeSlot() {
+            return currentAppointments < maxAppointments;
+        }
+    }
+
+    private static final class DayIndex {
+        private static final Comparator<Slot> BY_START =
+                Comparator.<Slot>comparingInt(s -> s.start).thenComparing(s -> s.id);
+
+        final Slot[] slots;
+        // maxEnd[mid] = latest end time in the subtree rooted at mid of the implicit tree over slots
+        final int[] maxEnd;
+
+        DayIndex(Slot[] slots) {
+            Arrays.sort(slots, BY_START);
+            this.slots = slots;
+            this.maxEnd = new int[slots.length];
+            buildMaxEnd(0, slots.length - 1);
+        }
+
+        private int buildMaxEnd(int lo, int hi) {
+            if (lo > hi) {
+                return -1;
+            }
+            int mid = (lo + hi) >>> 1;
+            int max = Math.max(slots[mid].end, Math.max(buildMaxEnd(lo, mid - 1), buildMaxEnd(mid + 1, hi)));
+            maxEnd[mid] = max;
+            return max;
+        }
+
+        List<String> doctorsCovering(int time, boolean requireFreeSlot) {
+            List<Slot> matches = new ArrayList<>();
+            collect(0, slots.length - 1, time, matches);
+            Set<String> doctors = new LinkedHashSet<>();
+            for (Slot slot : matches) {
+                if (slot.available && (!requireFreeSlot || slot.hasFreeSlot())) {
+                    doctors.add(slot.doctorId);
+                }
+            }
+            return new ArrayList<>(doctors);
+        }
+
+        // In-order walk that skips subtrees ending before time and right subtrees starting after it
+        private void collect(int lo, int hi, int time, List<Slot> out) {
+            if (lo > hi) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            if (maxEnd[mid] < time) {
+                return;
+            }
+            collect(lo, mid - 1, time, out);
+            Slot slot = slots[mid];
+            if (slot.start <= time) {
+                if (slot.end >= time) {
+                    out.add(slot);
+                }
+                collect(mid + 1, hi, time, out);
+            }
+        }
+
+        List<String> availableDoctors() {
+            Set<String> doctors = new LinkedHashSet<>();
+            for (Slot slot : slots) {
+                if (slot.available) {
+                    doctors.add(slot.doctorId);
+                }
+            }
+            return new ArrayList<>(doctors);
+        }
+
+        DayIndex with(Slot slot) {
+            List<Slot> next = new ArrayList<>(slots.length + 1);
+            for (Slot existing : slots) {
+                if (!existing.id.equals(slot.id)) {
+                    next.add(existing);
+                }
+            }
+            next.add(slot);
+            return new DayIndex(next.toArray(new Slot[0]));
+        }
+
+        DayIndex without(String scheduleId) {
+            List<Slot> next = new ArrayList<>(slots.length);
+            for (Slot existing : slots) {
+                if (!existing.id.equals(scheduleId)) {
+                    next.add(existing);
+                }
+            }
+            return next.size() == slots.length ? this : new DayIndex(next.toArray(new Slot[0]));
+        }
+
+        DayIndex withBookedCount(String scheduleId, int currentAppointments) {
+            // Chỉ đổi số lượng đặt chỗ, thứ tự và maxEnd giữ nguyên
+            Slot[] next = slots.clone();
+            for (int i = 0; i < next.length; i++) {
+                if (next[i].id.equals(scheduleId)) {
+                    next[i] = next[i].withBookedCount(currentAppointments);
+                    return new DayIndex(next);
+                }
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.capstone.service;
+
+import com.capstone.dto.response.UserResponse;
+import com.capstone.enums.Role;
+import com.capstone.mapper.UserMapper;
+import com.capstone.repository.UserRepository;
+import com.capstone.util.AfterCommit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory list of all doctors as served by the doctor listings. The list is loaded from a
+ * column projection on first use and kept until membership changes: doctor approvals, bans,
+ * profile updates and deletions invalidate it after their transaction commits, and the next
+ * reader loads it again. A load that raced with an invalidation is never kept.
+ */
+@Slf4j
+@Component
+public class DoctorDirectory {
+    private static final List<String> DOCTOR_ROLES = List.of(Role.DOCTOR.name());
+
+    private final UserRepository userRepository;
+    private final UserMapper userMapper;
+
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    public DoctorDirectory(UserRepository userRepository, UserMapper userMapper) {
+        this.userRepository = userRepository;
+        this.userMapper = userMapper;
+    }
+
+    public List<UserResponse> getDoctors() {
+        Snapshot current = snapshot;
+        if (current != null && current.generation == generation.get()) {
+            return current.doctors;
+        }
+        return load();
+    }
+
+    /**
+     * Drops the snapshot once the current transaction (if any) has committed.
+     */
+    public void invalidate() {
+        AfterCommit.run(generation::incrementAndGet);
+    }
+
+    private synchronized List<UserResponse> load() {
+        long loading = generation.get();
+        Snapshot current = snapshot;
+        if (current != null && current.generation == loading) {
+            return current.doctors;
+        }
+        List<UserResponse> doctors = userRepository.findSummariesByRoleNames(DOCTOR_ROLES).stream()
+                .map(userMapper::toUserResponse)
+                .toList();
+        // Bị invalidate trong lúc đọc thì vẫn trả kết quả, lần đọc sau sẽ nạp lại
+        snapshot = new Snapshot(loading, doctors);
+        log.debug("Loaded {} doctors into the directory", doctors.size());
+        return doctors;
+    }
+
+    private static final class Snapshot {
+        final long generation;
+        final List<UserResponse> doctors;
+
+        Snapshot(long generation, List<UserResponse> doctors) {
+            this.generation = generation;
+            this.doctors = doctors;
+        }
+    }
+}
@@ -3,8 +3,9 @@ package com.capstone.service;
 import com.capstone.entity.ChatPayment;
 import com.capstone.entity.DoctorEarning;
 import com.capstone.entity.User;
+import com.capstone.enums.LedgerAccount;
+import com.capstone.enums.LedgerEntryType;
 import com.capstone.repository.DoctorEarningRepository;
-import com.capstone.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -18,7 +19,7 @@ public class DoctorEarningService {    @Autowired
     private DoctorEarningRepository doctorEarningRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private BalanceLedgerService balanceLedgerService;
     
     @Autowired
     private SystemConfigService systemConfigService;
@@ -82,9 +83,8 @@ public class DoctorEarningService {    @Autowired
         earning.setStatus(DoctorEarning.EarningStatus.CONFIRMED);
         earning.setConfirmedAt(LocalDateTime.now());        // Add to doctor balance
         User doctor = earning.getDoctor();
-        Double currentBalance = doctor.getDoctorBalance() != null ? doctor.getDoctorBalance() : 0.0;
-        doctor.setDoctorBalance(currentBalance + earning.getDoctorEarning().doubleValue());
-        userRepository.save(doctor);
+        balanceLedgerService.credit(doctor, LedgerAccount.DOCTOR_BALANCE, earning.getDoctorEarning().doubleValue(),
+                LedgerEntryType.DOCTOR_EARNING, earning.getId());
 
         return doctorEarningRepository.save(earning);
     }
@@ -10,13 +10,18 @@ import com.capstone.exception.ErrorCode;
 import com.capstone.repository.DoctorScheduleRepository;
 import com.capstone.repository.DoctorUpgradeRepository;
 import com.capstone.repository.UserRepository;
+import com.capstone.util.AfterCommit;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,6 +31,7 @@ public class DoctorScheduleService {
     private final DoctorScheduleRepository doctorScheduleRepository;
     private final UserRepository userRepository;
     private final DoctorUpgradeRepository doctorUpgradeRepository;
+    private final DoctorAvailabilityIndex doctorAvailabilityIndex;
 
     @Transactional
     public DoctorScheduleResponse createSchedule(DoctorScheduleRequest request) {
@@ -54,6 +60,7 @@ public class DoctorScheduleService {
                 .build();
         
         DoctorSchedule savedSchedule = doctorScheduleRepository.save(schedule);
+        AfterCommit.run(() -> doctorAvailabilityIndex.upsert(savedSchedule));
         return mapToResponse(savedSchedule);
     }
     
@@ -82,93 +89,15 @@ public class DoctorScheduleService {
     }
     
     public List<User> getDoctorsByDate(LocalDate date) {
-        System.out.println("Finding doctors for date: " + date);
-        List<DoctorSchedule> schedules = doctorScheduleRepository.findByDate(date);
-        System.out.println("Found " + schedules.size() + " schedules for date " + date);
-        
-        if (schedules.isEmpty()) {
-            System.out.println("No schedules found for date: " + date);
-            return List.of(); // Return empty list instead of all doctors
-        }
-        
-        // Get current time for time-based filtering
-        LocalDate currentDate = LocalDate.now();
-        java.time.LocalTime currentTime = java.time.LocalTime.now();
-        System.out.println("Current time: " + currentTime);
-        
-        List<User> doctors = schedules.stream()
-                .filter(schedule -> {
-                    boolean isAvailable = schedule.getIsAvailable();
-                    
-                    // For current day, check if current time is within the doctor's schedule
-                    if (date.equals(currentDate)) {
-                        boolean isTimeInRange = !currentTime.isBefore(schedule.getStartTime()) && 
-                                              !currentTime.isAfter(schedule.getEndTime());
-                        System.out.println("Schedule ID: " + schedule.getId() + 
-                                      ", Doctor: " + schedule.getDoctor().getFirstName() + " " + 
-                                      schedule.getDoctor().getLastName() + 
-                                      ", isAvailable: " + isAvailable +
-                                      ", startTime: " + schedule.getStartTime() +
-                                      ", endTime: " + schedule.getEndTime() +
-                                      ", isTimeInRange: " + isTimeInRange);
-                        return isAvailable && isTimeInRange;
-                    }
-                    
-                    // For future dates, just check availability
-                    System.out.println("Schedule ID: " + schedule.getId() + 
-                                      ", Doctor: " + schedule.getDoctor().getFirstName() + " " + 
-                                      schedule.getDoctor().getLastName() + 
-                                      ", isAvailable: " + isAvailable);
-                    return isAvailable;
-                })
-                .map(DoctorSchedule::getDoctor)
-                .distinct()
-                .collect(Collectors.toList());
-        
-        System.out.println("Returning " + doctors.size() + " available doctors for date " + date);
-        doctors.forEach(doctor -> 
-            System.out.println("Doctor ID: " + doctor.getId() + 
-                              ", Name: " + doctor.getFirstName() + " " + doctor.getLastName()));
-        
-        return doctors;
+        // For current day, only doctors whose schedule covers the current time
+        List<String> doctorIds = date.equals(LocalDate.now())
+                ? doctorAvailabilityIndex.findDoctorsAvailableAt(date, LocalTime.now(), false)
+                : doctorAvailabilityIndex.findDoctorsAvailableOn(date);
+        return loadDoctors(doctorIds);
     }
     
-    public List<User> getDoctorsByDateTime(LocalDate date, java.time.LocalTime time) {
-        System.out.println("Finding doctors for date: " + date + " and time: " + time);
-        List<DoctorSchedule> schedules = doctorScheduleRepository.findByDate(date);
-        System.out.println("Found " + schedules.size() + " schedules for date " + date);
-        
-        if (schedules.isEmpty()) {
-            System.out.println("No schedules found for date: " + date);
-            return List.of();
-        }
-        
-        List<User> doctors = schedules.stream()
-                .filter(schedule -> {
-                    boolean isAvailable = schedule.getIsAvailable();
-                    boolean isTimeInRange = !time.isBefore(schedule.getStartTime()) && 
-                                          !time.isAfter(schedule.getEndTime());
-                    
-                    System.out.println("Schedule ID: " + schedule.getId() + 
-                                      ", Doctor: " + schedule.getDoctor().getFirstName() + " " + 
-                                      schedule.getDoctor().getLastName() + 
-                                      ", isAvailable: " + isAvailable +
-                                      ", startTime: " + schedule.getStartTime() +
-                                      ", endTime: " + schedule.getEndTime() +
-                                      ", isTimeInRange: " + isTimeInRange);
-                    
-                    return isAvailable && isTimeInRange;
-                })
-                .map(DoctorSchedule::getDoctor)
-                .distinct()
-                .collect(Collectors.toList());
-        
-        System.out.println("Returning " + doctors.size() + " available doctors for date " + date + " and time " + time);
-        doctors.forEach(doctor -> 
-            System.out.println("Doctor ID: " + doctor.getId() + 
-                              ", Name: " + doctor.getFirstName() + " " + doctor.getLastName()));
-        
-        return doctors;
+    public List<User> getDoctorsByDateTime(LocalDate date, LocalTime time) {
+        return loadDoctors(doctorAvailabilityIndex.findDoctorsAvailableAt(date, time, false));
     }
     
     @Transactional
@@ -202,6 +131,7 @@ public class DoctorScheduleService {
         schedule.setIsAvailable(request.getIsAvailable());
         
         DoctorSchedule updatedSchedule = doctorScheduleRepository.save(schedule);
+        AfterCommit.run(() -> doctorAvailabilityIndex.upsert(updatedSchedule));
         return mapToResponse(updatedSchedule);
     }
     
@@ -211,6 +141,7 @@ public class DoctorScheduleService {
                 .orElseThrow(() -> new AppException(ErrorCode.SCHEDULE_NOT_FOUND));
         
         doctorScheduleRepository.delete(schedule);
+        AfterCommit.run(() -> doctorAvailabilityIndex.remove(scheduleId));
     }
     
     /**
@@ -218,7 +149,7 @@ public class DoctorScheduleService {
      */
     public Optional<DoctorSchedule> findAvailableScheduleForDoctor(User doctor) {
         LocalDate currentDate = LocalDate.now();
-        java.time.LocalTime currentTime = java.time.LocalTime.now();
+        LocalTime currentTime = LocalTime.now();
         
         return doctorScheduleRepository.findAvailableScheduleForDoctorNow(doctor, currentDate, currentTime);
     }
@@ -229,6 +160,9 @@ public class DoctorScheduleService {
     @Transactional
     public boolean bookAppointmentSlot(String scheduleId) {
         int updatedRows = doctorScheduleRepository.incrementCurrentAppointments(scheduleId);
+        if (updatedRows > 0) {
+            syncBookedCount(scheduleId);
+        }
         return updatedRows > 0;
     }
     
@@ -238,52 +172,34 @@ public class DoctorScheduleService {
     @Transactional
     public boolean releaseAppointmentSlot(String scheduleId) {
         int updatedRows = doctorScheduleRepository.decrementCurrentAppointments(scheduleId);
+        if (updatedRows > 0) {
+            syncBookedCount(scheduleId);
+        }
         return updatedRows > 0;
     }
-      /**
+    /**
      * Get doctors that have available appointment slots at the specified date and time
      */
-    public List<User> getDoctorsWithAvailableSlots(LocalDate date, java.time.LocalTime time) {
-        System.out.println("Finding doctors with available slots for date: " + date + " and time: " + time);
-        
-        // First get all schedules for this date 
-        List<DoctorSchedule> schedules = doctorScheduleRepository.findByDate(date);
-        System.out.println("Found " + schedules.size() + " schedules for date: " + date);
-        
-        if (schedules.isEmpty()) {
-            System.out.println("No schedules found for date: " + date);
+    public List<User> getDoctorsWithAvailableSlots(LocalDate date, LocalTime time) {
+        return loadDoctors(doctorAvailabilityIndex.findDoctorsAvailableAt(date, time, true));
+    }
+    
+    // Loads the doctors in one query, keeping the order given by the index
+    private List<User> loadDoctors(List<String> doctorIds) {
+        if (doctorIds.isEmpty()) {
             return List.of();
         }
-        
-        // Filter schedules by time and available slots
-        List<User> doctors = schedules.stream()
-                .filter(schedule -> {
-                    // Check if schedule is available at the requested time
-                    boolean isTimeInRange = !time.isBefore(schedule.getStartTime()) && 
-                                       !time.isAfter(schedule.getEndTime());
-                    
-                    // Check if schedule has available capacity and is marked as available
-                    boolean hasSlots = schedule.getCurrentAppointments() < schedule.getMaxAppointments() 
-                                     && schedule.getIsAvailable();
-                    
-                    // Debug logging
-                    System.out.println("Schedule ID: " + schedule.getId() + 
-                                      ", Doctor: " + schedule.getDoctor().getFirstName() + " " + 
-                                      schedule.getDoctor().getLastName() + 
-                                      ", isTimeInRange: " + isTimeInRange +
-                                      ", currentAppointments: " + schedule.getCurrentAppointments() +
-                                      ", maxAppointments: " + schedule.getMaxAppointments() +
-                                      ", isAvailable: " + schedule.getIsAvailable() +
-                                      ", hasAvailableSlots: " + (hasSlots && isTimeInRange));
-                    
-                    return isTimeInRange && hasSlots;
-                })
-                .map(DoctorSchedule::getDoctor)
-                .distinct()
+        Map<String, User> doctorsById = userRepository.findAllById(doctorIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        return doctorIds.stream()
+                .map(doctorsById::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
-        
-        System.out.println("Returning " + doctors.size() + " doctors with available slots");
-        return doctors;
+    }
+    
+    private void syncBookedCount(String scheduleId) {
+        // Đọc lại số lượng sau commit: snapshot trong transaction có thể cũ hơn commit của người khác
+        AfterCommit.run(() -> doctorAvailabilityIndex.refreshBookedCount(scheduleId));
     }
     
     private DoctorScheduleResponse mapToResponse(DoctorSchedule schedule) {
@@ -12,7 +12,6 @@ import com.capstone.repository.DoctorUpgradeRepository;
 import com.capstone.repository.RoleRepository;
 import com.capstone.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 
@@ -24,15 +23,15 @@ import java.util.stream.Collectors;
 @Service
 public class DoctorUpgradeService {
     private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
+    private final DoctorDirectory doctorDirectory;
     private final DoctorUpgradeRepository doctorUpgradeRepository;
     private final RoleRepository roleRepository;
     private final CloudinaryService cloudinaryService;
     private final CccdVerificationService cccdVerificationService;
 
     public void requestDoctorUpgrade(DoctorUpgradeRequest request) {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User user = currentUserResolver.getCurrentUser();
 
         if (user.getRole().getName().equals("DOCTOR")) {
             throw new AppException(ErrorCode.ALREADY_DOCTOR);
@@ -80,6 +79,8 @@ public class DoctorUpgradeService {
         user.setRole(roleDoctor);
 
         userRepository.save(user);
+        currentUserResolver.evictUser(user.getId());
+        doctorDirectory.invalidate();
         doctorUpgradeRepository.save(upgradeRequest);
     }
 
@@ -123,9 +124,7 @@ public class DoctorUpgradeService {
     }
     
     public boolean currentUserHasPendingRequest() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User user = currentUserResolver.getCurrentUser();
                 
         List<DoctorUpgrade> pendingRequests = doctorUpgradeRepository.findByUserAndStatus(user, RequestStatus.PENDING);
         return !pendingRequests.isEmpty();
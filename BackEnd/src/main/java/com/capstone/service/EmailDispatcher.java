@@ -0,0 +1,234 @@
+package com.capstone.service;
+
+import com.capstone.configuration.EmailPipelineProperties;
+import com.capstone.entity.OutboxEmail;
+import com.capstone.enums.EmailStatus;
+import com.capstone.enums.EmailType;
+import com.capstone.repository.OutboxEmailRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers {@link OutboxEmail}s. Ids of pending emails wait on a bounded in-memory queue that
+ * a fixed set of dispatcher threads drain in batches; each batch is rendered from the
+ * (pre-warmed, cached) Thymeleaf templates and sent over a single SMTP connection. A failed
+ * email is retried with exponential back-off until {@code max-attempts}; the outbox sweep
+ * re-queues due emails, including those left over from before a restart or that did not fit
+ * in the queue.
+ */
+@Slf4j
+@Service
+public class EmailDispatcher {
+    private final JavaMailSender mailSender;
+    private final TemplateEngine templateEngine;
+    private final OutboxEmailRepository outboxEmailRepository;
+    private final EmailPipelineProperties properties;
+    private final String fromEmail;
+    private final String frontendUrl;
+
+    private final BlockingQueue<String> queue;
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    public EmailDispatcher(JavaMailSender mailSender,
+                           TemplateEngine templateEngine,
+                           OutboxEmailRepository outboxEmailRepository,
+                           EmailPipelineProperties properties,
+                           @Value("${spring.mail.username}") String fromEmail,
+                           @Value("${app.frontend-url}") String frontendUrl) {
+        this.mailSender = mailSender;
+        this.templateEngine = templateEngine;
+        this.outboxEmailRepository = outboxEmailRepository;
+        this.properties = properties;
+        this.fromEmail = fromEmail;
+        this.frontendUrl = frontendUrl;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        warmTemplates();
+        running = true;
+        for (int i = 1; i <= properties.getConcurrency(); i++) {
+            Thread worker = new Thread(this::runWorker, "mail-dispatcher-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        sweepOutbox();
+    }
+
+    /**
+     * Hands a committed outbox row to the dispatchers. When the queue is full the email simply
+     * stays PENDING and is picked up by the next sweep.
+     */
+    public void enqueue(String outboxEmailId) {
+        if (queued.add(outboxEmailId) && !queue.offer(outboxEmailId)) {
+            queued.remove(outboxEmailId);
+            log.warn("Mail queue full ({} waiting), email {} left for the outbox sweep",
+                    queue.size(), outboxEmailId);
+        }
+    }
+
+    @Scheduled(fixedDelay = 30000)
+    public void sweepOutbox() {
+        if (!running) {
+            return;
+        }
+        int room = queue.remainingCapacity();
+        if (room == 0) {
+            return;
+        }
+        for (String id : outboxEmailRepository.findDueIds(LocalDateTime.now(), PageRequest.of(0, room))) {
+            enqueue(id);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+
+    private void runWorker() {
+        while (running) {
+            try {
+                String first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<String> batch = new ArrayList<>();
+                batch.add(first);
+                queue.drainTo(batch, properties.getBatchSize() - 1);
+                try {
+                    deliver(batch);
+                } finally {
+                    batch.forEach(queued::remove);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Mail dispatcher error: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void deliver(List<String> ids) {
+        Map<MimeMessage, OutboxEmail> messages = new LinkedHashMap<>();
+        for (OutboxEmail email : outboxEmailRepository.findAllById(ids)) {
+            if (email.getStatus() != EmailStatus.PENDING) {
+                continue;
+            }
+            try {
+                messages.put(buildMessage(email), email);
+            } catch (Exception e) {
+                recordFailure(email, e);
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        // Một lần gọi send() = một kết nối SMTP cho cả lô
+        Map<Object, Exception> failures = Map.of();
+        MailException batchFailure = null;
+        try {
+            mailSender.send(messages.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            failures = e.getFailedMessages();
+            if (failures.isEmpty()) {
+                batchFailure = e;
+            }
+        } catch (MailException e) {
+            batchFailure = e;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<MimeMessage, OutboxEmail> entry : messages.entrySet()) {
+            OutboxEmail email = entry.getValue();
+            Exception failure = batchFailure != null ? batchFailure : failures.get(entry.getKey());
+            if (failure != null) {
+                recordFailure(email, failure);
+            } else {
+                outboxEmailRepository.markSent(email.getId(), now);
+                log.info("{} email sent to: {}", email.getType(), email.getRecipient());
+            }
+        }
+    }
+
+    private MimeMessage buildMessage(OutboxEmail email) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setFrom(fromEmail);
+        helper.setTo(email.getRecipient());
+
+        Context context = new Context();
+        context.setVariable("token", email.getToken());
+        if (email.getType() == EmailType.PASSWORD_RESET) {
+            helper.setSubject("Đặt lại mật khẩu Student Stress Helper");
+            context.setVariable("resetUrl", frontendUrl + "/reset-password?token=" + email.getToken());
+            helper.setText(templateEngine.process("password-reset", context), true);
+        } else {
+            helper.setSubject("Xác thực tài khoản Student Stress Helper");
+            context.setVariable("verifyUrl", frontendUrl + "/verify-email?token=" + email.getToken());
+            helper.setText(templateEngine.process("email-verification", context), true);
+        }
+        return message;
+    }
+
+    private void recordFailure(OutboxEmail email, Exception e) {
+        int attempts = email.getAttempts() + 1;
+        boolean giveUp = attempts >= properties.getMaxAttempts();
+        long backoffSeconds = (long) properties.getInitialBackoffSeconds() << Math.min(attempts - 1, 16);
+        String error = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        outboxEmailRepository.markAttemptFailed(email.getId(),
+                giveUp ? EmailStatus.FAILED : EmailStatus.PENDING,
+                LocalDateTime.now().plusSeconds(backoffSeconds),
+                error.length() > 500 ? error.substring(0, 500) : error);
+        if (giveUp) {
+            log.error("Giving up on {} email to {} after {} attempts: {}",
+                    email.getType(), email.getRecipient(), attempts, error);
+        } else {
+            log.warn("Failed to send {} email to {} (attempt {}), retrying in {}s: {}",
+                    email.getType(), email.getRecipient(), attempts, backoffSeconds, error);
+        }
+    }
+
+    // Parse các template một lần khi khởi động để lần gửi đầu tiên không phải chờ
+    private void warmTemplates() {
+        for (String template : List.of("email-verification", "password-reset")) {
+            try {
+                templateEngine.process(template, new Context());
+            } catch (Exception e) {
+                log.warn("Could not pre-compile mail template {}: {}", template, e.getMessage());
+            }
+        }
+    }
+}
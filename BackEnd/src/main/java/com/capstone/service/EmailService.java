@@ -1,76 +1,49 @@
 package com.capstone.service;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
+import com.capstone.entity.OutboxEmail;
+import com.capstone.enums.EmailStatus;
+import com.capstone.enums.EmailType;
+import com.capstone.repository.OutboxEmailRepository;
+import com.capstone.util.AfterCommit;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.TemplateEngine;
-import org.thymeleaf.context.Context;
 
+import java.time.LocalDateTime;
+
+/**
+ * Queues transactional emails. Callers only pay for one outbox insert; rendering and SMTP
+ * delivery happen on the {@link EmailDispatcher} threads.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class EmailService {
 
-    private final JavaMailSender mailSender;
-    private final TemplateEngine templateEngine;
-
-    @Value("${spring.mail.username}")
-    private String fromEmail;
+    private final OutboxEmailRepository outboxEmailRepository;
+    private final EmailDispatcher emailDispatcher;
 
-    @Value("${app.frontend-url}")
-    private String frontendUrl;
-
-    @Async
     public void sendVerificationEmail(String to, String token) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-            
-            helper.setFrom(fromEmail);
-            helper.setTo(to);
-            helper.setSubject("Xác thực tài khoản Student Stress Helper");
-            
-            Context context = new Context();
-            context.setVariable("token", token);
-            context.setVariable("verifyUrl", frontendUrl + "/verify-email?token=" + token);
-            
-            String htmlContent = templateEngine.process("email-verification", context);
-            helper.setText(htmlContent, true);
-            
-            mailSender.send(message);
-            log.info("Verification email sent to: {}", to);
-        } catch (MessagingException e) {
-            log.error("Failed to send verification email to: {}", to, e);
-        }
+        queue(EmailType.VERIFICATION, to, token);
     }
-    
-    @Async
+
     public void sendPasswordResetEmail(String to, String token) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-            
-            helper.setFrom(fromEmail);
-            helper.setTo(to);
-            helper.setSubject("Đặt lại mật khẩu Student Stress Helper");
-            
-            Context context = new Context();
-            context.setVariable("token", token);
-            context.setVariable("resetUrl", frontendUrl + "/reset-password?token=" + token);
-            
-            String htmlContent = templateEngine.process("password-reset", context);
-            helper.setText(htmlContent, true);
-            
-            mailSender.send(message);
-            log.info("Password reset email sent to: {}", to);
-        } catch (MessagingException e) {
-            log.error("Failed to send password reset email to: {}", to, e);
-        }
+        queue(EmailType.PASSWORD_RESET, to, token);
+    }
+
+    private void queue(EmailType type, String to, String token) {
+        LocalDateTime now = LocalDateTime.now();
+        OutboxEmail email = outboxEmailRepository.save(OutboxEmail.builder()
+                .type(type)
+                .recipient(to)
+                .token(token)
+                .status(EmailStatus.PENDING)
+                .attempts(0)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build());
+        log.info("{} email queued for: {}", type, to);
+
+        AfterCommit.run(() -> emailDispatcher.enqueue(email.getId()));
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,13 @@
+package com.capstone.service;
+
+import software.amazon.awssdk.services.rekognition.model.FaceDetail;
+
+import java.util.List;
+
+/**
+ * Detects faces (with emotions, landmarks and pose) in an image. Backed by AWS Rekognition in
+ * production; a local stub can be selected with {@code stress.detector=stub}.
+ */
+public interface FaceDetectionClient {
+    List<FaceDetail> detectFaces(byte[] imageBytes);
+}
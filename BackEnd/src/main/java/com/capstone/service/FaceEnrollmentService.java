@@ -0,0 +1,73 @@
+package com.capstone.service;
+
+import com.capstone.entity.FaceEnrollment;
+import com.capstone.entity.User;
+import com.capstone.exception.AppException;
+import com.capstone.exception.ErrorCode;
+import com.capstone.repository.FaceEnrollmentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Enrolls the face of a user's avatar with the {@link FaceMatcher} once, so face logins only
+ * send the selfie. An enrollment is tied to the avatar URL and matcher it was made with; a new
+ * avatar (or another matcher) makes it stale and it is redone on the next login.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FaceEnrollmentService {
+    private final FaceEnrollmentRepository faceEnrollmentRepository;
+    private final FaceMatcher faceMatcher;
+
+    @Transactional(readOnly = true)
+    public Optional<FaceEnrollment> findCurrent(User user) {
+        return faceEnrollmentRepository.findByUserId(user.getId())
+                .filter(enrollment -> enrollment.getAvatarUrl().equals(user.getAvtUrl())
+                        && enrollment.getMatcher().equals(faceMatcher.name()));
+    }
+
+    /**
+     * Enrolls {@code avatarBytes} as the face of {@code user}'s current avatar, replacing any
+     * earlier enrollment. Not transactional: no connection is held during the matcher call.
+     */
+    public FaceEnrollment enroll(User user, byte[] avatarBytes) {
+        String faceRef = faceMatcher.enroll(user.getId(), avatarBytes);
+        if (faceRef == null) {
+            throw new AppException(ErrorCode.FACE_COMPARISON_FAILED, "No face found in avatar");
+        }
+
+        FaceEnrollment enrollment = faceEnrollmentRepository.findByUserId(user.getId()).orElse(null);
+        if (enrollment == null) {
+            enrollment = FaceEnrollment.builder().user(user).build();
+        } else if (enrollment.getMatcher().equals(faceMatcher.name())) {
+            try {
+                faceMatcher.remove(enrollment.getFaceRef());
+            } catch (Exception e) {
+                log.warn("Failed to remove old face enrollment of {}: {}", user.getUsername(), e.getMessage());
+            }
+        }
+        enrollment.setAvatarUrl(user.getAvtUrl());
+        enrollment.setMatcher(faceMatcher.name());
+        enrollment.setFaceRef(faceRef);
+        enrollment.setEnrolledAt(LocalDateTime.now());
+        log.info("Enrolled face of {} with {}", user.getUsername(), faceMatcher.name());
+        return faceEnrollmentRepository.save(enrollment);
+    }
+
+    /**
+     * Enrollment at avatar upload time; a failure only means the first face login enrolls.
+     */
+    public void enrollQuietly(User user, byte[] avatarBytes) {
+        try {
+            enroll(user, avatarBytes);
+        } catch (Exception e) {
+            log.warn("Face enrollment of {} deferred to first face login: {}", user.getUsername(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.capstone.service;
+
+/**
+ * Matches login selfies against faces enrolled once from avatars. Backed by a Rekognition face
+ * collection in production; a local stub can be selected with {@code face-login.matcher=stub}.
+ */
+public interface FaceMatcher {
+
+    /**
+     * Name stored with each enrollment, so enrollments of another matcher are redone.
+     */
+    String name();
+
+    /**
+     * Stores the largest face of {@code imageBytes} for {@code userId} and returns its
+     * reference, or null when the image contains no usable face.
+     */
+    String enroll(String userId, byte[] imageBytes);
+
+    /**
+     * Similarity (0-100) between the enrolled face {@code faceRef} and the largest face of
+     * {@code probeImageBytes}; 0 when they do not match at all.
+     */
+    float match(String faceRef, byte[] probeImageBytes);
+
+    /**
+     * Drops an enrollment that has been replaced.
+     */
+    void remove(String faceRef);
+}
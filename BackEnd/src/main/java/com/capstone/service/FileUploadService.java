@@ -8,7 +8,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.util.Map;
 import java.util.UUID;
 
 @Service
@@ -17,6 +16,7 @@ import java.util.UUID;
 public class FileUploadService {
 
     private final Cloudinary cloudinary;
+    private final StreamingUploader streamingUploader;
 
     /**
      * Upload file to a specific folder in Cloudinary
@@ -36,15 +36,11 @@ public class FileUploadService {
             String uniqueFilename = UUID.randomUUID().toString() + fileExtension;
 
             // Upload to Cloudinary
-            Map uploadResult = cloudinary.uploader().upload(file.getBytes(), ObjectUtils.asMap(
+            return streamingUploader.upload(file, null, ObjectUtils.asMap(
                     "public_id", folderName + "/" + uniqueFilename,
                     "resource_type", "image",
                     "overwrite", true
-            ));
-
-            String secureUrl = uploadResult.get("secure_url").toString();
-            log.info("Successfully uploaded file to Cloudinary: {}", secureUrl);
-            return secureUrl;
+            )).getSecureUrl();
 
         } catch (IOException e) {
             log.error("Error uploading file to Cloudinary: {}", e.getMessage(), e);
@@ -0,0 +1,64 @@
+package com.capstone.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "sepay.client", havingValue = "http", matchIfMissing = true)
+public class HttpSepayClient implements SepayClient {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private final WebClient webClient;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Transaction> fetchTransactions(Long sinceId, int limit) {
+        Map<String, Object> response = webClient.get()
+                .uri(builder -> {
+                    builder.path("/userapi/transactions/list").queryParam("limit", limit);
+                    if (sinceId != null) {
+                        builder.queryParam("since_id", sinceId);
+                    }
+                    return builder.build();
+                })
+                .retrieve()
+                .bodyToMono(Map.class)
+                .timeout(REQUEST_TIMEOUT)
+                .block();
+
+        List<Transaction> result = new ArrayList<>();
+        Object transactions = response == null ? null : response.get("transactions");
+        if (!(transactions instanceof List)) {
+            log.warn("⚠️ Không tìm thấy 'transactions' trong phản hồi SePay");
+            return result;
+        }
+
+        // Giữ mọi dòng có id (kể cả tiền ra, amountIn = 0) để số dòng trả về khớp với trang của SePay
+        for (Map<String, Object> tx : (List<Map<String, Object>>) transactions) {
+            Object id = tx.get("id");
+            Object amountIn = tx.get("amount_in");
+            Object content = tx.get("transaction_content");
+            if (id == null) {
+                continue;
+            }
+            try {
+                double amount = amountIn == null ? 0.0 : Double.parseDouble(amountIn.toString());
+                result.add(new Transaction(Long.parseLong(id.toString()),
+                        content == null ? "" : content.toString(), Math.max(amount, 0.0)));
+            } catch (NumberFormatException e) {
+                log.warn("Skipping SePay transaction with unreadable id/amount: {}", tx);
+            }
+        }
+        return result;
+    }
+}
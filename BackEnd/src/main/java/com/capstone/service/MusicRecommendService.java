@@ -2,22 +2,15 @@ package com.capstone.service;
 
 import com.capstone.dto.response.RecommendationListResponse;
 import com.capstone.dto.response.RecommendationResponse;
-import com.capstone.dto.response.UserResponse;
-import com.capstone.entity.Answer;
 import com.capstone.entity.MusicRecommend;
 import com.capstone.entity.User;
-import com.capstone.entity.VideoRecommend;
 import com.capstone.enums.StressLevel;
 import com.capstone.exception.AppException;
 import com.capstone.exception.ErrorCode;
-import com.capstone.repository.AnswerRepository;
 import com.capstone.repository.MusicRecommendRepository;
-import com.capstone.repository.UserRepository;
 import com.capstone.repository.QuestionRepository;
-import com.capstone.repository.VideoRecommendRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.beans.factory.annotation.Value;
@@ -25,6 +18,7 @@ import org.springframework.beans.factory.annotation.Value;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.OptionalDouble;
 import java.util.Set;
 
 @Slf4j
@@ -32,13 +26,12 @@ import java.util.Set;
 @RequiredArgsConstructor
 public class MusicRecommendService {
     private final MusicRecommendRepository musicRecommendRepository;
-    private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
     private final CloudinaryService cloudinaryService;
-    private final AnswerRepository answerRepository;
     private final QuestionAnswerService questionAnswerService;
     private final QuestionRepository questionRepository;
-    private final UserService userService;
-    private final VideoRecommendRepository videoRecommendRepository;
+    private final RecommendationCatalog recommendationCatalog;
+    private final TodayStressAccumulator todayStressAccumulator;
     // Định dạng file nhạc được phép upload
     private static final Set<String> ALLOWED_MUSIC_FORMATS = Set.of(
         "audio/mpeg", "audio/mp3", "audio/wav", "audio/ogg"
@@ -60,13 +53,7 @@ public class MusicRecommendService {
     private double normalStressThreshold;
 
     public List<RecommendationResponse> getAllMusicRecommendations() {
-        List<MusicRecommend> musicRecommends = musicRecommendRepository.findAll();
-        return musicRecommends.stream()
-                .map(music -> RecommendationResponse.builder()
-                        .recommendName(music.getMusicName())
-                        .recommendUrl(music.getMusicUrl())
-                        .build())
-                .toList();
+        return recommendationCatalog.current().getMusic();
     }
 
     public MusicRecommend uploadMusicForStressLevel(MultipartFile musicFile, String musicName, String stressLevel) throws IOException {
@@ -95,16 +82,17 @@ public class MusicRecommendService {
                 .createdAt(LocalDateTime.now())
                 .build();
                 
-        return musicRecommendRepository.save(musicRecommend);
+        MusicRecommend saved = musicRecommendRepository.save(musicRecommend);
+        recommendationCatalog.invalidate();
+        return saved;
     }
     public RecommendationListResponse getMusicRecommendationsForUser() {
         User currentUser = getCurrentUser();
-        LocalDateTime startOfDay = LocalDateTime.now().toLocalDate().atStartOfDay();
         
-        // Get all answers for today
-        List<Answer> todayAnswers = answerRepository.findByUserAndCreatedAtAfter(currentUser, startOfDay);
+        // Điểm trung bình hôm nay lấy từ bộ cộng dồn, không quét bảng answers
+        OptionalDouble todayAverage = todayStressAccumulator.getAverage(currentUser.getId());
         
-        if (todayAnswers.isEmpty()) {
+        if (todayAverage.isEmpty()) {
             log.info("No answers found for user {} today", currentUser.getUsername());
             return RecommendationListResponse.builder()
                     .stressLevel("NO_DATA")
@@ -113,11 +101,7 @@ public class MusicRecommendService {
                     .build();
         }
 
-        // Calculate average stress score
-        double averageStressScore = todayAnswers.stream()
-                .mapToDouble(Answer::getStressScore)
-                .average()
-                .orElse(0.0);
+        double averageStressScore = todayAverage.getAsDouble();
 
         // Convert average stress score to stress level based on configured thresholds
         String stressLevel;
@@ -143,35 +127,18 @@ public class MusicRecommendService {
             recommendationType = "MUSIC_LISTENING";
         }
 
+        RecommendationCatalog.Snapshot catalog = recommendationCatalog.current();
         List<RecommendationResponse> recommendations;
         
         if(stressLevel.equals(StressLevel.MILD_STRESS.name())){
             log.info("User {} has mild stress level: {}, returning all music recommendations", currentUser.getUsername(), stressLevel);
-            List<MusicRecommend> allMusic = musicRecommendRepository.findAll();
-            recommendations = allMusic.stream()
-                    .map(music -> RecommendationResponse.builder()
-                            .recommendName(music.getMusicName())
-                            .recommendUrl(music.getMusicUrl())
-                            .build())
-                    .toList();
+            recommendations = catalog.getMusic();
         }
         else if(stressLevel.equals(StressLevel.MODERATE_STRESS.name())){
-            List<VideoRecommend> videoRecommends = videoRecommendRepository.findAll();
-            recommendations = videoRecommends.stream()
-                    .map(video -> RecommendationResponse.builder()
-                            .recommendName(video.getVideoName())
-                            .recommendUrl(video.getVideoUrl())
-                            .build())
-                    .toList();
+            recommendations = catalog.getVideoRecommendations();
         }
         else {
-            List<UserResponse> userResponse = userService.getAllDoctor();
-            recommendations = userResponse.stream()
-                    .map(user -> RecommendationResponse.builder()
-                            .recommendName(user.getId())
-                            .recommendUrl(user.getAvtUrl())
-                            .build())
-                    .toList();
+            recommendations = recommendationCatalog.getDoctors();
         }
         
         return RecommendationListResponse.builder()
@@ -181,9 +148,7 @@ public class MusicRecommendService {
                 .build();
     }
     private User getCurrentUser() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        return userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        return currentUserResolver.getCurrentUser();
     }
 
     public void deleteMusic(String musicUrl) {
@@ -192,5 +157,6 @@ public class MusicRecommendService {
                 .orElseThrow(() -> new AppException(ErrorCode.MUSIC_NOT_FOUND));
         
         musicRecommendRepository.delete(music);
+        recommendationCatalog.invalidate();
     }
 } 
\ No newline at end of file
@@ -6,41 +6,47 @@ import com.capstone.entity.OrderItem;
 import com.capstone.entity.Product;
 import com.capstone.entity.ProductOrder;
 import com.capstone.entity.User;
+import com.capstone.enums.LedgerAccount;
+import com.capstone.enums.LedgerEntryType;
 import com.capstone.exception.AppException;
 import com.capstone.exception.ErrorCode;
 import com.capstone.mapper.OrderMapper;
-import com.capstone.repository.OrderItemRepository;
 import com.capstone.repository.ProductOrderRepository;
 import com.capstone.repository.ProductRepository;
-import com.capstone.repository.UserRepository;
 import com.capstone.entity.Cart;
 import com.capstone.entity.CartItem;
 import com.capstone.service.CartService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ProductOrderService {
+    private static final String INSERT_ORDER_ITEM =
+            "INSERT INTO order_items (id, order_id, product_id, quantity, price) VALUES (?, ?, ?, ?, ?)";
+
     private final ProductRepository productRepository;
-    private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
     private final ProductOrderRepository productOrderRepository;
-    private final OrderItemRepository orderItemRepository;
     private final OrderMapper orderMapper;
-    private final ProductService productService;
     private final CartService cartService;
+    private final BalanceLedgerService balanceLedgerService;
+    private final StockReservationService stockReservationService;
+    private final JdbcTemplate jdbcTemplate;
 
     private User getCurrentUser() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        return userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        return currentUserResolver.getCurrentUser();
     }
 
     @Transactional
@@ -59,10 +65,6 @@ public class ProductOrderService {
             Product product = cartItem.getProduct();
             int quantityToOrder = cartItem.getQuantity();
 
-            if (product.getStock() < quantityToOrder) {
-                throw new AppException(ErrorCode.INSUFFICIENT_STOCK, "Product " + product.getName() + " has insufficient stock.");
-            }
-
             double itemPrice = product.getPrice() * quantityToOrder;
             totalAmount += itemPrice;
 
@@ -81,6 +83,8 @@ public class ProductOrderService {
             // Balance will be deducted after order is successfully saved
         }
 
+        stockReservationService.reserve(orderItems);
+
         ProductOrder order = ProductOrder.builder()
                 .user(user)
                 .totalAmount(totalAmount)
@@ -91,29 +95,17 @@ public class ProductOrderService {
                 .orderItems(new ArrayList<>()) // Initialize to be populated later
                 .build();
 
-        ProductOrder savedOrder = productOrderRepository.save(order); // Save order first to get ID
-
-        List<OrderItem> savedOrderItems = new ArrayList<>();
-        for (OrderItem oi : orderItems) {
-            oi.setOrder(savedOrder); // Link order item to the saved order
-            savedOrderItems.add(orderItemRepository.save(oi)); // Save each order item
-
-            // Update product stock
-            Product productToUpdate = oi.getProduct();
-            productToUpdate.setStock(productToUpdate.getStock() - oi.getQuantity());
-            productRepository.save(productToUpdate);
-        }
-        savedOrder.setOrderItems(savedOrderItems); // Set the managed order items to the order
-        // productOrderRepository.save(savedOrder); // Re-save if needed, though items association should be managed.
+        ProductOrder savedOrder = productOrderRepository.saveAndFlush(order); // Flush so order items can reference it
+        insertOrderItems(savedOrder, orderItems);
 
         if ("USER_BALANCE".equalsIgnoreCase(paymentMethod)) {
-            user.setBalance(user.getBalance() - totalAmount);
-            userRepository.save(user);
+            balanceLedgerService.debit(user, LedgerAccount.BALANCE, totalAmount,
+                    LedgerEntryType.PRODUCT_ORDER, savedOrder.getId());
         }
 
         cartService.clearCart(); // Clear the cart after successful order
 
-        return orderMapper.toOrderResponse(savedOrder);
+        return orderMapper.toOrderResponse(savedOrder, orderItems);
     }
 
     @Transactional
@@ -122,10 +114,15 @@ public class ProductOrderService {
         double totalAmount = 0;
         List<OrderItem> orderItems = new ArrayList<>();
 
+        Map<String, Product> products = productRepository.findAllById(requests.stream()
+                        .map(ProductPurchaseRequest::getProductId)
+                        .collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
         for (ProductPurchaseRequest request : requests) {
-            Product product = productService.findProductById(request.getProductId());
-            if (product.getStock() < request.getQuantity()) {
-                throw new AppException(ErrorCode.INSUFFICIENT_STOCK);
+            Product product = products.get(request.getProductId());
+            if (product == null) {
+                throw new AppException(ErrorCode.PRODUCT_NOT_FOUND);
             }
             double itemPrice = product.getPrice() * request.getQuantity();
             totalAmount += itemPrice;
@@ -141,6 +138,8 @@ public class ProductOrderService {
             throw new AppException(ErrorCode.INSUFFICIENT_BALANCE);
         }
 
+        stockReservationService.reserve(orderItems);
+
         ProductOrder order = ProductOrder.builder()
                 .user(user)
                 .totalAmount(totalAmount)
@@ -151,23 +150,28 @@ public class ProductOrderService {
                 .orderItems(new ArrayList<>()) 
                 .build();
         
-        ProductOrder savedOrder = productOrderRepository.save(order);
-        
-        List<OrderItem> finalOrderItems = new ArrayList<>();
-        for (OrderItem oi : orderItems) {
-            Product product = oi.getProduct();
-            product.setStock(product.getStock() - oi.getQuantity());
-            productRepository.save(product);
-            oi.setOrder(savedOrder);
-            finalOrderItems.add(orderItemRepository.save(oi));
-        }
-        savedOrder.setOrderItems(finalOrderItems);
-        // productOrderRepository.save(savedOrder); // Optional re-save
+        ProductOrder savedOrder = productOrderRepository.saveAndFlush(order);
+        insertOrderItems(savedOrder, orderItems);
         
-        user.setBalance(user.getBalance() - totalAmount);
-        userRepository.save(user);
+        balanceLedgerService.debit(user, LedgerAccount.BALANCE, totalAmount,
+                LedgerEntryType.PRODUCT_ORDER, savedOrder.getId());
         
-        return orderMapper.toOrderResponse(savedOrder);
+        return orderMapper.toOrderResponse(savedOrder, orderItems);
+    }
+
+    /**
+     * Writes all items of a just-flushed order in one JDBC batch. The items are not attached to
+     * the managed order, so they are not written a second time when the persistence context
+     * is flushed.
+     */
+    private void insertOrderItems(ProductOrder order, List<OrderItem> orderItems) {
+        List<Object[]> batch = new ArrayList<>(orderItems.size());
+        for (OrderItem item : orderItems) {
+            item.setId(UUID.randomUUID().toString());
+            item.setOrder(order);
+            batch.add(new Object[]{item.getId(), order.getId(), item.getProduct().getId(), item.getQuantity(), item.getPrice()});
+        }
+        jdbcTemplate.batchUpdate(INSERT_ORDER_ITEM, batch);
     }
 
     @Transactional(readOnly = true)
@@ -13,11 +13,9 @@ import com.capstone.exception.AppException;
 import com.capstone.exception.ErrorCode;
 import com.capstone.repository.AnswerRepository;
 import com.capstone.repository.QuestionRepository;
-import com.capstone.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
@@ -51,7 +49,9 @@ import java.util.stream.Collectors;
 
     private final QuestionRepository questionRepository;
     private final AnswerRepository answerRepository;
-    private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
+    private final ClassStressStream classStressStream;
+    private final TodayStressAccumulator todayStressAccumulator;
 
     @Transactional
     public QuestionResponse createQuestion(@Valid QuestionRequest request) {
@@ -155,6 +155,8 @@ import java.util.stream.Collectors;
                 .build();
         
         answer = answerRepository.save(answer);
+        classStressStream.recordAnswer(currentUser.getId(), stressScore);
+        todayStressAccumulator.record(currentUser.getId(), stressScore);
 
         
         return convertToAnswerResponse(answer);
@@ -198,12 +200,7 @@ import java.util.stream.Collectors;
     }
     
     private User getCurrentUser() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        return userRepository.findByUsername(username)
-                .orElseThrow(() -> {
-                    log.error("User not found: {}", username);
-                    return new AppException(ErrorCode.USER_NOT_EXISTED);
-                });
+        return currentUserResolver.getCurrentUser();
     }
     
     private Question findQuestionById(String id) {
@@ -0,0 +1,141 @@
+package com.capstone.service;
+
+import com.capstone.dto.response.RecommendationResponse;
+import com.capstone.dto.response.UserResponse;
+import com.capstone.dto.response.VideoResponse;
+import com.capstone.entity.MusicRecommend;
+import com.capstone.entity.VideoRecommend;
+import com.capstone.repository.MusicRecommendRepository;
+import com.capstone.repository.VideoRecommendRepository;
+import com.capstone.util.AfterCommit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the music and videos that can be recommended. Readers take the current
+ * {@link Snapshot} without locking; uploads and deletions rebuild it after their transaction
+ * commits and swap it in. Doctors come from {@link DoctorDirectory}, so approvals, profile
+ * updates, bans and deletions reach recommendations through that one cache.
+ */
+@Slf4j
+@Component
+public class RecommendationCatalog {
+    private final MusicRecommendRepository musicRecommendRepository;
+    private final VideoRecommendRepository videoRecommendRepository;
+    private final DoctorDirectory doctorDirectory;
+
+    private volatile Snapshot snapshot;
+    private volatile DoctorRecommendations doctors;
+
+    public RecommendationCatalog(MusicRecommendRepository musicRecommendRepository,
+                                 VideoRecommendRepository videoRecommendRepository,
+                                 DoctorDirectory doctorDirectory) {
+        this.musicRecommendRepository = musicRecommendRepository;
+        this.videoRecommendRepository = videoRecommendRepository;
+        this.doctorDirectory = doctorDirectory;
+    }
+
+    public Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            return snapshot != null ? snapshot : rebuild();
+        }
+    }
+
+    /**
+     * Doctors as recommendations, mapped again only when the directory's list changed.
+     */
+    public List<RecommendationResponse> getDoctors() {
+        List<UserResponse> source = doctorDirectory.getDoctors();
+        DoctorRecommendations current = doctors;
+        if (current != null && current.source == source) {
+            return current.recommendations;
+        }
+        List<RecommendationResponse> recommendations = new ArrayList<>(source.size());
+        for (UserResponse doctor : source) {
+            recommendations.add(RecommendationResponse.builder()
+                    .recommendName(doctor.getId())
+                    .recommendUrl(doctor.getAvtUrl())
+                    .build());
+        }
+        doctors = new DoctorRecommendations(source, List.copyOf(recommendations));
+        return doctors.recommendations;
+    }
+
+    /**
+     * Rebuilds the catalog once the current transaction (if any) has committed.
+     */
+    public void invalidate() {
+        AfterCommit.run(this::rebuild);
+    }
+
+    private synchronized Snapshot rebuild() {
+        List<RecommendationResponse> music = new ArrayList<>();
+        for (MusicRecommend item : musicRecommendRepository.findAll()) {
+            music.add(RecommendationResponse.builder()
+                    .recommendName(item.getMusicName())
+                    .recommendUrl(item.getMusicUrl())
+                    .build());
+        }
+
+        List<VideoResponse> videos = new ArrayList<>();
+        List<RecommendationResponse> videoRecommendations = new ArrayList<>();
+        for (VideoRecommend item : videoRecommendRepository.findAll()) {
+            videos.add(VideoResponse.builder()
+                    .videoName(item.getVideoName())
+                    .videoUrl(item.getVideoUrl())
+                    .build());
+            videoRecommendations.add(RecommendationResponse.builder()
+                    .recommendName(item.getVideoName())
+                    .recommendUrl(item.getVideoUrl())
+                    .build());
+        }
+
+        Snapshot rebuilt = new Snapshot(music, videos, videoRecommendations);
+        snapshot = rebuilt;
+        log.info("Rebuilt recommendation catalog: {} music, {} videos", music.size(), videos.size());
+        return rebuilt;
+    }
+
+    public static final class Snapshot {
+        private final List<RecommendationResponse> music;
+        private final List<VideoResponse> videos;
+        private final List<RecommendationResponse> videoRecommendations;
+
+        Snapshot(List<RecommendationResponse> music,
+                 List<VideoResponse> videos,
+                 List<RecommendationResponse> videoRecommendations) {
+            this.music = List.copyOf(music);
+            this.videos = List.copyOf(videos);
+            this.videoRecommendations = List.copyOf(videoRecommendations);
+        }
+
+        public List<RecommendationResponse> getMusic() {
+            return music;
+        }
+
+        public List<VideoResponse> getVideos() {
+            return videos;
+        }
+
+        public List<RecommendationResponse> getVideoRecommendations() {
+            return videoRecommendations;
+        }
+    }
+
+    private static final class DoctorRecommendations {
+        final List<UserResponse> source;
+        final List<RecommendationResponse> recommendations;
+
+        DoctorRecommendations(List<UserResponse> source, List<RecommendationResponse> recommendations) {
+            this.source = source;
+            this.recommendations = recommendations;
+        }
+    }
+}
@@ -5,14 +5,18 @@ import com.capstone.dto.response.RefundHistoryResponse;
 import com.capstone.entity.ChatPayment;
 import com.capstone.entity.ChatRequest;
 import com.capstone.entity.User;
-import com.capstone.repository.ChatMessageRepository;
+import com.capstone.enums.LedgerAccount;
+import com.capstone.enums.LedgerEntryType;
 import com.capstone.repository.ChatPaymentRepository;
-import com.capstone.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -26,15 +30,19 @@ import java.util.stream.Collectors;
 @Slf4j
 public class RefundService {
       private final ChatPaymentRepository chatPaymentRepository;
-    private final ChatMessageRepository chatMessageRepository;
-    private final UserRepository userRepository;
     private final SimpMessagingTemplate messagingTemplate;
     private final DoctorScheduleService doctorScheduleService;    private final RefundConfigurationProperties refundConfig;
+    private final PlatformTransactionManager transactionManager;
+    private final BalanceLedgerService balanceLedgerService;
+
+    // Cursor ban đầu cho keyset scan (trước mọi payment)
+    private static final LocalDateTime KEYSET_START = LocalDateTime.of(1970, 1, 1, 0, 0);
     
     /**
-     * Kiểm tra và xử lý hoàn tiền cho các trường hợp doctor không phản hồi
+     * Kiểm tra và xử lý hoàn tiền cho các trường hợp doctor không phản hồi.
+     * Payments are read in keyset batches of {@code refund.scheduler.batch-size}, and each batch is
+     * refunded in its own transaction, so one bad batch does not undo the others.
      */
-    @Transactional
     public int processRefundForUnresponsiveDoctors() {
         if (!refundConfig.isAutoRefundEnabled()) {
             log.info("Automatic refunds are disabled");
@@ -44,27 +52,34 @@ public class RefundService {
         log.info("Starting automatic refund check for unresponsive doctors");
         
         LocalDateTime cutoffTime = LocalDateTime.now().minusMinutes(refundConfig.getDoctorResponseTimeout());
+        Pageable batch = PageRequest.of(0, Math.max(1, refundConfig.getScheduler().getBatchSize()));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
         
-        // Tìm các payment đã được tạo từ 30 phút trước và chưa được hoàn tiền
-        List<ChatPayment> paymentsToCheck = chatPaymentRepository.findPaymentsEligibleForRefund(cutoffTime);
-        
-        log.info("Found {} payments to check for refund eligibility", paymentsToCheck.size());
-        
+        LocalDateTime afterCreatedAt = KEYSET_START;
+        String afterId = "";
         int refundsProcessed = 0;
         
-        for (ChatPayment payment : paymentsToCheck) {
+        while (true) {
+            // Chỉ các payment mà bác sĩ chưa trả lời (doctorFirstResponseAt được ghi khi bác sĩ nhắn tin)
+            List<ChatPayment> payments = chatPaymentRepository.findAwaitingDoctorResponseAfter(
+                    cutoffTime, afterCreatedAt, afterId, batch);
+            if (payments.isEmpty()) {
+                break;
+            }
+            
+            ChatPayment last = payments.get(payments.size() - 1);
+            afterCreatedAt = last.getCreatedAt();
+            afterId = last.getId();
+            
             try {
-                // Kiểm tra xem doctor đã phản hồi chưa
-                boolean doctorResponded = chatMessageRepository.hasDoctorRespondedAfterPayment(payment.getId());
-                
-                if (!doctorResponded) {
-                    // Doctor chưa phản hồi - thực hiện hoàn tiền
-                    boolean success = processRefundForPayment(payment);
-                    if (success) {
-                        refundsProcessed++;
-                    }
-                }
-            } catch (Exception e) {                log.error("Error processing refund for payment {}: {}", payment.getId(), e.getMessage(), e);
+                Integer refunded = transactionTemplate.execute(status -> refundBatch(payments));
+                refundsProcessed += refunded == null ? 0 : refunded;
+            } catch (Exception e) {
+                log.error("Refund batch ending at payment {} failed: {}", last.getId(), e.getMessage(), e);
+            }
+            
+            if (payments.size() < batch.getPageSize()) {
+                break;
             }
         }
         
@@ -72,6 +87,20 @@ public class RefundService {
         return refundsProcessed;
     }
     
+    private int refundBatch(List<ChatPayment> payments) {
+        int refunded = 0;
+        for (ChatPayment candidate : payments) {
+            // Đọc lại trong transaction: bác sĩ có thể vừa trả lời
+            ChatPayment payment = chatPaymentRepository.findById(candidate.getId()).orElse(null);
+            if (payment == null || payment.isRefunded() || payment.getDoctorFirstResponseAt() != null) {
+                continue;
+            }
+            executeRefund(payment, "DOCTOR_NO_RESPONSE");
+            refunded++;
+        }
+        return refunded;
+    }
+    
     /**
      * Xử lý hoàn tiền cho một payment cụ thể
      */
@@ -110,8 +139,10 @@ public class RefundService {
         double actualRefundAmount = refundAmount * refundPercentage;
         
         // Hoàn tiền vào tài khoản patient
-        patient.setBalance(patient.getBalance() + actualRefundAmount);
-        userRepository.save(patient);
+        if (actualRefundAmount > 0) {
+            balanceLedgerService.credit(patient, LedgerAccount.BALANCE, actualRefundAmount,
+                    LedgerEntryType.CHAT_REFUND, payment.getId());
+        }
         
         // Cập nhật trạng thái payment
         payment.setRefunded(true);
@@ -292,7 +323,7 @@ public class RefundService {
      * Lấy danh sách payments có thể hoàn tiền
      */    public List<ChatPayment> getPaymentsEligibleForRefund() {
         LocalDateTime cutoffTime = LocalDateTime.now().minusMinutes(refundConfig.getDoctorResponseTimeout());
-        return chatPaymentRepository.findPaymentsEligibleForRefund(cutoffTime);
+        return chatPaymentRepository.findAwaitingDoctorResponse(cutoffTime);
     }
     
     /**
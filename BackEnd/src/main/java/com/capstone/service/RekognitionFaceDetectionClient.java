@@ -0,0 +1,36 @@
+package com.capstone.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.rekognition.model.Attribute;
+import software.amazon.awssdk.services.rekognition.model.DetectFacesRequest;
+import software.amazon.awssdk.services.rekognition.model.DetectFacesResponse;
+import software.amazon.awssdk.services.rekognition.model.FaceDetail;
+import software.amazon.awssdk.services.rekognition.model.Image;
+
+import java.util.List;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stress.detector", havingValue = "rekognition", matchIfMissing = true)
+public class RekognitionFaceDetectionClient implements FaceDetectionClient {
+    private final RekognitionClient rekognitionClient;
+
+    @Override
+    public List<FaceDetail> detectFaces(byte[] imageBytes) {
+        Image image = Image.builder().bytes(SdkBytes.fromByteArray(imageBytes)).build();
+        DetectFacesRequest request = DetectFacesRequest.builder()
+                .image(image)
+                .attributes(Attribute.ALL)
+                .build();
+
+        DetectFacesResponse response = rekognitionClient.detectFaces(request);
+        log.debug("DetectFaces response: {}", response);
+        return response.faceDetails();
+    }
+}
@@ -0,0 +1,104 @@
+package com.capstone.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.rekognition.model.CreateCollectionRequest;
+import software.amazon.awssdk.services.rekognition.model.DeleteFacesRequest;
+import software.amazon.awssdk.services.rekognition.model.FaceMatch;
+import software.amazon.awssdk.services.rekognition.model.Image;
+import software.amazon.awssdk.services.rekognition.model.IndexFacesRequest;
+import software.amazon.awssdk.services.rekognition.model.IndexFacesResponse;
+import software.amazon.awssdk.services.rekognition.model.QualityFilter;
+import software.amazon.awssdk.services.rekognition.model.ResourceAlreadyExistsException;
+import software.amazon.awssdk.services.rekognition.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.rekognition.model.SearchFacesByImageRequest;
+
+/**
+ * Enrolls avatars into a Rekognition face collection (IndexFaces keeps only the face vector)
+ * and matches logins with SearchFacesByImage, so only the selfie is sent per login.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "face-login.matcher", havingValue = "rekognition", matchIfMissing = true)
+public class RekognitionFaceMatcher implements FaceMatcher {
+    private static final int MAX_SEARCH_RESULTS = 10;
+
+    private final RekognitionClient rekognitionClient;
+    private final String collectionId;
+
+    public RekognitionFaceMatcher(RekognitionClient rekognitionClient,
+                                  @Value("${face-login.collection-id:capstone-face-login}") String collectionId) {
+        this.rekognitionClient = rekognitionClient;
+        this.collectionId = collectionId;
+    }
+
+    @Override
+    public String name() {
+        return "rekognition:" + collectionId;
+    }
+
+    @Override
+    public String enroll(String userId, byte[] imageBytes) {
+        IndexFacesRequest request = IndexFacesRequest.builder()
+                .collectionId(collectionId)
+                .image(image(imageBytes))
+                .externalImageId(userId)
+                .maxFaces(1)
+                .qualityFilter(QualityFilter.AUTO)
+                .build();
+        IndexFacesResponse response;
+        try {
+            response = rekognitionClient.indexFaces(request);
+        } catch (ResourceNotFoundException e) {
+            createCollection();
+            response = rekognitionClient.indexFaces(request);
+        }
+        if (response.faceRecords().isEmpty()) {
+            return null;
+        }
+        return response.faceRecords().get(0).face().faceId();
+    }
+
+    @Override
+    public float match(String faceRef, byte[] probeImageBytes) {
+        SearchFacesByImageRequest request = SearchFacesByImageRequest.builder()
+                .collectionId(collectionId)
+                .image(image(probeImageBytes))
+                .maxFaces(MAX_SEARCH_RESULTS)
+                .faceMatchThreshold(0F)
+                .build();
+        for (FaceMatch match : rekognitionClient.searchFacesByImage(request).faceMatches()) {
+            if (faceRef.equals(match.face().faceId())) {
+                return match.similarity();
+            }
+        }
+        return 0F;
+    }
+
+    @Override
+    public void remove(String faceRef) {
+        rekognitionClient.deleteFaces(DeleteFacesRequest.builder()
+                .collectionId(collectionId)
+                .faceIds(faceRef)
+                .build());
+    }
+
+    private void createCollection() {
+        try {
+            rekognitionClient.createCollection(CreateCollectionRequest.builder()
+                    .collectionId(collectionId)
+                    .build());
+            log.info("Created Rekognition face collection {}", collectionId);
+        } catch (ResourceAlreadyExistsException e) {
+            log.debug("Face collection {} already exists", collectionId);
+        }
+    }
+
+    private static Image image(byte[] bytes) {
+        return Image.builder().bytes(SdkBytes.fromByteArray(bytes)).build();
+    }
+}
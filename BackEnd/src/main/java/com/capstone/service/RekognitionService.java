@@ -1,7 +1,10 @@
 package com.capstone.service;
 
 import com.capstone.dto.response.DailyStressReportResponse;
+import com.capstone.dto.response.MonthlyStressReportResponse;
 import com.capstone.dto.response.StressAnalysisResponse;
+import com.capstone.dto.response.WeeklyStressReportResponse;
+import com.capstone.entity.DailyStressRollup;
 import com.capstone.entity.StressAnalysis;
 import com.capstone.entity.User;
 import com.capstone.entity.WeeklyStressReport;
@@ -15,18 +18,19 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
-import software.amazon.awssdk.core.SdkBytes;
-import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.rekognition.RekognitionClient;
 import software.amazon.awssdk.services.rekognition.model.*;
 
+import java.time.LocalDate;
+import java.time.temporal.WeekFields;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -35,10 +39,16 @@ import java.util.Collections;
 @Slf4j
 @Service
 public class RekognitionService {
-    private final RekognitionClient rekognitionClient;
+    public static final String NO_FACE_DETECTED = "No face detected!";
+
+    private final FaceDetectionClient faceDetectionClient;
+    private final StressScoreCache stressScoreCache;
+    private final StressScoringEngine stressScoringEngine;
     private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
     private final StressAnalysisRepository stressAnalysisRepository;
     private final StressReportService stressReportService;
+    private final ClassStressStream classStressStream;
 
     @Value("${stress.extreme.threshold:85}")
     private double extremeStressThreshold;
@@ -55,206 +65,87 @@ public class RekognitionService {
     @Value("${stress.normal.threshold:10}")
     private double normalStressThreshold;
 
-    @Value("${stress.confidence.threshold:50}")
-    private float confidenceThreshold;
-
     public RekognitionService(
-            @Value("${aws.access-key}") String accessKey,
-            @Value("${aws.secret-key}") String secretKey,
-            @Value("${aws.region}") String region,
+            FaceDetectionClient faceDetectionClient,
+            StressScoreCache stressScoreCache,
+            StressScoringEngine stressScoringEngine,
             UserRepository userRepository,
+            CurrentUserResolver currentUserResolver,
             StressAnalysisRepository stressAnalysisRepository,
-            StressReportService stressReportService) {
+            StressReportService stressReportService,
+            ClassStressStream classStressStream) {
+        this.faceDetectionClient = faceDetectionClient;
+        this.stressScoreCache = stressScoreCache;
+        this.stressScoringEngine = stressScoringEngine;
         this.userRepository = userRepository;
+        this.currentUserResolver = currentUserResolver;
         this.stressAnalysisRepository = stressAnalysisRepository;
         this.stressReportService = stressReportService;
-        rekognitionClient = RekognitionClient.builder()
-                .region(Region.of(region))
-                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)))
-                .build();
+        this.classStressStream = classStressStream;
     }
 
     public String detectStress(byte[] imageBytes) {
         try {
             // Lấy userId từ SecurityContextHolder
-            String username = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
-
-            Image image = Image.builder().bytes(SdkBytes.fromByteArray(imageBytes)).build();
-            DetectFacesRequest request = DetectFacesRequest.builder()
-                    .image(image)
-                    .attributes(Attribute.ALL)
-                    .build();
-
-            DetectFacesResponse response = rekognitionClient.detectFaces(request);
-            log.info(response.toString());
-            List<FaceDetail> faces = response.faceDetails();
+            User user = currentUserResolver.getCurrentUser();
 
-            if (faces.isEmpty()) {
-                log.info("No faces detected in the image.");
-                return "No face detected!";
+            OptionalDouble avgScore = analyzeImage(imageBytes);
+            if (avgScore.isEmpty()) {
+                return NO_FACE_DETECTED;
             }
 
-            double totalScore = 0.0;
-            for (FaceDetail face : faces) {
-                double stressScore = calculateStressScore(face);
-                totalScore += stressScore;
-                log.info("Stress score for face: {}", stressScore);
-            }
-            double avgScore = totalScore / faces.size();
-            log.info("Average stress score: {}", avgScore);
-
-            String stressLevel = mapStressScoreToLevel(avgScore);
-
-            // Lưu kết quả vào database
-            StressAnalysis analysis = StressAnalysis.builder()
-                    .user(user)
-                    .stressScore(avgScore)
-                    .stressLevel(stressLevel)
-                    .createdAt(new Date())
-                    .build();
-            stressAnalysisRepository.save(analysis);
-
-            // Cập nhật báo cáo tuần và tháng
-            stressReportService.updateReports(analysis);
-
-            return stressLevel;
+            return recordAnalysis(user, avgScore.getAsDouble()).getStressLevel();
         } catch (Exception e) {
             log.error("Error detecting stress: {}", e.getMessage());
             return "Error analyzing stress.";
         }
     }
 
-    private double calculateStressScore(FaceDetail face) {
-        double score = 0.0;
-        StringBuilder emotionLog = new StringBuilder("Emotion contributions: ");
-        for (Emotion emotion : face.emotions()) {
-            if (emotion.confidence() < confidenceThreshold) {
-                continue;
-            }
-            String type = emotion.typeAsString();
-            float confidence = emotion.confidence();
-            double contribution;
-            switch (type) {
-                case "ANGRY":
-                case "FEAR":
-                case "DISGUSTED":
-                case "SAD":
-                    contribution = confidence * 1.0;
-                    score += contribution;
-                    emotionLog.append(String.format("%s (%.2f * 1.0 = %.2f), ", type, confidence, contribution));
-                    break;
-                case "CONFUSED":
-                case "SURPRISED":
-                    contribution = confidence * 0.5;
-                    score += contribution;
-                    emotionLog.append(String.format("%s (%.2f * 0.5 = %.2f), ", type, confidence, contribution));
-                    break;
-                case "CALM":
-                case "HAPPY":
-                    contribution = confidence * -0.3;
-                    score += contribution;
-                    emotionLog.append(String.format("%s (%.2f * -0.3 = %.2f), ", type, confidence, contribution));
-                    break;
-            }
-        }
-        if (emotionLog.length() > "Emotion contributions: ".length()) {
-            log.info(emotionLog.substring(0, emotionLog.length() - 2)); // Bỏ dấu ", " cuối
-        } else {
-            log.info("No emotions above confidence threshold.");
-        }
-
-        // Tính điểm từ đặc điểm vật lý
-        StringBuilder physicalLog = new StringBuilder("Physical feature contributions: ");
-        if (!face.eyesOpen().value()) {
-            score += 10;
-            physicalLog.append("Eyes closed (+10), ");
-            log.info("Eyes closed detected");
-        }
-        if (face.mouthOpen().value()) {
-            score += 5;
-            physicalLog.append("Mouth open (+5), ");
-            log.info("Mouth open detected");
-        }
-        if (Math.abs(face.pose().pitch()) > 20 || Math.abs(face.pose().roll()) > 20) {
-            score += 5;
-            physicalLog.append("Unusual head tilt (+5), ");
-            log.info("Unusual head tilt detected");
-        }
-        if (physicalLog.length() > "Physical feature contributions: ".length()) {
-            log.info(physicalLog.substring(0, physicalLog.length() - 2));
-        } else {
-            log.info("No physical feature contributions.");
-        }
-
-        // Tính điểm từ nhăn mặt
-        double frownScore = detectFrowning(face);
-        if (frownScore > 0) {
-            score += frownScore;
-            log.info("Possible frowning detected with score: {}", frownScore);
-        }
-
-        // Log tổng điểm trước khi giới hạn
-        log.info("Total score before capping: {}", score);
-
-        // Giới hạn điểm từ 0 đến 100
-        double finalScore = Math.min(Math.max(score, 0), 100);
-        if (finalScore != score) {
-            log.info("Score capped from {} to {}", score, finalScore);
-        }
-
-        return finalScore;
+    /**
+     * Runs face detection on the image and returns the average stress score over all detected
+     * faces, or an empty result when no face is found. Results are cached by image content, so a
+     * re-uploaded image is not sent to the detector again. Does not touch the database.
+     */
+    public OptionalDouble analyzeImage(byte[] imageBytes) {
+        return stressScoreCache.getOrCompute(imageBytes, () -> scoreFaces(imageBytes));
     }
 
-    private double detectFrowning(FaceDetail face) {
-        double frownScore = 0.0;
-        List<Landmark> landmarks = face.landmarks();
-
-        // Tìm các điểm lông mày và mắt
-        float leftBrowY = 0, rightBrowY = 0, leftEyeY = 0, rightEyeY = 0;
-        for (Landmark landmark : landmarks) {
-            switch (landmark.typeAsString()) {
-                case "leftEyeBrowUp":
-                    leftBrowY = landmark.y();
-                    break;
-                case "rightEyeBrowUp":
-                    rightBrowY = landmark.y();
-                    break;
-                case "leftEyeUp":
-                    leftEyeY = landmark.y();
-                    break;
-                case "rightEyeUp":
-                    rightEyeY = landmark.y();
-                    break;
-            }
-        }
+    private OptionalDouble scoreFaces(byte[] imageBytes) {
+        List<FaceDetail> faces = faceDetectionClient.detectFaces(imageBytes);
 
-        // Tính khoảng cách giữa lông mày và mắt
-        float leftDistance = leftEyeY - leftBrowY;
-        float rightDistance = rightEyeY - rightBrowY;
-        StringBuilder frownLog = new StringBuilder("Frowning analysis: ");
-        if (leftDistance < 0.03 && rightDistance < 0.03) {
-            frownScore += 10;
-            frownLog.append("Eyebrow-eye distance small (Left: ").append(String.format("%.5f", leftDistance))
-                    .append(", Right: ").append(String.format("%.5f", rightDistance)).append(") -> +10, ");
+        if (faces.isEmpty()) {
+            log.info("No faces detected in the image.");
+            return OptionalDouble.empty();
         }
 
-        // Kết hợp với cảm xúc DISGUSTED hoặc CONFUSED
-        for (Emotion emotion : face.emotions()) {
-            if (emotion.confidence() >= confidenceThreshold) {
-                if ("DISGUSTED".equals(emotion.typeAsString()) || "CONFUSED".equals(emotion.typeAsString())) {
-                    frownScore += 5;
-                    frownLog.append(String.format("%s (%.2f) -> +5, ", emotion.typeAsString(), emotion.confidence()));
-                }
-            }
+        double totalScore = 0.0;
+        for (FaceDetail face : faces) {
+            totalScore += stressScoringEngine.score(face);
         }
+        double avgScore = totalScore / faces.size();
+        log.info("Average stress score over {} face(s): {}", faces.size(), avgScore);
+        return OptionalDouble.of(avgScore);
+    }
 
-        if (frownLog.length() > "Frowning analysis: ".length()) {
-            log.info(frownLog.substring(0, frownLog.length() - 2));
-        }
+    /**
+     * Persists a computed score for the given user and folds it into the daily, weekly and
+     * monthly reports.
+     */
+    public StressAnalysis recordAnalysis(User user, double avgScore) {
+        String stressLevel = mapStressScoreToLevel(avgScore);
+
+        // Lưu kết quả vào database
+        StressAnalysis analysis = StressAnalysis.builder()
+                .user(user)
+                .stressScore(avgScore)
+                .stressLevel(stressLevel)
+                .createdAt(new Date())
+                .build();
+        // Lưu kết quả và cập nhật báo cáo ngày, tuần, tháng trong cùng một transaction
+        stressReportService.saveAnalysis(analysis);
+        classStressStream.recordAnalysis(user.getId(), avgScore, analysis.getCreatedAt());
 
-        return frownScore;
+        return analysis;
     }
 
     public String mapStressScoreToLevel(double score) {
@@ -274,86 +165,122 @@ public class RekognitionService {
     }
 
     public List<StressAnalysis> getStressHistory() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User user = currentUserResolver.getCurrentUser();
         return stressAnalysisRepository.findByUserOrderByCreatedAtDesc(user);
     }
 
     public List<WeeklyStressReport> getWeeklyReports() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User user = currentUserResolver.getCurrentUser();
         return stressReportService.getWeeklyReports(user);
     }
 
     public List<MonthlyStressReport> getMonthlyReports() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User user = currentUserResolver.getCurrentUser();
         return stressReportService.getMonthlyReports(user);
     }
 
-    public Map<String, List<StressAnalysis>> getStressByWeek() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
-        List<StressAnalysis> allResults = stressAnalysisRepository.findByUserOrderByCreatedAtDesc(user);
-        
-        return allResults.stream()
-                .collect(Collectors.groupingBy(
-                    analysis -> {
-                        Calendar cal = Calendar.getInstance();
-                        cal.setTime(analysis.getCreatedAt());
-                        cal.set(Calendar.DAY_OF_WEEK, cal.getFirstDayOfWeek());
-                        return String.format("Week %d, %d", 
-                            cal.get(Calendar.WEEK_OF_YEAR),
-                            cal.get(Calendar.YEAR));
-                    }
-                ));
+    public List<WeeklyStressReportResponse> getStressByWeek() {
+        User user = currentUserResolver.getCurrentUser();
+        WeekFields weekFields = WeekFields.of(Locale.getDefault());
+
+        return mergeDailyRollups(stressReportService.getDailyRollups(user),
+                day -> day.with(weekFields.dayOfWeek(), 1)).stream()
+                .map(bucket -> WeeklyStressReportResponse.builder()
+                        .average_stress_score(bucket.getAverage())
+                        .dominant_stress_level(mapStressScoreToLevel(bucket.getAverage()))
+                        .start_date(bucket.firstAnalysisAt)
+                        .end_date(bucket.lastAnalysisAt)
+                        .total_analyses(bucket.totalAnalyses)
+                        .stress_analyses(Collections.emptyList())
+                        .build())
+                .collect(Collectors.toList());
     }
 
-    public Map<String, List<StressAnalysis>> getStressByMonth() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
-        List<StressAnalysis> allResults = stressAnalysisRepository.findByUserOrderByCreatedAtDesc(user);
-        
-        return allResults.stream()
-                .collect(Collectors.groupingBy(
-                    analysis -> {
-                        Calendar cal = Calendar.getInstance();
-                        cal.setTime(analysis.getCreatedAt());
-                        return String.format("%s %d", 
-                            cal.getDisplayName(Calendar.MONTH, Calendar.LONG, Locale.getDefault()),
-                            cal.get(Calendar.YEAR));
-                    }
-                ));
+    public List<MonthlyStressReportResponse> getStressByMonth() {
+        User user = currentUserResolver.getCurrentUser();
+
+        return mergeDailyRollups(stressReportService.getDailyRollups(user),
+                day -> day.withDayOfMonth(1)).stream()
+                .map(bucket -> MonthlyStressReportResponse.builder()
+                        .average_stress_score(bucket.getAverage())
+                        .dominant_stress_level(mapStressScoreToLevel(bucket.getAverage()))
+                        .start_date(bucket.firstAnalysisAt)
+                        .end_date(bucket.lastAnalysisAt)
+                        .total_analyses(bucket.totalAnalyses)
+                        .stress_analyses(Collections.emptyList())
+                        .build())
+                .collect(Collectors.toList());
     }
 
-    public Map<String, List<StressAnalysis>> getStressByDay() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
-        List<StressAnalysis> allResults = stressAnalysisRepository.findByUserOrderByCreatedAtDesc(user);
-        
-        return allResults.stream()
-                .collect(Collectors.groupingBy(
-                    analysis -> {
-                        Calendar cal = Calendar.getInstance();
-                        cal.setTime(analysis.getCreatedAt());
-                        return String.format("%d/%d/%d", 
-                            cal.get(Calendar.DAY_OF_MONTH),
-                            cal.get(Calendar.MONTH) + 1,
-                            cal.get(Calendar.YEAR));
-                    }
-                ));
+    public List<DailyStressReportResponse> getStressByDay() {
+        User user = currentUserResolver.getCurrentUser();
+        List<DailyStressRollup> days = stressReportService.getDailyRollups(user);
+
+        List<DailyStressReportResponse> result = new ArrayList<>(days.size());
+        for (int i = 0; i < days.size(); i++) {
+            DailyStressRollup day = days.get(i);
+            // Chỉ ngày gần nhất trả về từng lần phân tích, các ngày cũ hơn chỉ dùng số liệu tổng hợp
+            List<StressAnalysisResponse> analysisResponses = i == 0
+                    ? stressAnalysisRepository.findByUserAndCreatedAtBetweenOrderByCreatedAtDesc(
+                            user, day.getFirstAnalysisAt(), day.getLastAnalysisAt()).stream()
+                            .map(this::toAnalysisResponse)
+                            .collect(Collectors.toList())
+                    : Collections.emptyList();
+
+            result.add(DailyStressReportResponse.builder()
+                    .average_stress_score(day.getAverageStressScore())
+                    .dominant_stress_level(mapStressScoreToLevel(day.getAverageStressScore()))
+                    .start_date(day.getFirstAnalysisAt())
+                    .end_date(day.getLastAnalysisAt())
+                    .total_analyses(day.getTotalAnalyses())
+                    .stress_analyses(analysisResponses)
+                    .build());
+        }
+        return result;
+    }
+
+    /**
+     * Folds daily rollups (most recent first) into coarser buckets keyed by {@code bucketKey},
+     * preserving the most-recent-first order.
+     */
+    private List<RollupBucket> mergeDailyRollups(List<DailyStressRollup> days, Function<LocalDate, LocalDate> bucketKey) {
+        Map<LocalDate, RollupBucket> buckets = new LinkedHashMap<>();
+        for (DailyStressRollup day : days) {
+            RollupBucket bucket = buckets.computeIfAbsent(bucketKey.apply(day.getBucketDate()), key -> new RollupBucket());
+            bucket.totalAnalyses += day.getTotalAnalyses();
+            bucket.totalStressScore += day.getTotalStressScore();
+            if (bucket.firstAnalysisAt == null || day.getFirstAnalysisAt().before(bucket.firstAnalysisAt)) {
+                bucket.firstAnalysisAt = day.getFirstAnalysisAt();
+            }
+            if (bucket.lastAnalysisAt == null || day.getLastAnalysisAt().after(bucket.lastAnalysisAt)) {
+                bucket.lastAnalysisAt = day.getLastAnalysisAt();
+            }
+        }
+        return new ArrayList<>(buckets.values());
+    }
+
+    private static class RollupBucket {
+        int totalAnalyses;
+        double totalStressScore;
+        Date firstAnalysisAt;
+        Date lastAnalysisAt;
+
+        double getAverage() {
+            return totalAnalyses == 0 ? 0.0 : totalStressScore / totalAnalyses;
+        }
+    }
+
+    private StressAnalysisResponse toAnalysisResponse(StressAnalysis analysis) {
+        return StressAnalysisResponse.builder()
+                .id(analysis.getId())
+                .stressScore(analysis.getStressScore())
+                .stressLevel(analysis.getStressLevel())
+                .createdAt(analysis.getCreatedAt())
+                .build();
     }
     
     public DailyStressReportResponse getStressBySpecificDate(String dateStr) {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User user = currentUserResolver.getCurrentUser();
         
         try {
             SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
@@ -426,9 +353,7 @@ public class RekognitionService {
     }
 
     public DailyStressReportResponse getStressForToday() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User user = currentUserResolver.getCurrentUser();
         
         // Get today's date
         Calendar today = Calendar.getInstance();
@@ -495,9 +420,7 @@ public class RekognitionService {
      * @return List of most recent stress analyses
      */
     public List<StressAnalysis> getRecentStressAnalyses(int limit) {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User user = currentUserResolver.getCurrentUser();
         return stressAnalysisRepository.findByUserOrderByCreatedAtDesc(user).stream()
                 .limit(limit)
                 .collect(Collectors.toList());
@@ -0,0 +1,43 @@
+package com.capstone.service;
+
+import java.util.List;
+
+/**
+ * Reads incoming bank transactions from SePay. Backed by the SePay user API in production; a
+ * local stub can be selected with {@code sepay.client=stub}.
+ */
+public interface SepayClient {
+
+    /**
+     * Returns the newest {@code limit} incoming transactions with an id greater than
+     * {@code sinceId} (or the most recent ones when {@code sinceId} is null), in any order.
+     * When more transactions than {@code limit} are waiting, the oldest ones are not returned.
+     * Outgoing transactions are included with an {@code amountIn} of 0, so a result shorter than
+     * {@code limit} means nothing after {@code sinceId} was left out.
+     */
+    List<Transaction> fetchTransactions(Long sinceId, int limit);
+
+    class Transaction {
+        private final long id;
+        private final String content;
+        private final double amountIn;
+
+        public Transaction(long id, String content, double amountIn) {
+            this.id = id;
+            this.content = content;
+            this.amountIn = amountIn;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public double getAmountIn() {
+            return amountIn;
+        }
+    }
+}
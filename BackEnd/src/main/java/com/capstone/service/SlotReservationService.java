@@ -0,0 +1,139 @@
+package com.capstone.service;
+
+import com.capstone.dto.response.SlotHoldMetricsResponse;
+import com.capstone.entity.DoctorSchedule;
+import com.capstone.entity.SlotHold;
+import com.capstone.entity.User;
+import com.capstone.enums.SlotHoldStatus;
+import com.capstone.exception.AppException;
+import com.capstone.exception.ErrorCode;
+import com.capstone.repository.SlotHoldRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TTL-bound holds on doctor schedule slots. A hold takes the appointment with the atomic
+ * capacity update in its own short transaction, so patients competing for the last slot are
+ * turned away before any balance or payment work starts. The paying transaction confirms the
+ * hold; if it rolls back, or never finishes, the hold is released and the slot given back.
+ */
+@Slf4j
+@Service
+public class SlotReservationService {
+    private static final int EXPIRY_BATCH_SIZE = 100;
+
+    private final SlotHoldRepository slotHoldRepository;
+    private final DoctorScheduleService doctorScheduleService;
+    private final long holdTtlSeconds;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    public SlotReservationService(SlotHoldRepository slotHoldRepository,
+                                  DoctorScheduleService doctorScheduleService,
+                                  @Value("${chat.slot-hold.ttl-seconds:120}") long holdTtlSeconds) {
+        this.slotHoldRepository = slotHoldRepository;
+        this.doctorScheduleService = doctorScheduleService;
+        this.holdTtlSeconds = holdTtlSeconds;
+    }
+
+    /**
+     * Takes one appointment of {@code schedule} for {@code patient}, committed immediately.
+     * Throws {@link ErrorCode#NO_AVAILABLE_SLOTS} when the schedule is already full.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public SlotHold acquire(DoctorSchedule schedule, User patient) {
+        if (!doctorScheduleService.bookAppointmentSlot(schedule.getId())) {
+            conflicts.increment();
+            log.info("Slot hold conflict on schedule {} for {}", schedule.getId(), patient.getUsername());
+            throw new AppException(ErrorCode.NO_AVAILABLE_SLOTS,
+                    "Slot đã được đặt bởi người khác. Vui lòng thử lại.");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        SlotHold hold = slotHoldRepository.save(SlotHold.builder()
+                .schedule(schedule)
+                .patient(patient)
+                .status(SlotHoldStatus.HELD)
+                .createdAt(now)
+                .expiresAt(now.plusSeconds(holdTtlSeconds))
+                .build());
+        acquired.increment();
+        return hold;
+    }
+
+    /**
+     * Confirms the hold as part of the caller's transaction. Returns false when the hold is no
+     * longer HELD (typically because it expired and the slot was given back).
+     */
+    @Transactional
+    public boolean confirm(String holdId) {
+        boolean done = slotHoldRepository.finishHold(holdId, SlotHoldStatus.CONFIRMED) > 0;
+        if (done) {
+            confirmed.increment();
+        }
+        return done;
+    }
+
+    /**
+     * Releases a hold that was not confirmed and gives its appointment back to the schedule.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean release(String holdId) {
+        if (finish(holdId, SlotHoldStatus.RELEASED)) {
+            released.increment();
+            return true;
+        }
+        return false;
+    }
+
+    @Scheduled(fixedDelay = 15000)
+    @Transactional
+    public void releaseExpiredHolds() {
+        List<String> holdIds = slotHoldRepository.findExpiredHoldIds(
+                LocalDateTime.now(), PageRequest.of(0, EXPIRY_BATCH_SIZE));
+        for (String holdId : holdIds) {
+            if (finish(holdId, SlotHoldStatus.EXPIRED)) {
+                expired.increment();
+            }
+        }
+        if (!holdIds.isEmpty()) {
+            log.info("Released {} expired slot holds", holdIds.size());
+        }
+    }
+
+    public SlotHoldMetricsResponse getMetrics() {
+        long attempts = acquired.sum() + conflicts.sum();
+        return SlotHoldMetricsResponse.builder()
+                .activeHolds(slotHoldRepository.countByStatus(SlotHoldStatus.HELD))
+                .holdTtlSeconds(holdTtlSeconds)
+                .acquired(acquired.sum())
+                .conflicts(conflicts.sum())
+                .confirmed(confirmed.sum())
+                .released(released.sum())
+                .expired(expired.sum())
+                .conflictRate(attempts == 0 ? 0.0 : (double) conflicts.sum() / attempts)
+                .build();
+    }
+
+    private boolean finish(String holdId, SlotHoldStatus status) {
+        String scheduleId = slotHoldRepository.findScheduleId(holdId).orElse(null);
+        if (scheduleId == null || slotHoldRepository.finishHold(holdId, status) == 0) {
+            return false;
+        }
+        doctorScheduleService.releaseAppointmentSlot(scheduleId);
+        return true;
+    }
+}
@@ -0,0 +1,71 @@
+package com.capstone.service;
+
+import com.capstone.entity.OrderItem;
+import com.capstone.entity.Product;
+import com.capstone.exception.AppException;
+import com.capstone.exception.ErrorCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Takes stock for all lines of an order in one JDBC batch of conditional decrements. A line
+ * whose product does not have enough stock left updates no row, and the whole reservation
+ * fails with {@link ErrorCode#INSUFFICIENT_STOCK}. The caller's transaction then rolls back
+ * the decrements that did succeed. Lines are merged per product and applied in product id
+ * order, so concurrent checkouts lock shared products in the same order and cannot deadlock.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockReservationService {
+    private static final String DECREMENT_STOCK =
+            "UPDATE products SET stock = stock - ?, updated_at = ? WHERE id = ? AND stock >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Transactional
+    public void reserve(List<OrderItem> lines) {
+        Map<String, Integer> quantities = new TreeMap<>();
+        Map<String, Product> products = new TreeMap<>();
+        for (OrderItem line : lines) {
+            if (line.getQuantity() == null || line.getQuantity() <= 0) {
+                throw new AppException(ErrorCode.INVALID_PARAM, "Quantity must be positive");
+            }
+            Product product = line.getProduct();
+            quantities.merge(product.getId(), line.getQuantity(), Integer::sum);
+            products.putIfAbsent(product.getId(), product);
+        }
+        if (quantities.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<String> productIds = new ArrayList<>(quantities.keySet());
+        List<Object[]> batch = new ArrayList<>(productIds.size());
+        for (String productId : productIds) {
+            int quantity = quantities.get(productId);
+            batch.add(new Object[]{quantity, now, productId, quantity});
+        }
+
+        int[] updated = jdbcTemplate.batchUpdate(DECREMENT_STOCK, batch);
+        for (int i = 0; i < updated.length; i++) {
+            // Driver trả SUCCESS_NO_INFO khi không đếm được số dòng: coi như đã trừ được
+            if (updated[i] == 0) {
+                Product product = products.get(productIds.get(i));
+                log.info("Rejected stock reservation of {} x {}: insufficient stock",
+                        quantities.get(product.getId()), product.getId());
+                throw new AppException(ErrorCode.INSUFFICIENT_STOCK,
+                        "Product " + product.getName() + " has insufficient stock.");
+            }
+        }
+    }
+}
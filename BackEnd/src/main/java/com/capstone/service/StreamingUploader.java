@@ -0,0 +1,254 @@
+package com.capstone.service;
+
+import com.capstone.configuration.UploadProperties;
+import com.capstone.exception.AppException;
+import com.capstone.exception.ErrorCode;
+import com.cloudinary.Cloudinary;
+import com.cloudinary.ProgressCallback;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams multipart files to Cloudinary without loading them on the heap. The multipart
+ * stream (already spooled to disk by the servlet container) is sent in fixed-size chunks, so
+ * each upload holds at most one chunk in memory and at most {@code upload.max-concurrent}
+ * uploads run at once. The content type is sniffed from the first bytes of the stream and the
+ * SHA-256 checksum is computed while the chunks go out.
+ *
+ * <p>Progress is pushed to the uploading user on {@code /user/queue/notifications} as
+ * {@code UPLOAD_PROGRESS} messages.
+ */
+@Slf4j
+@Component
+public class StreamingUploader {
+    private static final int SNIFF_LENGTH = 16;
+
+    private final Cloudinary cloudinary;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final UploadProperties properties;
+    private final Semaphore permits;
+
+    public StreamingUploader(Cloudinary cloudinary,
+                             SimpMessagingTemplate messagingTemplate,
+                             UploadProperties properties) {
+        this.cloudinary = cloudinary;
+        this.messagingTemplate = messagingTemplate;
+        this.properties = properties;
+        this.permits = new Semaphore(properties.getMaxConcurrent(), true);
+    }
+
+    /**
+     * Uploads {@code file} with the given Cloudinary options. When {@code allowedTypes} is not
+     * null the declared content type must be one of them, and a sniffed type of another media
+     * family (e.g. an executable declared as audio/mpeg) is rejected with
+     * {@link ErrorCode#INVALID_FILE_FORMAT}.
+     */
+    public UploadedFile upload(MultipartFile file, Set<String> allowedTypes, Map<?, ?> options)
+            throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new AppException(ErrorCode.FILE_NULL);
+        }
+        String declaredType = file.getContentType() == null ? null : file.getContentType().toLowerCase();
+        if (allowedTypes != null && (declaredType == null || !allowedTypes.contains(declaredType))) {
+            log.error("Invalid file format: {}", declaredType);
+            throw new AppException(ErrorCode.INVALID_FILE_FORMAT);
+        }
+
+        acquirePermit();
+        try (InputStream in = new BufferedInputStream(file.getInputStream(), SNIFF_LENGTH * 512)) {
+            String sniffedType = sniff(in);
+            if (sniffedType != null && declaredType != null && !sameFamily(sniffedType, declaredType)) {
+                log.error("File content ({}) does not match its declared type {}", sniffedType, declaredType);
+                throw new AppException(ErrorCode.INVALID_FILE_FORMAT);
+            }
+
+            MessageDigest digest = sha256();
+            String uploadId = UUID.randomUUID().toString();
+            Map<?, ?> result = cloudinary.uploader().uploadLarge(new DigestInputStream(in, digest),
+                    new HashMap<>(options), properties.getChunkSizeBytes(),
+                    progressCallback(uploadId, file.getOriginalFilename(), file.getSize()));
+
+            UploadedFile uploaded = new UploadedFile(
+                    (String) result.get("url"),
+                    (String) result.get("secure_url"),
+                    sniffedType != null ? sniffedType : declaredType,
+                    HexFormat.of().formatHex(digest.digest()),
+                    file.getSize());
+            log.info("Streamed {} ({} bytes, sha256 {}) to Cloudinary: {}",
+                    file.getOriginalFilename(), uploaded.getSize(), uploaded.getSha256(), uploaded.getSecureUrl());
+            return uploaded;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void acquirePermit() {
+        try {
+            if (!permits.tryAcquire(properties.getAcquireTimeoutSeconds(), TimeUnit.SECONDS)) {
+                throw new AppException(ErrorCode.UPLOAD_CAPACITY_EXCEEDED);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.UPLOAD_CAPACITY_EXCEEDED);
+        }
+    }
+
+    private ProgressCallback progressCallback(String uploadId, String filename, long totalBytes) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || totalBytes <= 0) {
+            return null;
+        }
+        String username = authentication.getName();
+        int step = Math.max(1, properties.getProgressStepPercent());
+        int[] lastPercent = {-step};
+        // Cloudinary báo tiến độ theo từng chunk; chỉ gửi khi tăng đủ một bước
+        return (bytesUploaded, ignored) -> {
+            int percent = (int) Math.min(100, bytesUploaded * 100 / totalBytes);
+            if (percent - lastPercent[0] < step && percent < 100) {
+                return;
+            }
+            lastPercent[0] = percent;
+            try {
+                Map<String, Object> notification = new HashMap<>();
+                notification.put("type", "UPLOAD_PROGRESS");
+                notification.put("uploadId", uploadId);
+                notification.put("filename", filename);
+                notification.put("bytesUploaded", bytesUploaded);
+                notification.put("totalBytes", totalBytes);
+                notification.put("percent", percent);
+                messagingTemplate.convertAndSendToUser(username, "/queue/notifications", notification);
+            } catch (Exception e) {
+                log.debug("Failed to send upload progress to {}: {}", username, e.getMessage());
+            }
+        };
+    }
+
+    /**
+     * Detects the media type from the magic bytes at the start of the stream, leaving the
+     * stream positioned at its beginning. Returns null for unrecognized content.
+     */
+    static String sniff(InputStream in) throws IOException {
+        in.mark(SNIFF_LENGTH);
+        byte[] head = new byte[SNIFF_LENGTH];
+        int read = in.readNBytes(head, 0, SNIFF_LENGTH);
+        in.reset();
+        if (read < 4) {
+            return null;
+        }
+        if (startsWith(head, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(head, 0x89, 'P', 'N', 'G')) {
+            return "image/png";
+        }
+        if (startsWith(head, 'G', 'I', 'F', '8')) {
+            return "image/gif";
+        }
+        if (startsWith(head, 'R', 'I', 'F', 'F') && read >= 12) {
+            String format = new String(head, 8, 4, StandardCharsets.US_ASCII);
+            switch (format) {
+                case "WEBP": return "image/webp";
+                case "WAVE": return "audio/wav";
+                case "AVI ": return "video/x-msvideo";
+                default: return null;
+            }
+        }
+        if (startsWith(head, 'I', 'D', '3') || ((head[0] & 0xFF) == 0xFF && (head[1] & 0xE0) == 0xE0)) {
+            return "audio/mpeg";
+        }
+        if (startsWith(head, 'O', 'g', 'g', 'S')) {
+            return "audio/ogg";
+        }
+        if (read >= 8 && head[4] == 'f' && head[5] == 't' && head[6] == 'y' && head[7] == 'p') {
+            return read >= 10 && head[8] == 'q' && head[9] == 't' ? "video/quicktime" : "video/mp4";
+        }
+        if (startsWith(head, 0x00, 0x00, 0x01) && ((head[3] & 0xFF) == 0xBA || (head[3] & 0xFF) == 0xB3)) {
+            return "video/mpeg";
+        }
+        if (startsWith(head, 'M', 'Z') || startsWith(head, 0x7F, 'E', 'L', 'F') || startsWith(head, '%', 'P', 'D', 'F')) {
+            return "application/octet-stream";
+        }
+        return null;
+    }
+
+    private static boolean sameFamily(String sniffedType, String declaredType) {
+        return family(sniffedType).equals(family(declaredType));
+    }
+
+    private static String family(String type) {
+        int slash = type.indexOf('/');
+        return slash < 0 ? type : type.substring(0, slash);
+    }
+
+    private static boolean startsWith(byte[] head, int... prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if ((head[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public static class UploadedFile {
+        private final String url;
+        private final String secureUrl;
+        private final String contentType;
+        private final String sha256;
+        private final long size;
+
+        UploadedFile(String url, String secureUrl, String contentType, String sha256, long size) {
+            this.url = url;
+            this.secureUrl = secureUrl;
+            this.contentType = contentType;
+            this.sha256 = sha256;
+            this.size = size;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getSecureUrl() {
+            return secureUrl;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+}
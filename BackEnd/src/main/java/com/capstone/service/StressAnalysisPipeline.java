@@ -0,0 +1,217 @@
+package com.capstone.service;
+
+import com.capstone.configuration.StressPipelineProperties;
+import com.capstone.dto.response.StressJobResponse;
+import com.capstone.dto.response.StressPipelineMetricsResponse;
+import com.capstone.entity.StressAnalysis;
+import com.capstone.entity.User;
+import com.capstone.enums.StressJobStatus;
+import com.capstone.exception.AppException;
+import com.capstone.exception.ErrorCode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs facial stress analysis off the servlet thread. Submissions are queued on a bounded
+ * worker pool (full queue = immediate rejection), and each result is pushed to the submitting
+ * user on {@code /queue/notifications}. Jobs can also be polled by id until they expire.
+ */
+@Slf4j
+@Service
+public class StressAnalysisPipeline {
+    private final RekognitionService rekognitionService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final StressPipelineProperties properties;
+    private final StressScoreCache stressScoreCache;
+    private final ThreadPoolExecutor executor;
+
+    private final Map<String, StressJob> jobs = new ConcurrentHashMap<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalQueueWaitMillis = new LongAdder();
+    private final LongAdder totalProcessingMillis = new LongAdder();
+    private final AtomicLong maxProcessingMillis = new AtomicLong();
+
+    public StressAnalysisPipeline(RekognitionService rekognitionService,
+                                  SimpMessagingTemplate messagingTemplate,
+                                  StressPipelineProperties properties,
+                                  StressScoreCache stressScoreCache) {
+        this.rekognitionService = rekognitionService;
+        this.messagingTemplate = messagingTemplate;
+        this.properties = properties;
+        this.stressScoreCache = stressScoreCache;
+        this.executor = new ThreadPoolExecutor(
+                properties.getConcurrency(),
+                properties.getConcurrency(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                workerThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public StressJobResponse submit(User user, byte[] imageBytes) {
+        StressJob job = new StressJob(UUID.randomUUID().toString(), user.getUsername());
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> process(job, user, imageBytes));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            rejected.increment();
+            log.warn("Stress analysis queue full ({} waiting), rejecting job for {}",
+                    executor.getQueue().size(), user.getUsername());
+            throw new AppException(ErrorCode.STRESS_QUEUE_FULL);
+        }
+        submitted.increment();
+        return job.toResponse();
+    }
+
+    public StressJobResponse getJob(String jobId, String username) {
+        StressJob job = jobs.get(jobId);
+        if (job == null || !job.username.equals(username)) {
+            throw new AppException(ErrorCode.STRESS_JOB_NOT_FOUND);
+        }
+        return job.toResponse();
+    }
+
+    public StressPipelineMetricsResponse getMetrics() {
+        long finished = completed.sum() + failed.sum();
+        return StressPipelineMetricsResponse.builder()
+                .queueDepth(executor.getQueue().size())
+                .queueCapacity(properties.getQueueCapacity())
+                .activeWorkers(executor.getActiveCount())
+                .concurrency(properties.getConcurrency())
+                .submitted(submitted.sum())
+                .completed(completed.sum())
+                .failed(failed.sum())
+                .rejected(rejected.sum())
+                .averageQueueWaitMillis(finished == 0 ? 0.0 : (double) totalQueueWaitMillis.sum() / finished)
+                .averageProcessingMillis(finished == 0 ? 0.0 : (double) totalProcessingMillis.sum() / finished)
+                .maxProcessingMillis(maxProcessingMillis.get())
+                .cacheHits(stressScoreCache.getHits())
+                .cacheMisses(stressScoreCache.getMisses())
+                .cacheSize(stressScoreCache.size())
+                .build();
+    }
+
+    private void process(StressJob job, User user, byte[] imageBytes) {
+        long startedAt = System.currentTimeMillis();
+        totalQueueWaitMillis.add(startedAt - job.submittedAtMillis);
+        job.status = StressJobStatus.PROCESSING;
+
+        try {
+            OptionalDouble avgScore = rekognitionService.analyzeImage(imageBytes);
+            if (avgScore.isEmpty()) {
+                job.stressLevel = RekognitionService.NO_FACE_DETECTED;
+                job.status = StressJobStatus.NO_FACE;
+            } else {
+                StressAnalysis analysis = rekognitionService.recordAnalysis(user, avgScore.getAsDouble());
+                job.stressScore = analysis.getStressScore();
+                job.stressLevel = analysis.getStressLevel();
+                job.status = StressJobStatus.COMPLETED;
+            }
+            completed.increment();
+        } catch (Exception e) {
+            log.error("Stress analysis job {} failed: {}", job.id, e.getMessage());
+            job.error = "Error analyzing stress.";
+            job.status = StressJobStatus.FAILED;
+            failed.increment();
+        } finally {
+            long processingMillis = System.currentTimeMillis() - startedAt;
+            totalProcessingMillis.add(processingMillis);
+            maxProcessingMillis.accumulateAndGet(processingMillis, Math::max);
+            job.completedAt = LocalDateTime.now();
+            sendResultNotification(job);
+        }
+    }
+
+    private void sendResultNotification(StressJob job) {
+        try {
+            Map<String, Object> notification = new HashMap<>();
+            notification.put("type", job.status == StressJobStatus.FAILED
+                    ? "STRESS_ANALYSIS_FAILED" : "STRESS_ANALYSIS_COMPLETED");
+            notification.put("jobId", job.id);
+            notification.put("status", job.status.name());
+            notification.put("stressLevel", job.stressLevel);
+            notification.put("stressScore", job.stressScore);
+            notification.put("timestamp", job.completedAt.toString());
+
+            messagingTemplate.convertAndSendToUser(
+                job.username,
+                "/queue/notifications",
+                notification
+            );
+        } catch (Exception e) {
+            log.error("Failed to send stress analysis result to {}: {}", job.username, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void purgeExpiredJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(properties.getJobRetentionMinutes());
+        jobs.values().removeIf(job -> job.completedAt != null && job.completedAt.isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static ThreadFactory workerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "stress-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class StressJob {
+        final String id;
+        final String username;
+        final long submittedAtMillis = System.currentTimeMillis();
+        final LocalDateTime submittedAt = LocalDateTime.now();
+        volatile StressJobStatus status = StressJobStatus.QUEUED;
+        volatile String stressLevel;
+        volatile Double stressScore;
+        volatile String error;
+        volatile LocalDateTime completedAt;
+
+        StressJob(String id, String username) {
+            this.id = id;
+            this.username = username;
+        }
+
+        StressJobResponse toResponse() {
+            return StressJobResponse.builder()
+                    .jobId(id)
+                    .status(status)
+                    .stressLevel(stressLevel)
+                    .stressScore(stressScore)
+                    .error(error)
+                    .submittedAt(submittedAt)
+                    .completedAt(completedAt)
+                    .build();
+        }
+    }
+}
@@ -2,10 +2,12 @@ package com.capstone.service;
 
 import com.capstone.entity.*;
 import com.capstone.repository.*;
+import com.capstone.util.StressCalendar;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -15,11 +17,101 @@ public class StressReportService {
     private final WeeklyStressReportRepository weeklyStressReportRepository;
     private final MonthlyStressReportRepository monthlyStressReportRepository;
     private final StressAnalysisRepository stressAnalysisRepository;
+    private final DailyStressRollupRepository dailyStressRollupRepository;
 
+    /**
+     * Saves a new analysis and folds it into the daily rollup and the weekly and monthly reports
+     * in the same transaction, under the user's rollup lock, so a concurrent rollup rebuild
+     * either sees the analysis or runs before it is counted.
+     */
     @Transactional
-    public void updateReports(StressAnalysis newAnalysis) {
-        updateWeeklyReport(newAnalysis);
-        updateMonthlyReport(newAnalysis);
+    public StressAnalysis saveAnalysis(StressAnalysis analysis) {
+        stressAnalysisRepository.save(analysis);
+        dailyStressRollupRepository.lockUser(analysis.getUser().getId());
+        updateDailyRollup(analysis);
+        updateWeeklyReport(analysis);
+        updateMonthlyReport(analysis);
+        return analysis;
+    }
+
+    private void updateDailyRollup(StressAnalysis analysis) {
+        // Phân tích đầu tiên trong ngày tạo bucket mới, các lần sau cộng dồn vào bucket đó
+        dailyStressRollupRepository.accumulate(UUID.randomUUID().toString(),
+                analysis.getUser().getId(), StressCalendar.dayOf(analysis.getCreatedAt()),
+                analysis.getStressScore(), analysis.getCreatedAt());
+    }
+
+    /**
+     * Returns the user's daily rollups, most recent day first. History that predates the rollup
+     * table is filled in once on startup by {@link #rebuildDailyRollups(String)}; afterwards the
+     * buckets are kept current by {@link #saveAnalysis(StressAnalysis)}.
+     */
+    @Transactional(readOnly = true)
+    public List<DailyStressRollup> getDailyRollups(User user) {
+        return dailyStressRollupRepository.findByUserOrderByBucketDateDesc(user);
+    }
+
+    /**
+     * Ids of users whose rollups do not reach back to their first analysis.
+     */
+    @Transactional(readOnly = true)
+    public List<String> findUsersWithoutDailyRollups() {
+        Map<String, Date> rolledUpSince = new HashMap<>();
+        for (Object[] row : dailyStressRollupRepository.findEarliestAnalysisPerUser()) {
+            rolledUpSince.put((String) row[0], (Date) row[1]);
+        }
+        List<String> userIds = new ArrayList<>();
+        for (Object[] row : stressAnalysisRepository.findEarliestAnalysisPerUser()) {
+            Date since = rolledUpSince.get((String) row[0]);
+            if (since == null || since.after((Date) row[1])) {
+                userIds.add((String) row[0]);
+            }
+        }
+        return userIds;
+    }
+
+    /**
+     * Recomputes a user's daily rollups from {@code stress_analysis} unless they already cover
+     * every analysis. Holds the user's rollup lock, so analyses saved meanwhile are counted
+     * exactly once. Returns whether the rollups were rebuilt.
+     */
+    @Transactional
+    public boolean rebuildDailyRollups(String userId) {
+        dailyStressRollupRepository.lockUser(userId);
+        List<StressAnalysis> analyses = stressAnalysisRepository.findByUserId(userId);
+        Date rolledUpSince = dailyStressRollupRepository.findEarliestAnalysisAt(userId);
+        boolean covered = rolledUpSince != null && analyses.stream()
+                .noneMatch(analysis -> analysis.getCreatedAt().before(rolledUpSince));
+        if (analyses.isEmpty() || covered) {
+            return false;
+        }
+
+        dailyStressRollupRepository.deleteAllByUserId(userId);
+        Map<LocalDate, DailyStressRollup> buckets = new HashMap<>();
+        for (StressAnalysis analysis : analyses) {
+            double score = analysis.getStressScore();
+            Date createdAt = analysis.getCreatedAt();
+            DailyStressRollup bucket = buckets.computeIfAbsent(StressCalendar.dayOf(createdAt), day -> DailyStressRollup.builder()
+                    .user(analysis.getUser())
+                    .bucketDate(day)
+                    .minStressScore(score)
+                    .maxStressScore(score)
+                    .firstAnalysisAt(createdAt)
+                    .lastAnalysisAt(createdAt)
+                    .build());
+            bucket.setTotalAnalyses(bucket.getTotalAnalyses() + 1);
+            bucket.setTotalStressScore(bucket.getTotalStressScore() + score);
+            bucket.setMinStressScore(Math.min(bucket.getMinStressScore(), score));
+            bucket.setMaxStressScore(Math.max(bucket.getMaxStressScore(), score));
+            if (createdAt.before(bucket.getFirstAnalysisAt())) {
+                bucket.setFirstAnalysisAt(createdAt);
+            }
+            if (createdAt.after(bucket.getLastAnalysisAt())) {
+                bucket.setLastAnalysisAt(createdAt);
+            }
+        }
+        dailyStressRollupRepository.saveAll(buckets.values());
+        return true;
     }
 
     private void updateWeeklyReport(StressAnalysis analysis) {
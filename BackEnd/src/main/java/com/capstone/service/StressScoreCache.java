@@ -0,0 +1,101 @@
+package com.capstone.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of face-detection results keyed by the SHA-256 of the image bytes, so that
+ * re-uploads of the same picture (client retries, chat photos) skip the Rekognition round trip.
+ * Entries expire after {@code stress.cache.ttl-minutes}; "no face" results are cached as well.
+ */
+@Slf4j
+@Component
+public class StressScoreCache {
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Map<String, CachedScore> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public StressScoreCache(@Value("${stress.cache.max-entries:1000}") int maxEntries,
+                            @Value("${stress.cache.ttl-minutes:60}") long ttlMinutes) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMinutes * 60_000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedScore> eldest) {
+                return size() > StressScoreCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached score for these image bytes, or computes it with {@code loader} and
+     * caches the result. The loader runs outside the cache lock.
+     */
+    public OptionalDouble getOrCompute(byte[] imageBytes, Supplier<OptionalDouble> loader) {
+        String key = digest(imageBytes);
+        long now = System.currentTimeMillis();
+
+        synchronized (entries) {
+            CachedScore cached = entries.get(key);
+            if (cached != null) {
+                if (cached.expiresAt > now) {
+                    hits.increment();
+                    return cached.score;
+                }
+                entries.remove(key);
+            }
+        }
+
+        misses.increment();
+        OptionalDouble score = loader.get();
+        synchronized (entries) {
+            entries.put(key, new CachedScore(score, now + ttlMillis));
+        }
+        return score;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static String digest(byte[] imageBytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(imageBytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static class CachedScore {
+        final OptionalDouble score;
+        final long expiresAt;
+
+        CachedScore(OptionalDouble score, long expiresAt) {
+            this.score = score;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.capstone.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.rekognition.model.Emotion;
+import software.amazon.awssdk.services.rekognition.model.EmotionName;
+import software.amazon.awssdk.services.rekognition.model.EyeOpen;
+import software.amazon.awssdk.services.rekognition.model.FaceDetail;
+import software.amazon.awssdk.services.rekognition.model.Landmark;
+import software.amazon.awssdk.services.rekognition.model.MouthOpen;
+import software.amazon.awssdk.services.rekognition.model.Pose;
+
+import java.util.List;
+
+/**
+ * Stress scoring rules for a single detected face. Emotion weights and frown bonuses are
+ * looked up by {@link EmotionName} ordinal, the emotion and landmark lists are each scanned
+ * once, and nothing is allocated or logged per face, so the engine can be called on every
+ * detection (see the JMH benchmark module under {@code benchmarks/}).
+ *
+ * <p>Rules: negative emotions add {@code confidence * 1.0}, confused/surprised add
+ * {@code * 0.5}, calm/happy add {@code * -0.3}; closed eyes +10, open mouth +5, head tilt
+ * over 20 degrees +5; frowning (brows within 0.03 of the eyes) +10 and +5 per confident
+ * disgusted/confused emotion. The result is clamped to [0, 100].
+ */
+@Component
+public class StressScoringEngine {
+    private static final int EMOTION_COUNT = EmotionName.values().length;
+    private static final double[] EMOTION_WEIGHTS = new double[EMOTION_COUNT];
+    private static final double[] FROWN_BONUS = new double[EMOTION_COUNT];
+
+    static {
+        EMOTION_WEIGHTS[EmotionName.ANGRY.ordinal()] = 1.0;
+        EMOTION_WEIGHTS[EmotionName.FEAR.ordinal()] = 1.0;
+        EMOTION_WEIGHTS[EmotionName.DISGUSTED.ordinal()] = 1.0;
+        EMOTION_WEIGHTS[EmotionName.SAD.ordinal()] = 1.0;
+        EMOTION_WEIGHTS[EmotionName.CONFUSED.ordinal()] = 0.5;
+        EMOTION_WEIGHTS[EmotionName.SURPRISED.ordinal()] = 0.5;
+        EMOTION_WEIGHTS[EmotionName.CALM.ordinal()] = -0.3;
+        EMOTION_WEIGHTS[EmotionName.HAPPY.ordinal()] = -0.3;
+
+        FROWN_BONUS[EmotionName.DISGUSTED.ordinal()] = 5.0;
+        FROWN_BONUS[EmotionName.CONFUSED.ordinal()] = 5.0;
+    }
+
+    private static final double EYES_CLOSED_SCORE = 10.0;
+    private static final double MOUTH_OPEN_SCORE = 5.0;
+    private static final double HEAD_TILT_SCORE = 5.0;
+    private static final float HEAD_TILT_DEGREES = 20f;
+    private static final double BROW_FROWN_SCORE = 10.0;
+    private static final double BROW_FROWN_DISTANCE = 0.03;
+
+    private final float confidenceThreshold;
+
+    public StressScoringEngine(@Value("${stress.confidence.threshold:50}") float confidenceThreshold) {
+        this.confidenceThreshold = confidenceThreshold;
+    }
+
+    public double score(FaceDetail face) {
+        double score = 0.0;
+        double frownScore = 0.0;
+
+        List<Emotion> emotions = face.emotions();
+        for (int i = 0, n = emotions.size(); i < n; i++) {
+            Emotion emotion = emotions.get(i);
+            Float confidence = emotion.confidence();
+            EmotionName type = emotion.type();
+            if (confidence == null || type == null || confidence < confidenceThreshold) {
+                continue;
+            }
+            int ordinal = type.ordinal();
+            score += confidence * EMOTION_WEIGHTS[ordinal];
+            frownScore += FROWN_BONUS[ordinal];
+        }
+
+        float leftBrowY = 0, rightBrowY = 0, leftEyeY = 0, rightEyeY = 0;
+        List<Landmark> landmarks = face.landmarks();
+        for (int i = 0, n = landmarks.size(); i < n; i++) {
+            Landmark landmark = landmarks.get(i);
+            if (landmark.type() == null || landmark.y() == null) {
+                continue;
+            }
+            switch (landmark.type()) {
+                case LEFT_EYE_BROW_UP -> leftBrowY = landmark.y();
+                case RIGHT_EYE_BROW_UP -> rightBrowY = landmark.y();
+                case LEFT_EYE_UP -> leftEyeY = landmark.y();
+                case RIGHT_EYE_UP -> rightEyeY = landmark.y();
+                default -> { }
+            }
+        }
+
+        Pose pose = face.pose();
+        score += physicalScore(
+                isFalse(face.eyesOpen()),
+                isTrue(face.mouthOpen()),
+                pose == null || pose.pitch() == null ? 0f : pose.pitch(),
+                pose == null || pose.roll() == null ? 0f : pose.roll());
+        score += frownScore + browFrownScore(leftBrowY, rightBrowY, leftEyeY, rightEyeY);
+
+        return clamp(score);
+    }
+
+    /**
+     * Primitive form of {@link #score(FaceDetail)} for callers that already hold the face
+     * attributes in arrays; {@code emotionOrdinals} are {@link EmotionName} ordinals.
+     */
+    public double score(int[] emotionOrdinals, float[] confidences, int emotionCount,
+                        boolean eyesClosed, boolean mouthOpen, float pitch, float roll,
+                        float leftBrowY, float rightBrowY, float leftEyeY, float rightEyeY) {
+        double score = 0.0;
+        double frownScore = 0.0;
+        for (int i = 0; i < emotionCount; i++) {
+            float confidence = confidences[i];
+            if (confidence < confidenceThreshold) {
+                continue;
+            }
+            int ordinal = emotionOrdinals[i];
+            score += confidence * EMOTION_WEIGHTS[ordinal];
+            frownScore += FROWN_BONUS[ordinal];
+        }
+        score += physicalScore(eyesClosed, mouthOpen, pitch, roll);
+        score += frownScore + browFrownScore(leftBrowY, rightBrowY, leftEyeY, rightEyeY);
+        return clamp(score);
+    }
+
+    private static double physicalScore(boolean eyesClosed, boolean mouthOpen, float pitch, float roll) {
+        double score = 0.0;
+        if (eyesClosed) {
+            score += EYES_CLOSED_SCORE;
+        }
+        if (mouthOpen) {
+            score += MOUTH_OPEN_SCORE;
+        }
+        if (Math.abs(pitch) > HEAD_TILT_DEGREES || Math.abs(roll) > HEAD_TILT_DEGREES) {
+            score += HEAD_TILT_SCORE;
+        }
+        return score;
+    }
+
+    private static double browFrownScore(float leftBrowY, float rightBrowY, float leftEyeY, float rightEyeY) {
+        float leftDistance = leftEyeY - leftBrowY;
+        float rightDistance = rightEyeY - rightBrowY;
+        return leftDistance < BROW_FROWN_DISTANCE && rightDistance < BROW_FROWN_DISTANCE ? BROW_FROWN_SCORE : 0.0;
+    }
+
+    private static double clamp(double score) {
+        return Math.min(Math.max(score, 0), 100);
+    }
+
+    private static boolean isFalse(EyeOpen eyesOpen) {
+        return eyesOpen != null && Boolean.FALSE.equals(eyesOpen.value());
+    }
+
+    private static boolean isTrue(MouthOpen mouthOpen) {
+        return mouthOpen != null && Boolean.TRUE.equals(mouthOpen.value());
+    }
+}
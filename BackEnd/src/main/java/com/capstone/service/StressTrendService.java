@@ -2,50 +2,80 @@ package com.capstone.service;
 
 import com.capstone.dto.response.StressTrendResponse;
 import com.capstone.dto.response.StressTrendResponse.StressPeriodData;
-import com.capstone.entity.StressAnalysis;
 import com.capstone.entity.User;
 import com.capstone.exception.AppException;
 import com.capstone.exception.ErrorCode;
 import com.capstone.repository.StressAnalysisRepository;
-import com.capstone.repository.UserRepository;
+import com.capstone.util.StressCalendar;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.*;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class StressTrendService {
     private final StressAnalysisRepository stressAnalysisRepository;
-    private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
     private final RekognitionService rekognitionService;
 
     private static final double CONCERNING_THRESHOLD = 10.0; // 10% increase is concerning
     private static final double STABLE_THRESHOLD = 5.0; // less than 5% change is considered stable
-    private static final ZoneId VIETNAM_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
-
-    public StressTrendResponse analyzeTrend(String period, int duration) {
-        // Get current user's stress analyses
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
-
-        List<StressAnalysis> analyses = stressAnalysisRepository.findByUserOrderByCreatedAtDesc(user);
-        if (analyses.isEmpty()) {
-            return createEmptyTrendResponse();
+    private static final int MAX_DURATION = 366; // at most one year of daily periods
+
+    /**
+     * Aggregates the user's scores for the last {@code duration} calendar periods (day, week or
+     * month) in a single streaming pass. Only analyses inside that window are read, each one is
+     * folded into fixed-size sum/count/min/max accumulators, and periods without data are left
+     * out of the result. When {@code ewmaAlpha} is given, every period also carries an
+     * exponentially weighted moving average of the period averages, oldest to newest.
+     */
+    @Transactional(readOnly = true)
+    public StressTrendResponse analyzeTrend(String period, int duration, Double ewmaAlpha) {
+        if (duration < 1 || duration > MAX_DURATION) {
+            throw new AppException(ErrorCode.INVALID_PARAM, "duration must be between 1 and " + MAX_DURATION);
+        }
+        if (ewmaAlpha != null && (ewmaAlpha <= 0 || ewmaAlpha > 1)) {
+            throw new AppException(ErrorCode.INVALID_PARAM, "alpha must be in (0, 1]");
         }
 
-        // Group analyses by period
-        Map<LocalDate, List<StressAnalysis>> groupedAnalyses = groupAnalysesByPeriod(analyses, period);
-        if (groupedAnalyses.isEmpty()) {
-            return createEmptyTrendResponse();
+        // Get current user's stress analyses
+        User user = currentUserResolver.getCurrentUser();
+
+        PeriodUnit unit = PeriodUnit.of(period);
+        LocalDate currentPeriodStart = unit.periodStart(StressCalendar.today());
+        LocalDate windowStart = unit.minus(currentPeriodStart, duration - 1);
+        LocalDate windowEnd = unit.minus(currentPeriodStart, -1);
+
+        double[] sums = new double[duration];
+        int[] counts = new int[duration];
+        double[] mins = new double[duration];
+        double[] maxs = new double[duration];
+        Arrays.fill(mins, Double.MAX_VALUE);
+        Arrays.fill(maxs, -Double.MAX_VALUE);
+
+        try (Stream<StressAnalysisRepository.ScoreSample> samples = stressAnalysisRepository.streamScores(
+                user, toDate(windowStart), toDate(windowEnd))) {
+            samples.forEach(sample -> {
+                LocalDate day = StressCalendar.dayOf(sample.getCreatedAt());
+                int index = (int) unit.between(windowStart, unit.periodStart(day));
+                if (index < 0 || index >= duration) {
+                    return;
+                }
+                double score = sample.getStressScore();
+                sums[index] += score;
+                counts[index]++;
+                mins[index] = Math.min(mins[index], score);
+                maxs[index] = Math.max(maxs[index], score);
+            });
         }
 
         // Calculate trend data
-        List<StressPeriodData> trendData = calculateTrendData(groupedAnalyses, duration);
+        List<StressPeriodData> trendData = calculateTrendData(unit, windowStart, sums, counts, mins, maxs, ewmaAlpha);
         if (trendData.isEmpty()) {
             return createEmptyTrendResponse();
         }
@@ -54,46 +84,31 @@ public class StressTrendService {
         return calculateTrendStatistics(trendData);
     }
 
-    private Map<LocalDate, List<StressAnalysis>> groupAnalysesByPeriod(List<StressAnalysis> analyses, String period) {
-        return analyses.stream()
-                .collect(Collectors.groupingBy(analysis -> {
-                    LocalDateTime dateTime = LocalDateTime.ofInstant(
-                            analysis.getCreatedAt().toInstant(),
-                            VIETNAM_ZONE
-                    );
-
-                    return switch (period.toLowerCase()) {
-                        case "week" -> dateTime.toLocalDate().with(DayOfWeek.MONDAY);
-                        case "month" -> dateTime.toLocalDate().withDayOfMonth(1);
-                        default -> // "day"
-                                dateTime.toLocalDate();
-                    };
-                }));
-    }
-
-    private List<StressPeriodData> calculateTrendData(
-            Map<LocalDate, List<StressAnalysis>> groupedAnalyses,
-            int duration
-    ) {
-        List<LocalDate> sortedDates = new ArrayList<>(groupedAnalyses.keySet());
-        sortedDates.sort(Collections.reverseOrder()); // Most recent first
-
-        // Take only the specified duration
-        if (sortedDates.size() > duration) {
-            sortedDates = sortedDates.subList(0, duration);
+    private List<StressPeriodData> calculateTrendData(PeriodUnit unit, LocalDate windowStart,
+                                                      double[] sums, int[] counts, double[] mins, double[] maxs,
+                                                      Double ewmaAlpha) {
+        // EWMA runs oldest -> newest over the periods that have data
+        Double[] smoothed = new Double[counts.length];
+        if (ewmaAlpha != null) {
+            Double ewma = null;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    continue;
+                }
+                double average = sums[i] / counts[i];
+                ewma = ewma == null ? average : ewmaAlpha * average + (1 - ewmaAlpha) * ewma;
+                smoothed[i] = ewma;
+            }
         }
 
         List<StressPeriodData> trendData = new ArrayList<>();
         Double previousAverage = null;
 
-        for (LocalDate date : sortedDates) {
-            List<StressAnalysis> periodAnalyses = groupedAnalyses.get(date);
-            
-            // Calculate average stress score for the period
-            double averageStress = periodAnalyses.stream()
-                    .mapToDouble(StressAnalysis::getStressScore)
-                    .average()
-                    .orElse(0.0);
+        for (int i = counts.length - 1; i >= 0; i--) { // Most recent first
+            if (counts[i] == 0) {
+                continue;
+            }
+            double averageStress = sums[i] / counts[i];
 
             // Calculate change from previous period
             double changeFromPrevious = 0.0;
@@ -103,10 +118,13 @@ public class StressTrendService {
 
             // Create period data
             trendData.add(StressPeriodData.builder()
-                    .date(Date.from(date.atStartOfDay(VIETNAM_ZONE).toInstant()))
+                    .date(toDate(unit.minus(windowStart, -i)))
                     .average_stress_score(averageStress)
                     .dominant_stress_level(rekognitionService.mapStressScoreToLevel(averageStress))
-                    .total_analyses(periodAnalyses.size())
+                    .total_analyses(counts[i])
+                    .min_stress_score(mins[i])
+                    .max_stress_score(maxs[i])
+                    .smoothed_stress_score(smoothed[i])
                     .change_from_previous(changeFromPrevious)
                     .build());
 
@@ -116,6 +134,46 @@ public class StressTrendService {
         return trendData;
     }
 
+    private static Date toDate(LocalDate date) {
+        return StressCalendar.startOf(date);
+    }
+
+    private enum PeriodUnit {
+        DAY, WEEK, MONTH;
+
+        static PeriodUnit of(String period) {
+            return switch (period.toLowerCase()) {
+                case "week" -> WEEK;
+                case "month" -> MONTH;
+                default -> DAY; // "day"
+            };
+        }
+
+        LocalDate periodStart(LocalDate date) {
+            return switch (this) {
+                case WEEK -> date.with(DayOfWeek.MONDAY);
+                case MONTH -> date.withDayOfMonth(1);
+                case DAY -> date;
+            };
+        }
+
+        LocalDate minus(LocalDate periodStart, long periods) {
+            return switch (this) {
+                case WEEK -> periodStart.minusWeeks(periods);
+                case MONTH -> periodStart.minusMonths(periods);
+                case DAY -> periodStart.minusDays(periods);
+            };
+        }
+
+        long between(LocalDate fromPeriodStart, LocalDate toPeriodStart) {
+            return switch (this) {
+                case WEEK -> ChronoUnit.WEEKS.between(fromPeriodStart, toPeriodStart);
+                case MONTH -> ChronoUnit.MONTHS.between(fromPeriodStart, toPeriodStart);
+                case DAY -> ChronoUnit.DAYS.between(fromPeriodStart, toPeriodStart);
+            };
+        }
+    }
+
     private StressTrendResponse calculateTrendStatistics(List<StressPeriodData> trendData) {
         // Get current and previous period data
         StressPeriodData currentPeriod = trendData.get(0);
@@ -142,7 +200,8 @@ public class StressTrendService {
         // Build response
         return StressTrendResponse.builder()
                 .current_average_stress(currentPeriod.getAverage_stress_score())
-                .previous_average_stress(previousPeriod.getAverage_stress_score())                .stress_change_percentage(changePercentage)
+                .previous_average_stress(previousPeriod.getAverage_stress_score())
+                .stress_change_percentage(changePercentage)
                 .trend_direction(trendDirection)
                 .is_concerning(isConcerning)
                 .trend_data(trendData)
@@ -173,7 +232,7 @@ public class StressTrendService {
     }
 
     private StressTrendResponse createEmptyTrendResponse() {
-        Date now = Date.from(LocalDateTime.now(VIETNAM_ZONE).toInstant(null));
+        Date now = new Date();
         return StressTrendResponse.builder()
                 .current_average_stress(0)
                 .previous_average_stress(0)
@@ -0,0 +1,43 @@
+package com.capstone.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.rekognition.model.BoundingBox;
+import software.amazon.awssdk.services.rekognition.model.Emotion;
+import software.amazon.awssdk.services.rekognition.model.EmotionName;
+import software.amazon.awssdk.services.rekognition.model.EyeOpen;
+import software.amazon.awssdk.services.rekognition.model.FaceDetail;
+import software.amazon.awssdk.services.rekognition.model.MouthOpen;
+import software.amazon.awssdk.services.rekognition.model.Pose;
+
+import java.util.List;
+
+/**
+ * Local stand-in for Rekognition used in development and load tests: every non-empty image
+ * yields one calm, front-facing face. Enabled with {@code stress.detector=stub}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stress.detector", havingValue = "stub")
+public class StubFaceDetectionClient implements FaceDetectionClient {
+    private static final FaceDetail STUB_FACE = FaceDetail.builder()
+            .boundingBox(BoundingBox.builder().left(0.25f).top(0.25f).width(0.5f).height(0.5f).build())
+            .emotions(
+                    Emotion.builder().type(EmotionName.CALM).confidence(80f).build(),
+                    Emotion.builder().type(EmotionName.CONFUSED).confidence(55f).build())
+            .eyesOpen(EyeOpen.builder().value(true).confidence(99f).build())
+            .mouthOpen(MouthOpen.builder().value(false).confidence(99f).build())
+            .pose(Pose.builder().pitch(0f).roll(0f).yaw(0f).build())
+            .landmarks(List.of())
+            .build();
+
+    @Override
+    public List<FaceDetail> detectFaces(byte[] imageBytes) {
+        if (imageBytes == null || imageBytes.length == 0) {
+            return List.of();
+        }
+        log.debug("Stub face detection for {} bytes", imageBytes.length);
+        return List.of(STUB_FACE);
+    }
+}
@@ -0,0 +1,79 @@
+package com.capstone.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Local stand-in for the face collection used in development and tests: the "face" of an
+ * image is its 64-bit average hash, and similarity is the share of matching bits, so the same
+ * photo re-encoded or slightly resized still matches. Enabled with {@code face-login.matcher=stub}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "face-login.matcher", havingValue = "stub")
+public class StubFaceMatcher implements FaceMatcher {
+
+    @Override
+    public String name() {
+        return "stub";
+    }
+
+    @Override
+    public String enroll(String userId, byte[] imageBytes) {
+        Long hash = averageHash(imageBytes);
+        return hash == null ? null : Long.toHexString(hash);
+    }
+
+    @Override
+    public float match(String faceRef, byte[] probeImageBytes) {
+        Long probe = averageHash(probeImageBytes);
+        if (probe == null) {
+            return 0F;
+        }
+        int differentBits = Long.bitCount(Long.parseUnsignedLong(faceRef, 16) ^ probe);
+        return 100F * (64 - differentBits) / 64;
+    }
+
+    @Override
+    public void remove(String faceRef) {
+    }
+
+    private static Long averageHash(byte[] imageBytes) {
+        BufferedImage image;
+        try {
+            image = imageBytes == null ? null : ImageIO.read(new ByteArrayInputStream(imageBytes));
+        } catch (IOException e) {
+            image = null;
+        }
+        if (image == null) {
+            log.debug("Stub face matcher could not decode image");
+            return null;
+        }
+
+        BufferedImage small = new BufferedImage(8, 8, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = small.createGraphics();
+        graphics.drawImage(image, 0, 0, 8, 8, null);
+        graphics.dispose();
+
+        int[] pixels = small.getRaster().getPixels(0, 0, 8, 8, new int[64]);
+        long sum = 0;
+        for (int pixel : pixels) {
+            sum += pixel;
+        }
+        long mean = sum / 64;
+        long hash = 0;
+        for (int i = 0; i < 64; i++) {
+            if (pixels[i] >= mean) {
+                hash |= 1L << i;
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,42 @@
+package com.capstone.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for SePay used in development and tests: transactions are added with
+ * {@link #addTransaction(String, double)} and served back like SePay does, newest first and
+ * cut at {@code limit}, with {@code since_id} filtering. Enabled with {@code sepay.client=stub}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "sepay.client", havingValue = "stub")
+public class StubSepayClient implements SepayClient {
+    private final List<Transaction> transactions = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    public Transaction addTransaction(String content, double amountIn) {
+        Transaction transaction = new Transaction(nextId.getAndIncrement(), content, amountIn);
+        transactions.add(transaction);
+        log.debug("Stub SePay transaction {}: {} ({} VND)", transaction.getId(), content, amountIn);
+        return transaction;
+    }
+
+    @Override
+    public List<Transaction> fetchTransactions(Long sinceId, int limit) {
+        List<Transaction> result = new ArrayList<>();
+        for (int i = transactions.size() - 1; i >= 0 && result.size() < limit; i--) {
+            Transaction transaction = transactions.get(i);
+            if (sinceId == null || transaction.getId() > sinceId) {
+                result.add(transaction);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,103 @@
+package com.capstone.service;
+
+import com.capstone.repository.AnswerRepository;
+import com.capstone.util.AfterCommit;
+import com.capstone.util.StressCalendar;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Running count and sum of each user's question answer stress scores for the current day. A
+ * user's totals are read once with one aggregate query and then advanced by every committed
+ * answer ({@link #record(String, double)}); entries of past days are dropped at midnight.
+ *
+ * <p>The query runs outside the map. Every recorded answer bumps the user's version, and a load
+ * that overlapped one is returned to its caller but not kept (it may or may not include the
+ * answer), so an answer is never counted twice or missed by the kept totals.
+ */
+@Component
+@RequiredArgsConstructor
+public class TodayStressAccumulator {
+    private final AnswerRepository answerRepository;
+
+    private final Map<String, DayTotals> totals = new ConcurrentHashMap<>();
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+
+    /**
+     * Average stress score of the user's answers today, or empty when there are none.
+     */
+    public OptionalDouble getAverage(String userId) {
+        LocalDate today = StressCalendar.today();
+        DayTotals current = totals.get(userId);
+        if (current == null || !current.day.equals(today)) {
+            current = load(userId, today, current);
+        }
+        return current.count == 0 ? OptionalDouble.empty() : OptionalDouble.of(current.total / current.count);
+    }
+
+    /**
+     * Adds an answer's score to the user's totals once the current transaction has committed.
+     */
+    public void record(String userId, double score) {
+        AfterCommit.run(() -> {
+            versions.merge(userId, 1L, Long::sum);
+            LocalDate today = StressCalendar.today();
+            totals.computeIfPresent(userId, (id, current) ->
+                    current.day.equals(today) ? current.plus(score) : current);
+        });
+    }
+
+    @Scheduled(cron = "0 0 0 * * *", zone = "Asia/Ho_Chi_Minh")
+    public void dropPreviousDays() {
+        LocalDate today = StressCalendar.today();
+        totals.values().removeIf(current -> !current.day.equals(today));
+    }
+
+    private DayTotals load(String userId, LocalDate day, DayTotals stale) {
+        long loading = versions.getOrDefault(userId, 0L);
+        DayTotals loaded = query(userId, day);
+        if (versions.getOrDefault(userId, 0L) != loading) {
+            return loaded;
+        }
+        boolean installed = stale == null
+                ? totals.putIfAbsent(userId, loaded) == null
+                : totals.replace(userId, stale, loaded);
+        if (installed && versions.getOrDefault(userId, 0L) != loading) {
+            // Câu trả lời đến giữa lúc kiểm tra và lúc lưu: bản vừa nạp (dù đã được cộng thêm) có thể sai -> bỏ
+            totals.remove(userId);
+        }
+        return loaded;
+    }
+
+    private DayTotals query(String userId, LocalDate day) {
+        List<Object[]> rows = answerRepository.sumScoresSince(List.of(userId), StressCalendar.localStartOf(day));
+        if (rows.isEmpty()) {
+            return new DayTotals(day, 0, 0.0);
+        }
+        Object[] row = rows.get(0);
+        return new DayTotals(day, ((Number) row[1]).longValue(), row[2] == null ? 0.0 : ((Number) row[2]).doubleValue());
+    }
+
+    private static final class DayTotals {
+        final LocalDate day;
+        final long count;
+        final double total;
+
+        DayTotals(LocalDate day, long count, double total) {
+            this.day = day;
+            this.count = count;
+            this.total = total;
+        }
+
+        DayTotals plus(double score) {
+            return new DayTotals(day, count + 1, total + score);
+        }
+    }
+}
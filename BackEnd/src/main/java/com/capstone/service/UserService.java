@@ -3,7 +3,9 @@ package com.capstone.service;
 import com.capstone.dto.request.UserChangePasswordRequest;
 import com.capstone.dto.request.UserCreationRequest;
 import com.capstone.dto.request.UserUpdateRequest;
+import com.capstone.dto.response.UserPageResponse;
 import com.capstone.dto.response.UserResponse;
+import com.capstone.dto.response.UserSummaryResponse;
 import com.capstone.entity.User;
 import com.capstone.enums.Role;
 import com.capstone.exception.AppException;
@@ -12,6 +14,9 @@ import com.capstone.mapper.UserMapper;
 import com.capstone.repository.RoleRepository;
 import com.capstone.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -24,16 +29,28 @@ import java.io.IOException;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 @RequiredArgsConstructor
 @Service
 public class UserService {
+    // Danh sách người dùng không gồm admin và bác sĩ (bác sĩ có danh sách riêng)
+    private static final List<String> LISTED_ROLES = List.of(Role.USER.name(), Role.TEACHER.name());
+    private static final Set<String> SORTABLE_FIELDS = Set.of("username", "firstName", "lastName", "birthdayDate");
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
     private final RoleRepository roleRepository;
     private final CloudinaryService cloudinaryService;
     private final EmailService emailService;
+    private final FaceEnrollmentService faceEnrollmentService;
+    private final RecommendationCatalog recommendationCatalog;
+    private final DoctorDirectory doctorDirectory;
     
     @PostConstruct
     public void initRoles() {
@@ -98,6 +115,11 @@ public class UserService {
         user.setAvtUrl(avtUrl);
         
         userRepository.save(user);
+
+        // Đăng ký khuôn mặt từ avatar một lần để đăng nhập bằng khuôn mặt không phải gửi lại ảnh gốc
+        if (avtFile != null && !avtFile.isEmpty()) {
+            faceEnrollmentService.enrollQuietly(user, avtFile.getBytes());
+        }
         
         // Send verification email
         emailService.sendVerificationEmail(user.getUsername(), verificationToken);
@@ -153,19 +175,37 @@ public class UserService {
     }
 
     public UserResponse getMyInfo(){
-        var context = SecurityContextHolder.getContext();
-        String name = context.getAuthentication().getName();
-
-        User user = userRepository.findByUsername(name).orElseThrow(
-                () -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User user = currentUserResolver.getCurrentUser();
 
         return userMapper.toUserResponse(user);
     }
     public List<UserResponse> getAllUser() {
-        return userRepository.findAll().stream()
-                .filter(user -> !user.getRole().getName().equals(Role.ADMIN.name()) 
-                                 && !user.getRole().getName().equals(Role.DOCTOR.name()))
-                .map(userMapper::toUserResponse).toList();
+        return listByRoles(LISTED_ROLES);
+    }
+
+    /**
+     * One page of users, optionally restricted to a single role. {@code sort} is a field name
+     * optionally followed by {@code ,asc} or {@code ,desc}; by default users are ordered by
+     * username.
+     */
+    public UserPageResponse getUserPage(String role, Integer page, Integer size, String sort) {
+        int pageNumber = page == null ? 0 : page;
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (pageNumber < 0 || pageSize <= 0) {
+            throw new AppException(ErrorCode.INVALID_PARAM, "page must be >= 0 and size must be > 0");
+        }
+        pageSize = Math.min(pageSize, MAX_PAGE_SIZE);
+
+        Page<UserSummaryResponse> result = userRepository.findSummariesByRoleNames(
+                role == null || role.isBlank() ? LISTED_ROLES : List.of(parseListedRole(role)),
+                PageRequest.of(pageNumber, pageSize, parseSort(sort)));
+        return UserPageResponse.builder()
+                .users(result.getContent())
+                .page(pageNumber)
+                .size(pageSize)
+                .totalElements(result.getTotalElements())
+                .totalPages(result.getTotalPages())
+                .build();
     }
     public UserResponse getUserById(String id) {
         User user = userRepository.findById(id).orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
@@ -177,10 +217,15 @@ public class UserService {
        user.setLastName(request.getLastName());
        user.setBirthdayDate(request.getBirthdayDate());
         userRepository.save(user);
+        currentUserResolver.evictUser(id);
+        doctorDirectory.invalidate();
 
     }
     public void deleteUser(String id) {
         userRepository.deleteById(id);
+        currentUserResolver.evictUser(id);
+        recommendationCatalog.invalidate();
+        doctorDirectory.invalidate();
     }
     public void changePassword(UserChangePasswordRequest request) {
         SecurityContext securityContext = SecurityContextHolder.getContext();
@@ -191,23 +236,54 @@ public class UserService {
             throw new AppException(ErrorCode.WRONG_PASSWORD);
         user.setPassword(passwordEncoder.encode(request.getNewPassword()));
         userRepository.save(user);
+        currentUserResolver.evictUser(user.getId());
     }
     public List<UserResponse> getAllDoctor() {
-        return userRepository.findAll().stream()
-                .filter(user -> user.getRole().getName().equals(Role.DOCTOR.name()))
-                .map(userMapper::toUserResponse).toList();
+        return doctorDirectory.getDoctors();
     }
     public List<UserResponse> getAllTeacher() {
-        return userRepository.findAll().stream()
-                .filter(user -> user.getRole().getName().equals(Role.TEACHER.name()))
+        return listByRoles(List.of(Role.TEACHER.name()));
+    }
+
+    private List<UserResponse> listByRoles(List<String> roleNames) {
+        return userRepository.findSummariesByRoleNames(roleNames).stream()
                 .map(userMapper::toUserResponse).toList();
     }
 
+    private static String parseListedRole(String role) {
+        String name = role.trim().toUpperCase(Locale.ROOT);
+        if (name.equals(Role.ADMIN.name())) {
+            throw new AppException(ErrorCode.INVALID_PARAM, "Admins are not listed");
+        }
+        for (Role value : Role.values()) {
+            if (value.name().equals(name)) {
+                return name;
+            }
+        }
+        throw new AppException(ErrorCode.ROLE_NOT_EXISTED);
+    }
+
+    private static Sort parseSort(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return Sort.by("username");
+        }
+        String[] parts = sort.split(",");
+        String field = parts[0].trim();
+        if (!SORTABLE_FIELDS.contains(field)) {
+            throw new AppException(ErrorCode.INVALID_PARAM, "Cannot sort users by " + field);
+        }
+        boolean descending = parts.length > 1 && parts[1].trim().equalsIgnoreCase("desc");
+        // Thêm id để thứ tự ổn định giữa các trang khi trùng giá trị
+        return Sort.by(descending ? Sort.Direction.DESC : Sort.Direction.ASC, field).and(Sort.by("id"));
+    }
+
     public void banUser(String userId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
         user.setBanned(true);
         userRepository.save(user);
+        currentUserResolver.evictUser(userId);
+        doctorDirectory.invalidate();
     }
 
     public void unbanUser(String userId) {
@@ -215,6 +291,8 @@ public class UserService {
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
         user.setBanned(false);
         userRepository.save(user);
+        currentUserResolver.evictUser(userId);
+        doctorDirectory.invalidate();
     }
 
     public User getUserByUsername(String username) {
@@ -1,25 +1,22 @@
 package com.capstone.service;
 
 import com.capstone.dto.response.VideoResponse;
-import com.capstone.entity.Answer;
 import com.capstone.entity.User;
 import com.capstone.entity.VideoRecommend;
 import com.capstone.enums.StressLevel;
 import com.capstone.exception.AppException;
 import com.capstone.exception.ErrorCode;
-import com.capstone.repository.AnswerRepository;
-import com.capstone.repository.UserRepository;
 import com.capstone.repository.VideoRecommendRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.OptionalDouble;
 import java.util.Set;
 
 @Slf4j
@@ -27,9 +24,10 @@ import java.util.Set;
 @RequiredArgsConstructor
 public class VideoRecommendService {
     private final VideoRecommendRepository videoRecommendRepository;
-    private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
     private final CloudinaryService cloudinaryService;
-    private final AnswerRepository answerRepository;
+    private final RecommendationCatalog recommendationCatalog;
+    private final TodayStressAccumulator todayStressAccumulator;
 
     // Định dạng file video được phép upload
     private static final Set<String> ALLOWED_VIDEO_FORMATS = Set.of(
@@ -52,13 +50,7 @@ public class VideoRecommendService {
     private double normalStressThreshold;
 
     public List<VideoResponse> getAllVideoRecommendations() {
-        List<VideoRecommend> videoRecommends = videoRecommendRepository.findAll();
-        return videoRecommends.stream()
-                .map(video -> VideoResponse.builder()
-                        .videoName(video.getVideoName())
-                        .videoUrl(video.getVideoUrl())
-                        .build())
-                .toList();
+        return recommendationCatalog.current().getVideos();
     }
     public VideoRecommend uploadVideoForStressLevel(MultipartFile videoFile, String videoName, String stressLevel) throws IOException {
         User currentUser = getCurrentUser();
@@ -86,26 +78,23 @@ public class VideoRecommendService {
                 .createdAt(LocalDateTime.now())
                 .build();
                 
-        return videoRecommendRepository.save(videoRecommend);
+        VideoRecommend saved = videoRecommendRepository.save(videoRecommend);
+        recommendationCatalog.invalidate();
+        return saved;
     }
 
     public List<VideoResponse> getVideoRecommendationsForUser() {
         User currentUser = getCurrentUser();
-        LocalDateTime startOfDay = LocalDateTime.now().toLocalDate().atStartOfDay();
         
-        // Get all answers for today
-        List<Answer> todayAnswers = answerRepository.findByUserAndCreatedAtAfter(currentUser, startOfDay);
+        // Điểm trung bình hôm nay lấy từ bộ cộng dồn, không quét bảng answers
+        OptionalDouble todayAverage = todayStressAccumulator.getAverage(currentUser.getId());
         
-        if (todayAnswers.isEmpty()) {
+        if (todayAverage.isEmpty()) {
             log.info("No answers found for user {} today", currentUser.getUsername());
             return List.of(); // Return empty list instead of null
         }
 
-        // Calculate average stress score
-        double averageStressScore = todayAnswers.stream()
-                .mapToDouble(Answer::getStressScore)
-                .average()
-                .orElse(0.0);
+        double averageStressScore = todayAverage.getAsDouble();
 
         // Convert average stress score to stress level based on configured thresholds
         String stressLevel;
@@ -125,24 +114,14 @@ public class VideoRecommendService {
 
         if(stressLevel.equals(StressLevel.MODERATE_STRESS.name())){
             log.info("User {} has high stress level: {}, returning all video recommendations", currentUser.getUsername(), stressLevel);
-            List<VideoRecommend> allVideos = videoRecommendRepository.findAll();
-            List<VideoResponse> allVideoResponse = allVideos.stream()
-                    .map(video -> VideoResponse.builder()
-                            .videoName(video.getVideoName())
-                            .videoUrl(video.getVideoUrl())
-                            .build())
-                    .toList();
-
-            return allVideoResponse;
+            return recommendationCatalog.current().getVideos();
         }
         else
             return null;
     }
     
     private User getCurrentUser() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        return userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        return currentUserResolver.getCurrentUser();
     }
 
     public void deleteVideo(String videoUrl) {
@@ -151,5 +130,6 @@ public class VideoRecommendService {
                 .orElseThrow(() -> new AppException(ErrorCode.VIDEO_NOT_FOUND));
         
         videoRecommendRepository.delete(video);
+        recommendationCatalog.invalidate();
     }
 } 
\ No newline at end of file
@@ -5,9 +5,12 @@ import com.capstone.dto.response.WithdrawalRequestResponse;
 import com.capstone.entity.DoctorUpgrade;
 import com.capstone.entity.User;
 import com.capstone.entity.WithdrawalRequest;
+import com.capstone.enums.LedgerAccount;
+import com.capstone.enums.LedgerEntryType;
+import com.capstone.exception.AppException;
 import com.capstone.repository.DoctorUpgradeRepository;
-import com.capstone.repository.UserRepository;
 import com.capstone.repository.WithdrawalRequestRepository;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -24,6 +27,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class WithdrawalRequestService {    @Autowired
     private WithdrawalRequestRepository withdrawalRequestRepository;
@@ -32,7 +36,7 @@ public class WithdrawalRequestService {    @Autowired
     private DoctorUpgradeRepository doctorUpgradeRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private BalanceLedgerService balanceLedgerService;
 
     @Autowired
     private FileUploadService fileUploadService;
@@ -53,14 +57,6 @@ public class WithdrawalRequestService {    @Autowired
             .findByDoctorAndStatus(doctor, WithdrawalRequest.WithdrawalStatus.PENDING);
           if (!pendingRequests.isEmpty()) {
             throw new RuntimeException("You have a pending withdrawal request. Please wait for it to be processed.");
-        }        // Reserve funds by deducting from doctor's balance immediately
-        try {
-            BigDecimal newBalance = doctorBalanceDecimal.subtract(requestDto.getAmount());
-            doctor.setDoctorBalance(newBalance.doubleValue());
-            userRepository.save(doctor);
-            System.out.println("Reserved " + requestDto.getAmount() + " VND from doctor " + doctor.getUsername() + "'s balance for withdrawal request");
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to reserve funds for withdrawal request: " + e.getMessage());
         }
 
         WithdrawalRequest withdrawal = WithdrawalRequest.builder()
@@ -75,6 +71,16 @@ public class WithdrawalRequestService {    @Autowired
             .build();
 
         WithdrawalRequest savedWithdrawal = withdrawalRequestRepository.save(withdrawal);
+
+        // Reserve funds by deducting from doctor's balance; fails if a concurrent request got there first
+        try {
+            balanceLedgerService.debit(doctor, LedgerAccount.DOCTOR_BALANCE, requestDto.getAmount().doubleValue(),
+                LedgerEntryType.WITHDRAWAL_RESERVE, savedWithdrawal.getId());
+            log.info("Reserved {} VND from doctor {}'s balance for withdrawal request {}",
+                requestDto.getAmount(), doctor.getUsername(), savedWithdrawal.getId());
+        } catch (AppException e) {
+            throw new RuntimeException("Insufficient balance for withdrawal");
+        }
         return convertToResponse(savedWithdrawal);
     }
 
@@ -171,9 +177,9 @@ public class WithdrawalRequestService {    @Autowired
         // Restore the reserved funds to doctor's balance
         User doctor = request.getDoctor();
         try {
-            doctor.setDoctorBalance(doctor.getDoctorBalance() + request.getAmount().doubleValue());
-            userRepository.save(doctor);
-            System.out.println("Restored " + request.getAmount() + " VND to doctor " + doctor.getUsername() + "'s balance after rejection");
+            balanceLedgerService.credit(doctor, LedgerAccount.DOCTOR_BALANCE, request.getAmount().doubleValue(),
+                LedgerEntryType.WITHDRAWAL_RESTORE, request.getId());
+            log.info("Restored {} VND to doctor {}'s balance after rejection", request.getAmount(), doctor.getUsername());
         } catch (Exception e) {
             throw new RuntimeException("Failed to restore funds after rejection: " + e.getMessage());
         }
@@ -202,9 +208,9 @@ public class WithdrawalRequestService {    @Autowired
 
         // Restore the reserved funds to doctor's balance
         try {
-            doctor.setDoctorBalance(doctor.getDoctorBalance() + request.getAmount().doubleValue());
-            userRepository.save(doctor);
-            System.out.println("Restored " + request.getAmount() + " VND to doctor " + doctor.getUsername() + "'s balance after cancellation");
+            balanceLedgerService.credit(doctor, LedgerAccount.DOCTOR_BALANCE, request.getAmount().doubleValue(),
+                LedgerEntryType.WITHDRAWAL_RESTORE, request.getId());
+            log.info("Restored {} VND to doctor {}'s balance after cancellation", request.getAmount(), doctor.getUsername());
         } catch (Exception e) {
             throw new RuntimeException("Failed to restore funds after cancellation: " + e.getMessage());
         }
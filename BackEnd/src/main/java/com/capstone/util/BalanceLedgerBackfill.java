@@ -0,0 +1,30 @@
+package com.capstone.util;
+
+import com.capstone.service.BalanceLedgerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+@Component
+@Order(3)
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceLedgerBackfill implements CommandLineRunner {
+
+    private final BalanceLedgerService balanceLedgerService;
+
+    @Override
+    public void run(String... args) {
+        try {
+            int opened = balanceLedgerService.openMissingAccounts();
+            if (opened > 0) {
+                log.info("Opened {} balance ledger accounts from existing balances", opened);
+            }
+        } catch (Exception e) {
+            // Không chặn khởi động; lần chạy sau sẽ mở lại các tài khoản còn thiếu
+            log.error("Balance ledger backfill failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.capstone.util;
+
+import com.capstone.service.ConversationSummaryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+@Component
+@Order(2)
+@RequiredArgsConstructor
+@Slf4j
+public class ConversationSummaryBackfill implements CommandLineRunner {
+
+    private final ConversationSummaryService conversationSummaryService;
+
+    @Override
+    public void run(String... args) {
+        try {
+            int created = conversationSummaryService.backfillIfEmpty();
+            if (created > 0) {
+                log.info("Backfilled {} conversation summaries from chat_messages", created);
+            }
+        } catch (Exception e) {
+            // Không chặn khởi động; summary sẽ được dựng lại khi có tin nhắn mới
+            log.error("Conversation summary backfill failed: {}", e.getMessage());
+        }
+    }
+}
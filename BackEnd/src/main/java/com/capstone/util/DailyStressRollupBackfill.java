@@ -0,0 +1,45 @@
+package com.capstone.util;
+
+import com.capstone.service.StressReportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@Order(4)
+@RequiredArgsConstructor
+@Slf4j
+public class DailyStressRollupBackfill implements CommandLineRunner {
+
+    private final StressReportService stressReportService;
+
+    @Override
+    public void run(String... args) {
+        List<String> userIds;
+        try {
+            userIds = stressReportService.findUsersWithoutDailyRollups();
+        } catch (Exception e) {
+            log.error("Daily stress rollup backfill failed: {}", e.getMessage());
+            return;
+        }
+
+        int rebuilt = 0;
+        for (String userId : userIds) {
+            try {
+                if (stressReportService.rebuildDailyRollups(userId)) {
+                    rebuilt++;
+                }
+            } catch (Exception e) {
+                // Không chặn khởi động; người dùng này sẽ được dựng lại ở lần khởi động sau
+                log.error("Daily stress rollup backfill failed for user {}: {}", userId, e.getMessage());
+            }
+        }
+        if (rebuilt > 0) {
+            log.info("Backfilled daily stress rollups for {} users from stress_analysis", rebuilt);
+        }
+    }
+}
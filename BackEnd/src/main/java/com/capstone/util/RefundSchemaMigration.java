@@ -64,6 +64,21 @@ public class RefundSchemaMigration implements CommandLineRunner {
                 log.warn("Failed to set refunded column to NOT NULL (may already be set): {}", e.getMessage());
             }
             
+            // Backfill doctor_first_response_at for payments made before the column existed;
+            // only rows that actually have a doctor response are touched, so later startups write nothing
+            if (checkColumnExists("doctor_first_response_at")) {
+                String doctorResponses =
+                    "FROM chat_messages m JOIN chat_requests cr ON cr.id = cp.chat_request_id " +
+                    "WHERE m.sender_id = cr.doctor_id AND m.receiver_id = cr.patient_id AND m.timestamp > cp.created_at";
+                int backfilled = jdbcTemplate.update(
+                    "UPDATE chat_payments cp SET doctor_first_response_at = (SELECT MIN(m.timestamp) " + doctorResponses + ") " +
+                    "WHERE cp.doctor_first_response_at IS NULL AND cp.refunded = false " +
+                    "AND EXISTS (SELECT 1 " + doctorResponses + ")");
+                if (backfilled > 0) {
+                    log.info("Backfilled doctor_first_response_at for {} payments", backfilled);
+                }
+            }
+            
             log.info("Refund schema migration completed successfully!");
             
         } catch (Exception e) {
@@ -0,0 +1,37 @@
+package com.capstone.util;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * The calendar stress data is bucketed in. Daily rollups, trends and class dashboards all use
+ * this zone, so "today" and a day's bucket mean the same thing everywhere regardless of the
+ * server's default time zone.
+ */
+public final class StressCalendar {
+    public static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+
+    private StressCalendar() {
+    }
+
+    public static LocalDate today() {
+        return LocalDate.now(ZONE);
+    }
+
+    public static LocalDate dayOf(Date date) {
+        return date.toInstant().atZone(ZONE).toLocalDate();
+    }
+
+    public static Date startOf(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZONE).toInstant());
+    }
+
+    /**
+     * Start of {@code day} in server-local time, for columns written with {@code LocalDateTime.now()}.
+     */
+    public static LocalDateTime localStartOf(LocalDate day) {
+        return LocalDateTime.ofInstant(day.atStartOfDay(ZONE).toInstant(), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,125 @@
+package com.capstone.service;
+
+import com.capstone.service.ActiveChatSessionRegistry.ChatSession;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives the timer wheel with explicit clock values a few seconds (or minutes) ahead of the
+ * wall clock, so expiry is deterministic without sleeping.
+ */
+public class ActiveChatSessionRegistryTest {
+
+    private ActiveChatSessionRegistry registry;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        registry = new ActiveChatSessionRegistry();
+        now = System.currentTimeMillis();
+    }
+
+    @Test
+    void testSessionIsActiveUntilItsDeadlinePasses() {
+        registry.register("req-1", "patient", "doctor", at(now + 10_000));
+
+        assertTrue(registry.isActive("patient", "doctor"));
+        assertFalse(registry.isActive("doctor", "patient"));
+        assertTrue(registry.advance(now + 5_000).isEmpty());
+
+        List<ChatSession> expired = registry.advance(now + 11_000);
+
+        assertEquals(1, expired.size());
+        assertEquals("req-1", expired.get(0).getRequestId());
+        assertEquals(now + 10_000, expired.get(0).getExpiresAtMillis());
+        assertFalse(registry.isActive("patient", "doctor"));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void testExtendedSessionIsNotReportedAtItsOldDeadline() {
+        registry.register("req-1", "patient", "doctor", at(now + 10_000));
+        registry.register("req-1", "patient", "doctor", at(now + 60_000));
+
+        assertTrue(registry.advance(now + 11_000).isEmpty());
+        assertTrue(registry.isActive("patient", "doctor"));
+        assertEquals(1, registry.size());
+
+        List<ChatSession> expired = registry.advance(now + 61_000);
+
+        assertEquals(1, expired.size());
+        assertEquals(now + 60_000, expired.get(0).getExpiresAtMillis());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void testSessionReplacedByAnotherRequestIsStillReportedExpired() {
+        registry.register("req-1", "patient", "doctor", at(now + 10_000));
+        registry.register("req-2", "patient", "doctor", at(now + 60_000));
+
+        List<ChatSession> expired = registry.advance(now + 11_000);
+
+        assertEquals(1, expired.size());
+        assertEquals("req-1", expired.get(0).getRequestId());
+        assertTrue(registry.isActive("patient", "doctor"));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    void testEarlierExpiryNeverShortensASession() {
+        registry.register("req-1", "patient", "doctor", at(now + 60_000));
+        registry.register("req-2", "patient", "doctor", at(now + 10_000));
+
+        assertTrue(registry.advance(now + 11_000).isEmpty());
+        assertTrue(registry.isActive("patient", "doctor"));
+
+        List<ChatSession> expired = registry.advance(now + 61_000);
+
+        assertEquals(1, expired.size());
+        assertEquals("req-1", expired.get(0).getRequestId());
+    }
+
+    @Test
+    void testSessionLongerThanOneTurnOfTheWheelWaitsForItsDeadline() {
+        // 600 giây > 512 bucket: bucket của phiên được duyệt một lần trước khi đến hạn
+        registry.register("req-1", "patient", "doctor", at(now + 600_000));
+
+        assertTrue(registry.advance(now + 100_000).isEmpty());
+        assertTrue(registry.advance(now + 599_000).isEmpty());
+        assertEquals(1, registry.size());
+
+        List<ChatSession> expired = registry.advance(now + 601_000);
+
+        assertEquals(1, expired.size());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void testAlreadyExpiredSessionIsReportedOnTheNextTick() {
+        registry.register("req-1", "patient", "doctor", at(now - 1_000));
+
+        assertFalse(registry.isActive("patient", "doctor"));
+        assertEquals(1, registry.advance(now + 5_000).size());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void testClockGoingBackwardsExpiresNothing() {
+        registry.register("req-1", "patient", "doctor", at(now + 10_000));
+        registry.advance(now + 5_000);
+
+        assertTrue(registry.advance(now + 1_000).isEmpty());
+        assertEquals(1, registry.size());
+    }
+
+    private static LocalDateTime at(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,279 @@
+package com.capstone.service;
+
+import com.capstone.entity.BalanceLedgerEntry;
+import com.capstone.entity.User;
+import com.capstone.enums.LedgerAccount;
+import com.capstone.enums.LedgerEntryType;
+import com.capstone.exception.AppException;
+import com.capstone.exception.ErrorCode;
+import com.capstone.repository.BalanceLedgerRepository;
+import com.capstone.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Conditional debits and credits against real users. Not transactional, for the same reason as
+ * {@link StockReservationConcurrencyTest}: every movement commits on its own so concurrent
+ * threads compete for the same {@code users} row in the Testcontainers Postgres.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class BalanceLedgerServiceTest {
+    private static final int THREADS = 16;
+
+    @Autowired
+    private BalanceLedgerService balanceLedgerService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BalanceLedgerRepository balanceLedgerRepository;
+
+    private final List<String> createdUserIds = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (String userId : createdUserIds) {
+            balanceLedgerRepository.deleteAll(entriesOf(userId, null));
+        }
+        userRepository.deleteAllById(createdUserIds);
+        createdUserIds.clear();
+    }
+
+    @Test
+    void testConcurrentDebitsCannotSpendTheSameBalanceTwice() throws Exception {
+        User user = createUser(100.0, 0.0);
+        AtomicInteger debited = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(20, attempt -> {
+            try {
+                balanceLedgerService.debit(user, LedgerAccount.BALANCE, 60.0, LedgerEntryType.PRODUCT_ORDER, "order-" + attempt);
+                debited.incrementAndGet();
+            } catch (AppException e) {
+                assertEquals(ErrorCode.INSUFFICIENT_BALANCE, e.getErrorCode());
+                rejected.incrementAndGet();
+            }
+        });
+
+        assertEquals(1, debited.get());
+        assertEquals(19, rejected.get());
+        assertEquals(40.0, balanceOf(user));
+        assertLedgerMatchesBalance(user, LedgerAccount.BALANCE);
+    }
+
+    @Test
+    void testConcurrentDebitsDrainTheBalanceExactly() throws Exception {
+        User user = createUser(100.0, 0.0);
+        AtomicInteger debited = new AtomicInteger();
+
+        runConcurrently(50, attempt -> {
+            try {
+                balanceLedgerService.debit(user, LedgerAccount.BALANCE, 10.0, LedgerEntryType.CHAT_PAYMENT, "payment-" + attempt);
+                debited.incrementAndGet();
+            } catch (AppException e) {
+                assertEquals(ErrorCode.INSUFFICIENT_BALANCE, e.getErrorCode());
+            }
+        });
+
+        assertEquals(10, debited.get());
+        assertEquals(0.0, balanceOf(user));
+        assertLedgerMatchesBalance(user, LedgerAccount.BALANCE);
+        assertTrue(entriesOf(user.getId(), LedgerAccount.BALANCE).stream().allMatch(entry -> entry.getBalanceAfter() >= 0));
+    }
+
+    @Test
+    void testConcurrentCreditsAndDebitsAreAllKept() throws Exception {
+        User user = createUser(0.0, 0.0);
+        AtomicInteger debited = new AtomicInteger();
+
+        // Xen kẽ nạp và trừ tiền trên cùng một tài khoản
+        runConcurrently(200, attempt -> {
+            if (attempt % 2 == 0) {
+                balanceLedgerService.credit(user, LedgerAccount.BALANCE, 5.0, LedgerEntryType.DEPOSIT, "deposit-" + attempt);
+                return;
+            }
+            try {
+                balanceLedgerService.debit(user, LedgerAccount.BALANCE, 5.0, LedgerEntryType.CHAT_PAYMENT, "payment-" + attempt);
+                debited.incrementAndGet();
+            } catch (AppException e) {
+                assertEquals(ErrorCode.INSUFFICIENT_BALANCE, e.getErrorCode());
+            }
+        });
+
+        assertEquals(5.0 * (100 - debited.get()), balanceOf(user));
+        assertLedgerMatchesBalance(user, LedgerAccount.BALANCE);
+        assertTrue(entriesOf(user.getId(), LedgerAccount.BALANCE).stream().allMatch(entry -> entry.getBalanceAfter() >= 0));
+    }
+
+    @Test
+    void testRejectedDebitWritesNothing() {
+        User user = createUser(30.0, 0.0);
+
+        AppException exception = assertThrows(AppException.class, () ->
+                balanceLedgerService.debit(user, LedgerAccount.BALANCE, 30.01, LedgerEntryType.PRODUCT_ORDER, "order"));
+
+        assertEquals(ErrorCode.INSUFFICIENT_BALANCE, exception.getErrorCode());
+        assertEquals(30.0, balanceOf(user));
+        assertTrue(entriesOf(user.getId(), null).isEmpty());
+    }
+
+    @Test
+    void testAccountsAreKeptApart() {
+        User user = createUser(0.0, 80.0);
+
+        assertThrows(AppException.class, () ->
+                balanceLedgerService.debit(user, LedgerAccount.BALANCE, 50.0, LedgerEntryType.PRODUCT_ORDER, "order"));
+        assertEquals(30.0, balanceLedgerService.debit(user, LedgerAccount.DOCTOR_BALANCE, 50.0,
+                LedgerEntryType.WITHDRAWAL_RESERVE, "withdrawal"));
+
+        User stored = userRepository.findById(user.getId()).orElseThrow();
+        assertEquals(0.0, stored.getBalance());
+        assertEquals(30.0, stored.getDoctorBalance());
+        assertTrue(entriesOf(user.getId(), LedgerAccount.BALANCE).isEmpty());
+        assertLedgerMatchesBalance(user, LedgerAccount.DOCTOR_BALANCE);
+    }
+
+    @Test
+    void testFirstMovementOpensAnAccountThatPredatesTheLedger() {
+        User user = createUser(250.0, 0.0);
+
+        assertEquals(300.0, balanceLedgerService.credit(user, LedgerAccount.BALANCE, 50.0, LedgerEntryType.DEPOSIT, "deposit-1"));
+        assertEquals(280.0, balanceLedgerService.debit(user, LedgerAccount.BALANCE, 20.0, LedgerEntryType.CHAT_PAYMENT, "payment-1"));
+
+        List<BalanceLedgerEntry> opening = entriesOf(user.getId(), LedgerAccount.BALANCE).stream()
+                .filter(entry -> entry.getType() == LedgerEntryType.OPENING)
+                .collect(Collectors.toList());
+        assertEquals(1, opening.size());
+        assertEquals(250.0, opening.get(0).getAmount());
+        assertEquals(250.0, opening.get(0).getBalanceAfter());
+        assertLedgerMatchesBalance(user, LedgerAccount.BALANCE);
+    }
+
+    @Test
+    void testConcurrentFirstMovementsOpenTheAccountOnce() throws Exception {
+        User user = createUser(100.0, 0.0);
+
+        runConcurrently(20, attempt ->
+                balanceLedgerService.credit(user, LedgerAccount.BALANCE, 1.0, LedgerEntryType.DEPOSIT, "deposit-" + attempt));
+
+        assertEquals(120.0, balanceOf(user));
+        assertEquals(1, entriesOf(user.getId(), LedgerAccount.BALANCE).stream()
+                .filter(entry -> entry.getType() == LedgerEntryType.OPENING)
+                .count());
+        assertLedgerMatchesBalance(user, LedgerAccount.BALANCE);
+    }
+
+    @Test
+    void testEmptyAccountIsNotOpened() {
+        User user = createUser(0.0, 0.0);
+
+        balanceLedgerService.credit(user, LedgerAccount.BALANCE, 10.0, LedgerEntryType.DEPOSIT, "deposit");
+
+        List<BalanceLedgerEntry> entries = entriesOf(user.getId(), LedgerAccount.BALANCE);
+        assertEquals(1, entries.size());
+        assertEquals(LedgerEntryType.DEPOSIT, entries.get(0).getType());
+    }
+
+    @Test
+    void testOpenMissingAccountsOpensEachAccountOnce() {
+        User user = createUser(40.0, 15.0);
+
+        balanceLedgerService.openMissingAccounts();
+        balanceLedgerService.openMissingAccounts();
+
+        assertEquals(1, entriesOf(user.getId(), LedgerAccount.BALANCE).size());
+        assertEquals(1, entriesOf(user.getId(), LedgerAccount.DOCTOR_BALANCE).size());
+        assertLedgerMatchesBalance(user, LedgerAccount.BALANCE);
+        assertLedgerMatchesBalance(user, LedgerAccount.DOCTOR_BALANCE);
+    }
+
+    @Test
+    void testNonPositiveAmountsAreRejected() {
+        User user = createUser(10.0, 0.0);
+
+        for (double amount : new double[]{0.0, -5.0, Double.NaN}) {
+            AppException exception = assertThrows(AppException.class, () ->
+                    balanceLedgerService.credit(user, LedgerAccount.BALANCE, amount, LedgerEntryType.DEPOSIT, "deposit"));
+            assertEquals(ErrorCode.INVALID_PARAM, exception.getErrorCode());
+        }
+        assertEquals(10.0, balanceOf(user));
+    }
+
+    private void assertLedgerMatchesBalance(User user, LedgerAccount account) {
+        User stored = userRepository.findById(user.getId()).orElseThrow();
+        double cached = account == LedgerAccount.BALANCE ? stored.getBalance() : stored.getDoctorBalance();
+        double sum = entriesOf(user.getId(), account).stream().mapToDouble(BalanceLedgerEntry::getAmount).sum();
+        assertEquals(cached, sum, 1e-9);
+    }
+
+    private List<BalanceLedgerEntry> entriesOf(String userId, LedgerAccount account) {
+        return balanceLedgerRepository.findAll().stream()
+                .filter(entry -> entry.getUser().getId().equals(userId))
+                .filter(entry -> account == null || entry.getAccount() == account)
+                .collect(Collectors.toList());
+    }
+
+    private void runConcurrently(int attempts, Attempt attempt) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < attempts; i++) {
+                int index = i;
+                Callable<Void> task = () -> {
+                    start.await();
+                    attempt.run(index);
+                    return null;
+                };
+                futures.add(executor.submit(task));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private User createUser(double balance, double doctorBalance) {
+        User user = userRepository.save(User.builder()
+                .username("ledger_" + UUID.randomUUID())
+                .password("password")
+                .balance(balance)
+                .doctorBalance(doctorBalance)
+                .emailVerified(true)
+                .banned(false)
+                .build());
+        createdUserIds.add(user.getId());
+        return user;
+    }
+
+    private double balanceOf(User user) {
+        return userRepository.findById(user.getId()).orElseThrow().getBalance();
+    }
+
+    @FunctionalInterface
+    private interface Attempt {
+        void run(int index) throws Exception;
+    }
+}
@@ -0,0 +1,159 @@
+package com.capstone.service;
+
+import com.capstone.entity.DepositSyncState;
+import com.capstone.entity.PendingDeposit;
+import com.capstone.entity.User;
+import com.capstone.enums.LedgerAccount;
+import com.capstone.enums.LedgerEntryType;
+import com.capstone.repository.DepositSyncStateRepository;
+import com.capstone.repository.PendingDepositRepository;
+import com.capstone.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Reconciliation against {@link StubSepayClient}, which serves transactions newest first like
+ * SePay does. Repositories and the ledger are mocked; the high-water mark is kept in memory.
+ */
+public class DepositCheckerServiceTest {
+
+    private PendingDepositRepository pendingDepositRepository;
+    private DepositSyncStateRepository depositSyncStateRepository;
+    private BalanceLedgerService balanceLedgerService;
+    private StubSepayClient sepayClient;
+    private final AtomicReference<Long> mark = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() {
+        pendingDepositRepository = mock(PendingDepositRepository.class);
+        depositSyncStateRepository = mock(DepositSyncStateRepository.class);
+        balanceLedgerService = mock(BalanceLedgerService.class);
+        sepayClient = new StubSepayClient();
+
+        when(pendingDepositRepository.markCompleted(anyString(), anyLong())).thenReturn(1);
+        when(depositSyncStateRepository.findById("sepay")).thenAnswer(invocation ->
+                Optional.ofNullable(mark.get()).map(id -> DepositSyncState.builder()
+                        .provider("sepay")
+                        .lastTransactionId(id)
+                        .build()));
+        when(depositSyncStateRepository.save(any(DepositSyncState.class))).thenAnswer(invocation -> {
+            DepositSyncState state = invocation.getArgument(0);
+            mark.set(state.getLastTransactionId());
+            return state;
+        });
+        mark.set(0L);
+    }
+
+    @Test
+    void testNormalizeKeepsUppercaseLettersAndDigits() {
+        assertEquals("NAPABC123CK", DepositCheckerService.normalize("nap-abc 123.ck"));
+        assertEquals("", DepositCheckerService.normalize(" -./ "));
+    }
+
+    @Test
+    void testMatchingTransferIsCreditedAndMarkAdvanced() {
+        DepositCheckerService checker = checker(100, 1000);
+        sepayClient.addTransaction("IB chuyen tien", 10000);
+        sepayClient.addTransaction("MBVCB.123 nap-abc123 ck", 50000);
+
+        checker.track(deposit("dep-1", "NAP ABC123", 50000));
+        checker.checkDeposits();
+
+        verify(pendingDepositRepository).markCompleted("dep-1", 2L);
+        verify(balanceLedgerService).credit(any(), eq(LedgerAccount.BALANCE), eq(50000.0),
+                eq(LedgerEntryType.DEPOSIT), eq("dep-1"));
+        assertEquals(2L, mark.get());
+    }
+
+    @Test
+    void testTransferBelowDepositAmountIsNotCredited() {
+        DepositCheckerService checker = checker(100, 1000);
+        sepayClient.addTransaction("NAPABC123", 20000);
+
+        checker.track(deposit("dep-1", "NAPABC123", 50000));
+        checker.checkDeposits();
+
+        verify(pendingDepositRepository, never()).markCompleted(anyString(), anyLong());
+        verifyNoInteractions(balanceLedgerService);
+        assertEquals(1L, mark.get());
+    }
+
+    @Test
+    void testFullPageIsRefetchedDownToTheMark() {
+        DepositCheckerService checker = checker(3, 16);
+        // Giao dịch nạp tiền là dòng cũ nhất, phía sau có nhiều hơn một trang giao dịch khác
+        sepayClient.addTransaction("NAPABC123", 50000);
+        for (int i = 0; i < 8; i++) {
+            sepayClient.addTransaction("OTHER " + i, 1000);
+        }
+
+        checker.track(deposit("dep-1", "NAPABC123", 50000));
+        checker.checkDeposits();
+
+        verify(pendingDepositRepository).markCompleted("dep-1", 1L);
+        assertEquals(9L, mark.get());
+    }
+
+    @Test
+    void testMarkIsKeptWhenTransactionsCannotBeReadInOneFetch() {
+        DepositCheckerService checker = checker(2, 4);
+        sepayClient.addTransaction("NAPABC123", 50000);
+        for (int i = 0; i < 6; i++) {
+            sepayClient.addTransaction("OTHER " + i, 1000);
+        }
+
+        checker.track(deposit("dep-1", "NAPABC123", 50000));
+        checker.checkDeposits();
+
+        verify(pendingDepositRepository, never()).markCompleted(anyString(), anyLong());
+        assertEquals(0L, mark.get());
+    }
+
+    @Test
+    void testMarkFollowsNewestTransactionWhileNothingIsPending() {
+        DepositCheckerService checker = checker(2, 4);
+        for (int i = 0; i < 10; i++) {
+            sepayClient.addTransaction("OTHER " + i, 1000);
+        }
+
+        checker.checkDeposits();
+        assertEquals(10L, mark.get());
+
+        // Giao dịch tích lũy lúc rảnh không còn chặn mốc khi có deposit mới
+        checker.track(deposit("dep-1", "NAPABC123", 50000));
+        sepayClient.addTransaction("NAPABC123", 50000);
+        checker.checkDeposits();
+
+        verify(pendingDepositRepository).markCompleted("dep-1", 11L);
+        assertEquals(11L, mark.get());
+    }
+
+    private DepositCheckerService checker(int fetchLimit, int maxFetchLimit) {
+        return new DepositCheckerService(pendingDepositRepository, depositSyncStateRepository,
+                mock(UserRepository.class), balanceLedgerService, sepayClient,
+                mock(PlatformTransactionManager.class),
+                fetchLimit, maxFetchLimit, 3000, 60000, 5);
+    }
+
+    private static PendingDeposit deposit(String id, String content, double amount) {
+        return PendingDeposit.builder()
+                .id(id)
+                .user(User.builder().id("user-1").build())
+                .amount(amount)
+                .transactionContent(content)
+                .createdAt(new Date())
+                .build();
+    }
+}
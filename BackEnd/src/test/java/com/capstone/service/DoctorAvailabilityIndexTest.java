@@ -0,0 +1,265 @@
+package com.capstone.service;
+
+import com.capstone.entity.DoctorSchedule;
+import com.capstone.entity.User;
+import com.capstone.repository.DoctorScheduleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Interval queries and invalidation of the availability index. The repository is mocked over an
+ * in-memory list of schedules that the tests edit to play the part of committed changes.
+ */
+public class DoctorAvailabilityIndexTest {
+    private static final LocalDate TODAY = LocalDate.now();
+    private static final LocalDate TOMORROW = TODAY.plusDays(1);
+
+    private DoctorScheduleRepository doctorScheduleRepository;
+    private DoctorAvailabilityIndex index;
+    private final List<DoctorSchedule> database = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        doctorScheduleRepository = mock(DoctorScheduleRepository.class);
+        when(doctorScheduleRepository.findByDate(any(LocalDate.class))).thenAnswer(invocation -> {
+            LocalDate date = invocation.getArgument(0);
+            return database.stream()
+                    .filter(schedule -> schedule.getDate().equals(date))
+                    .map(DoctorAvailabilityIndexTest::copy)
+                    .collect(Collectors.toList());
+        });
+        when(doctorScheduleRepository.findCurrentAppointments(anyString())).thenAnswer(invocation -> {
+            String id = invocation.getArgument(0);
+            return database.stream()
+                    .filter(schedule -> schedule.getId().equals(id))
+                    .map(DoctorSchedule::getCurrentAppointments)
+                    .findFirst();
+        });
+        index = new DoctorAvailabilityIndex(doctorScheduleRepository);
+    }
+
+    @Test
+    void testCoveringQueryIncludesBothEndsInStartOrder() {
+        schedule("doctor-b", TODAY, "09:00", "11:00");
+        schedule("doctor-a", TODAY, "08:00", "10:00");
+        schedule("doctor-c", TODAY, "13:00", "15:00");
+
+        assertEquals(List.of("doctor-a", "doctor-b"), index.findDoctorsAvailableAt(TODAY, time("09:30"), false));
+        assertEquals(List.of("doctor-a", "doctor-b"), index.findDoctorsAvailableAt(TODAY, time("10:00"), false));
+        assertEquals(List.of("doctor-a"), index.findDoctorsAvailableAt(TODAY, time("08:00"), false));
+        assertEquals(List.of(), index.findDoctorsAvailableAt(TODAY, time("12:00"), false));
+        assertEquals(List.of("doctor-c"), index.findDoctorsAvailableAt(TODAY, time("15:00"), false));
+        assertEquals(List.of("doctor-a", "doctor-b", "doctor-c"), index.findDoctorsAvailableOn(TODAY));
+        assertEquals(List.of(), index.findDoctorsAvailableOn(TOMORROW));
+
+        verify(doctorScheduleRepository, times(1)).findByDate(TODAY);
+    }
+
+    @Test
+    void testUnavailableAndFullSchedulesAreFiltered() {
+        DoctorSchedule full = schedule("doctor-full", TODAY, "08:00", "12:00");
+        full.setCurrentAppointments(full.getMaxAppointments());
+        DoctorSchedule closed = schedule("doctor-closed", TODAY, "08:30", "12:00");
+        closed.setIsAvailable(false);
+        schedule("doctor-open", TODAY, "09:00", "12:00");
+
+        assertEquals(List.of("doctor-full", "doctor-open"), index.findDoctorsAvailableAt(TODAY, time("09:30"), false));
+        assertEquals(List.of("doctor-open"), index.findDoctorsAvailableAt(TODAY, time("09:30"), true));
+        assertEquals(List.of("doctor-full", "doctor-open"), index.findDoctorsAvailableOn(TODAY));
+    }
+
+    @Test
+    void testCoveringQueryMatchesAScanOverManySlots() {
+        Random random = new Random(42);
+        for (int i = 0; i < 300; i++) {
+            int start = random.nextInt(23 * 60);
+            int length = 15 + random.nextInt(6 * 60);
+            int end = Math.min(start + length, 24 * 60 - 1);
+            schedule("doctor-" + random.nextInt(40), TODAY,
+                    LocalTime.ofSecondOfDay(start * 60L), LocalTime.ofSecondOfDay(end * 60L));
+        }
+
+        for (int minute = 0; minute < 24 * 60; minute += 7) {
+            LocalTime time = LocalTime.ofSecondOfDay(minute * 60L);
+            assertEquals(scan(TODAY, time), index.findDoctorsAvailableAt(TODAY, time, false),
+                    "doctors covering " + time);
+        }
+    }
+
+    @Test
+    void testUpsertMovesASlotWithoutReloadingTheDay() {
+        DoctorSchedule moved = schedule("doctor-a", TODAY, "08:00", "10:00");
+        schedule("doctor-b", TODAY, "14:00", "16:00");
+        assertEquals(List.of("doctor-a"), index.findDoctorsAvailableAt(TODAY, time("09:00"), false));
+
+        moved.setStartTime(time("15:00"));
+        moved.setEndTime(time("17:00"));
+        index.upsert(copy(moved));
+
+        assertEquals(List.of(), index.findDoctorsAvailableAt(TODAY, time("09:00"), false));
+        assertEquals(List.of("doctor-b", "doctor-a"), index.findDoctorsAvailableAt(TODAY, time("15:30"), false));
+        verify(doctorScheduleRepository, times(1)).findByDate(TODAY);
+    }
+
+    @Test
+    void testUpsertToAnotherDateLeavesTheOldDay() {
+        DoctorSchedule moved = schedule("doctor-a", TODAY, "08:00", "10:00");
+        assertEquals(List.of("doctor-a"), index.findDoctorsAvailableOn(TODAY));
+        assertEquals(List.of(), index.findDoctorsAvailableOn(TOMORROW));
+
+        moved.setDate(TOMORROW);
+        index.upsert(copy(moved));
+
+        assertEquals(List.of(), index.findDoctorsAvailableOn(TODAY));
+        assertEquals(List.of("doctor-a"), index.findDoctorsAvailableOn(TOMORROW));
+    }
+
+    @Test
+    void testRemoveDropsTheSlot() {
+        DoctorSchedule removed = schedule("doctor-a", TODAY, "08:00", "10:00");
+        schedule("doctor-b", TODAY, "08:30", "10:00");
+        assertEquals(List.of("doctor-a", "doctor-b"), index.findDoctorsAvailableAt(TODAY, time("09:00"), false));
+
+        database.remove(removed);
+        index.remove(removed.getId());
+
+        assertEquals(List.of("doctor-b"), index.findDoctorsAvailableAt(TODAY, time("09:00"), false));
+        assertEquals(List.of("doctor-b"), index.findDoctorsAvailableOn(TODAY));
+    }
+
+    @Test
+    void testRefreshBookedCountReadsTheCommittedCount() {
+        DoctorSchedule booked = schedule("doctor-a", TODAY, "08:00", "10:00");
+        assertEquals(List.of("doctor-a"), index.findDoctorsAvailableAt(TODAY, time("09:00"), true));
+
+        booked.setCurrentAppointments(booked.getMaxAppointments());
+        index.refreshBookedCount(booked.getId());
+
+        assertEquals(List.of(), index.findDoctorsAvailableAt(TODAY, time("09:00"), true));
+        assertEquals(List.of("doctor-a"), index.findDoctorsAvailableAt(TODAY, time("09:00"), false));
+
+        booked.setCurrentAppointments(0);
+        index.refreshBookedCount(booked.getId());
+
+        assertEquals(List.of("doctor-a"), index.findDoctorsAvailableAt(TODAY, time("09:00"), true));
+    }
+
+    @Test
+    void testRefreshBookedCountSkipsDaysThatAreNotLoaded() {
+        DoctorSchedule booked = schedule("doctor-a", TOMORROW, "08:00", "10:00");
+
+        index.refreshBookedCount(booked.getId());
+
+        verify(doctorScheduleRepository, never()).findCurrentAppointments(anyString());
+    }
+
+    @Test
+    void testDayReadDuringAChangeIsNotKept() {
+        schedule("doctor-a", TODAY, "08:00", "10:00");
+        DoctorSchedule added = DoctorSchedule.builder()
+                .id(UUID.randomUUID().toString())
+                .doctor(User.builder().id("doctor-b").build())
+                .date(TODAY)
+                .startTime(time("09:00"))
+                .endTime(time("10:00"))
+                .maxAppointments(2)
+                .currentAppointments(0)
+                .isAvailable(true)
+                .build();
+
+        // Lịch mới được commit trong lúc ngày đang được đọc: bản đọc được không chứa nó
+        doAnswer(invocation -> {
+            List<DoctorSchedule> snapshot = database.stream().map(DoctorAvailabilityIndexTest::copy).collect(Collectors.toList());
+            if (!database.contains(added)) {
+                database.add(added);
+                index.upsert(copy(added));
+            }
+            return snapshot;
+        }).when(doctorScheduleRepository).findByDate(any(LocalDate.class));
+
+        assertEquals(List.of("doctor-a"), index.findDoctorsAvailableOn(TODAY));
+        assertEquals(List.of("doctor-a", "doctor-b"), index.findDoctorsAvailableOn(TODAY));
+        verify(doctorScheduleRepository, times(2)).findByDate(TODAY);
+    }
+
+    @Test
+    void testRefreshReloadsCurrentDaysAndDropsPastOnes() {
+        LocalDate yesterday = TODAY.minusDays(1);
+        schedule("doctor-a", yesterday, "08:00", "10:00");
+        DoctorSchedule changed = schedule("doctor-b", TODAY, "08:00", "10:00");
+        assertEquals(List.of("doctor-a"), index.findDoctorsAvailableOn(yesterday));
+        assertEquals(List.of("doctor-b"), index.findDoctorsAvailableOn(TODAY));
+
+        // Thay đổi không đi qua index (ví dụ sửa tay trong DB)
+        changed.setIsAvailable(false);
+        index.refresh();
+
+        assertEquals(List.of(), index.findDoctorsAvailableOn(TODAY));
+        verify(doctorScheduleRepository, times(2)).findByDate(TODAY);
+        verify(doctorScheduleRepository, times(1)).findByDate(yesterday);
+
+        assertEquals(List.of("doctor-a"), index.findDoctorsAvailableOn(yesterday));
+        verify(doctorScheduleRepository, times(2)).findByDate(yesterday);
+    }
+
+    private List<String> scan(LocalDate date, LocalTime time) {
+        return database.stream()
+                .filter(schedule -> schedule.getDate().equals(date))
+                .filter(schedule -> !schedule.getStartTime().isAfter(time) && !schedule.getEndTime().isBefore(time))
+                .sorted((a, b) -> a.getStartTime().equals(b.getStartTime())
+                        ? a.getId().compareTo(b.getId())
+                        : a.getStartTime().compareTo(b.getStartTime()))
+                .map(schedule -> schedule.getDoctor().getId())
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private DoctorSchedule schedule(String doctorId, LocalDate date, String start, String end) {
+        return schedule(doctorId, date, time(start), time(end));
+    }
+
+    private DoctorSchedule schedule(String doctorId, LocalDate date, LocalTime start, LocalTime end) {
+        DoctorSchedule schedule = DoctorSchedule.builder()
+                .id(UUID.randomUUID().toString())
+                .doctor(User.builder().id(doctorId).build())
+                .date(date)
+                .startTime(start)
+                .endTime(end)
+                .maxAppointments(2)
+                .currentAppointments(0)
+                .isAvailable(true)
+                .build();
+        database.add(schedule);
+        return schedule;
+    }
+
+    private static DoctorSchedule copy(DoctorSchedule schedule) {
+        return DoctorSchedule.builder()
+                .id(schedule.getId())
+                .doctor(schedule.getDoctor())
+                .date(schedule.getDate())
+                .startTime(schedule.getStartTime())
+                .endTime(schedule.getEndTime())
+                .maxAppointments(schedule.getMaxAppointments())
+                .currentAppointments(schedule.getCurrentAppointments())
+                .isAvailable(schedule.getIsAvailable())
+                .build();
+    }
+
+    private static LocalTime time(String value) {
+        return LocalTime.parse(value);
+    }
+}
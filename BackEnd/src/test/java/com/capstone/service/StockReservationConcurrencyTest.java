@@ -0,0 +1,159 @@
+package com.capstone.service;
+
+import com.capstone.entity.OrderItem;
+import com.capstone.entity.Product;
+import com.capstone.exception.AppException;
+import com.capstone.exception.ErrorCode;
+import com.capstone.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs concurrent reservations against real products. Not transactional: every reservation has
+ * to commit on its own for the threads to compete for the same rows, so the {@code test} profile
+ * points the datasource at a throwaway Testcontainers Postgres (Docker required).
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class StockReservationConcurrencyTest {
+    private static final int THREADS = 16;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private final List<String> createdProductIds = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAllById(createdProductIds);
+        createdProductIds.clear();
+    }
+
+    @Test
+    void testSingleSkuIsNeverOversold() throws Exception {
+        Product product = createProduct("Hammered SKU", 50);
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(200, attempt -> {
+            try {
+                stockReservationService.reserve(List.of(line(product, 1)));
+                reserved.incrementAndGet();
+            } catch (AppException e) {
+                assertEquals(ErrorCode.INSUFFICIENT_STOCK, e.getErrorCode());
+                rejected.incrementAndGet();
+            }
+        });
+
+        assertEquals(50, reserved.get());
+        assertEquals(150, rejected.get());
+        assertEquals(0, stockOf(product));
+    }
+
+    @Test
+    void testOppositeLineOrdersDoNotDeadlock() throws Exception {
+        Product first = createProduct("First", 1000);
+        Product second = createProduct("Second", 1000);
+
+        // Một nửa giỏ hàng liệt kê sản phẩm theo thứ tự ngược lại
+        runConcurrently(200, attempt -> stockReservationService.reserve(attempt % 2 == 0
+                ? List.of(line(first, 1), line(second, 2))
+                : List.of(line(second, 2), line(first, 1))));
+
+        assertEquals(800, stockOf(first));
+        assertEquals(600, stockOf(second));
+    }
+
+    @Test
+    void testShortLineRollsBackWholeReservation() {
+        Product available = createProduct("Available", 10);
+        Product scarce = createProduct("Scarce", 1);
+
+        AppException exception = assertThrows(AppException.class, () ->
+                stockReservationService.reserve(List.of(line(available, 3), line(scarce, 2))));
+
+        assertEquals(ErrorCode.INSUFFICIENT_STOCK, exception.getErrorCode());
+        assertEquals(10, stockOf(available));
+        assertEquals(1, stockOf(scarce));
+    }
+
+    @Test
+    void testRepeatedLinesAreMergedPerProduct() {
+        Product product = createProduct("Merged", 5);
+
+        assertThrows(AppException.class, () ->
+                stockReservationService.reserve(List.of(line(product, 3), line(product, 3))));
+        stockReservationService.reserve(List.of(line(product, 2), line(product, 3)));
+
+        assertEquals(0, stockOf(product));
+    }
+
+    private void runConcurrently(int attempts, Attempt attempt) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < attempts; i++) {
+                int index = i;
+                Callable<Void> task = () -> {
+                    start.await();
+                    attempt.run(index);
+                    return null;
+                };
+                futures.add(executor.submit(task));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Product createProduct(String name, int stock) {
+        Product product = productRepository.save(Product.builder()
+                .name(name)
+                .description("Stock reservation test product")
+                .price(10.0)
+                .stock(stock)
+                .build());
+        createdProductIds.add(product.getId());
+        return product;
+    }
+
+    private int stockOf(Product product) {
+        return productRepository.findById(product.getId()).orElseThrow().getStock();
+    }
+
+    private static OrderItem line(Product product, int quantity) {
+        return OrderItem.builder()
+                .product(product)
+                .quantity(quantity)
+                .price(product.getPrice())
+                .build();
+    }
+
+    @FunctionalInterface
+    private interface Attempt {
+        void run(int index) throws Exception;
+    }
+}